@@ -1,2 +1,2 @@
 @ECHO OFF
-jshell --execution local --show-version build.jsh
+jshell -J--add-modules=java.net.http --execution local --show-version build.jsh
@@ -23,33 +23,131 @@ import static java.lang.System.Logger.Level.INFO;
 import static java.lang.System.Logger.Level.TRACE;
 import static java.lang.System.Logger.Level.WARNING;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
 import java.io.PrintWriter;
 import java.io.UncheckedIOException;
+import java.io.Writer;
 import java.lang.module.ModuleDescriptor.Version;
+import java.lang.module.ModuleFinder;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.ConnectException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
 import java.net.URI;
-import java.net.URISyntaxException;
-import java.net.URLConnection;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpResponse.BodySubscriber;
+import java.net.http.HttpResponse.BodySubscribers;
+import java.net.http.HttpTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
 import java.nio.file.InvalidPathException;
+import java.nio.file.OpenOption;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.nio.file.attribute.FileTime;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
 import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.OptionalInt;
 import java.util.Properties;
+import java.util.Queue;
 import java.util.ServiceLoader;
+import java.util.Set;
+import java.util.StringJoiner;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.function.Predicate;
 import java.util.function.Supplier;
 import java.util.function.UnaryOperator;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+import java.util.regex.Pattern;
 import java.util.spi.ToolProvider;
 import java.util.stream.Collectors;
+import javax.tools.FileObject;
+import javax.tools.ForwardingJavaFileManager;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileManager;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.StandardLocation;
+import javax.xml.XMLConstants;
+import javax.xml.parsers.DocumentBuilderFactory;
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Recording;
+import org.w3c.dom.Element;
+import org.xml.sax.helpers.DefaultHandler;
 
 /** Java Shell Builder. */
 public class Bach {
@@ -60,6 +158,15 @@ public class Bach {
   /** Convenient short-cut to {@code "user.home"} as a path. */
   public static final Path USER_HOME = Path.of(System.getProperty("user.home"));
 
+  /** Shared pool of daemon threads running in-process tools asynchronously. */
+  static final ExecutorService ASYNC =
+      Executors.newCachedThreadPool(
+          runnable -> {
+            var thread = new Thread(runnable);
+            thread.setDaemon(true);
+            return thread;
+          });
+
   /**
    * Create new Bach instance with default properties.
    *
@@ -81,7 +188,16 @@ public class Bach {
   public static void main(String... arguments) {
     var args = List.of(Util.assigned(arguments, "arguments"));
     var bach = Bach.of();
-    var code = bach.main(args);
+    var recorder = Recorder.start();
+    int code;
+    try {
+      code = bach.main(args);
+      if (bach.configuration.options.cacheCollect) {
+        bach.gcAsync().join();
+      }
+    } finally {
+      recorder.stop();
+    }
     if (code != 0) {
       throw new Error("Bach.main(" + Util.join(arguments) + ") failed with error code: " + code);
     }
@@ -93,6 +209,8 @@ public class Bach {
   final Configuration configuration;
   /** Tool caller. */
   final Runner runner;
+  /** Downloads of artifacts, created on first use. */
+  private Prefetch prefetch;
 
   /** Initialize this instance with text-based "log" writers and a configuration. */
   Bach(PrintWriter out, PrintWriter err, Configuration configuration) {
@@ -118,21 +236,29 @@ public class Bach {
     log(DEBUG, "  arguments=" + Util.assigned(arguments, "arguments"));
     log(DEBUG, "Configuration");
     log(DEBUG, "  tools=" + configuration.basic.tools);
-    ServiceLoader.load(ToolProvider.class).forEach(it -> log(DEBUG, "  %-7s -> %s", it.name(), it));
+    log(DEBUG, "  parallelism=%d", configuration.options.parallelism);
+    log(DEBUG, "  registry=%s", configuration.registry);
 
-    var deque = new ArrayDeque<>(arguments);
-    while (!deque.isEmpty()) {
-      var argument = deque.removeFirst();
-      if ("tool".equals(argument)) {
-        var name = deque.removeFirst();
-        return runner.run(name, deque.toArray(Object[]::new));
-      }
-      var code = runner.run(argument);
-      if (code != 0) {
-        return code;
-      }
+    var tasks = Task.parse(arguments);
+    if (tasks.stream().anyMatch(task -> Set.of("compile", "format").contains(task.name))) {
+      prefetch().start(); // downloads all artifacts in the background
     }
-    return 0;
+    return new Scheduler().run(tasks);
+  }
+
+  /** Return the downloads of artifacts this build needs, call {@link Prefetch#start()} for all. */
+  synchronized Prefetch prefetch() {
+    if (prefetch == null) {
+      prefetch = new Prefetch();
+    }
+    return prefetch;
+  }
+
+  /** Create a Bach instance writing into the given channels, sharing the downloads of this one. */
+  Bach fork(Writer out, Writer err) {
+    var bach = new Bach(new PrintWriter(out, true), new PrintWriter(err, true), configuration);
+    bach.prefetch = prefetch();
+    return bach;
   }
 
   /** Run named tool with specified arguments asserting an expected error code. */
@@ -144,17 +270,62 @@ public class Bach {
     }
   }
 
+  /** Run named tool asynchronously, the future fails if the error code is not the expected one. */
+  CompletableFuture<Void> runAsync(int expected, String name, Object... arguments) {
+    return runner
+        .runAsync(name, arguments)
+        .thenAccept(
+            code -> {
+              if (code != expected) {
+                var message = "Tool %s(%s) returned %d, but expected %d";
+                var args = Util.join(arguments);
+                throw new AssertionError(String.format(message, name, args, code, expected));
+              }
+            });
+  }
+
   /** Print Bach's version to the standard output stream. */
   public int version() {
     out.println(VERSION);
     return 0;
   }
 
+  /** Compile all modules of the project. */
+  public int compile() {
+    return new Compiler().compile(configuration.options.modules);
+  }
+
   /** Format all Java source files of the project in-place. */
   public int format() {
     return new Formatter().format(List.of(configuration.paths.sources), true);
   }
 
+  /** Evict least recently used blobs from the download store exceeding its size budget. */
+  public int gc() {
+    var store = new Store();
+    store.gc(store.root, configuration.options.cacheSize);
+    return 0;
+  }
+
+  /** Evict from the download cache on a background thread, unless that was done recently. */
+  CompletableFuture<Void> gcAsync() {
+    if (!new Store().isCollectionDue()) {
+      return CompletableFuture.completedFuture(null);
+    }
+    return CompletableFuture.runAsync(this::gc, ASYNC)
+        .exceptionally(
+            throwable -> {
+              log(WARNING, "Evicting from download cache failed: %s", throwable);
+              return null;
+            });
+  }
+
+  /** Serve builds requested by {@link Client} instances until idle or evicted. */
+  public int daemon() {
+    var timeout = Duration.parse(configuration.get(Property.DAEMON_TIMEOUT));
+    return new Daemon(timeout).serve();
+  }
+
   /** Print usage help. */
   public int help() {
     out.println("Usage: Bach.java <options>");
@@ -180,18 +351,101 @@ public class Bach {
     /** Path to directory containing all Java module sources. */
     PATH_SOURCES("src", "Path to directory containing all Java module sources."),
 
+    /** Path to directory containing third-party modules. */
+    PATH_LIBRARIES(
+        "lib",
+        "Path to directory containing third-party modules. Modules required by the project are"
+            + " downloaded into it when a 'module.<name>' property maps them to a uri or to"
+            + " Maven coordinates."),
+
+    /** Path to directory receiving all build output. */
+    PATH_TARGET("target/bach", "Path to directory receiving all build output."),
+
+    /** Path to directory holding tools and downloads shared by all projects of the user. */
+    PATH_USER(
+        USER_HOME.resolve(".bach").toString(),
+        "Path to directory holding tools and downloads shared by all projects of the user."),
+
     /** List of modules to compile, or '*' indicating all modules. */
     OPTIONS_MODULES("*", "List of modules to compile, or '*' indicating all modules."),
 
+    /** Output of concurrent tasks. */
+    OPTIONS_OUTPUT(
+        "block",
+        "Output of concurrent tasks: 'block' prints each task's output as a block in declaration"
+            + " order, 'prefix' prints lines as they come, prefixed with the task name."),
+
+    /** Maximum number of tasks running concurrently. */
+    OPTIONS_PARALLELISM(
+        Integer.toString(Runtime.getRuntime().availableProcessors()),
+        "Maximum number of tasks running concurrently."),
+
     /** Options passed to all 'javac' calls. */
     OPTIONS_JAVAC("-encoding\nUTF-8\n-parameters\n-Xlint", "Options passed to 'javac' calls."),
 
+    /** Maximum number of concurrent downloads per downloader. */
+    DOWNLOAD_CONCURRENCY("8", "Maximum number of concurrent downloads per downloader."),
+
+    /** Maximum number of concurrent downloads from a single host per downloader. */
+    DOWNLOAD_HOST_CONCURRENCY(
+        "4", "Maximum number of concurrent downloads from a single host per downloader."),
+
+    /** Number of times a download failing with an I/O error is retried. */
+    DOWNLOAD_RETRIES("4", "Number of times a download failing with an I/O error is retried."),
+
+    /** Base delay of the exponential backoff between download attempts. */
+    DOWNLOAD_BACKOFF(
+        "PT0.5S",
+        "Base delay of the exponential backoff, with full jitter, between download attempts."),
+
+    /** Maximum duration to wait for the response to a download request. */
+    DOWNLOAD_TIMEOUT(
+        "PT30S", "Maximum duration to wait for the response to a download request. ISO-8601."),
+
+    /** Duration after which downloaded files are revalidated with a conditional request. */
+    DOWNLOAD_TTL(
+        "PT24H",
+        "Duration after which downloaded files are revalidated with the server. ISO-8601."),
+
+    /** Ordered list of Maven 2 repositories artifacts are downloaded from. */
+    MAVEN_REPOSITORIES(
+        Downloader.MAVEN_CENTRAL,
+        "Comma-separated list of Maven 2 repositories, remote or 'file:' ones, asked in order."),
+
+    /** Ask all Maven 2 repositories concurrently and download from the first one responding. */
+    MAVEN_RACE(
+        "false",
+        "Ask all Maven 2 repositories concurrently and download from the first one that has the"
+            + " artifact."),
+
+    /** Size budget of the download cache. */
+    CACHE_SIZE(
+        "1G",
+        "Size budget of the download store in ~/.bach/store, 'gc' evicts least recently used"
+            + " files exceeding it. Suffix 'K', 'M' or 'G' for binary multiples of bytes."),
+
+    /** Evict from the download store after builds run from the command line. */
+    CACHE_COLLECT(
+        "false",
+        "Evict from the download store after each build run from the command line, at most once"
+            + " a day, delaying the exit. Daemons always do so in the background."),
+
+    /** Idle duration after which a daemon shuts itself down. */
+    DAEMON_TIMEOUT("PT1H", "Idle duration after which a daemon shuts itself down. ISO-8601."),
+
     /** Google Java Format Uniform Resource Identifier. */
     URI_TOOL_FORMAT(
         "https://github.com/"
             + "google/google-java-format/releases/download/google-java-format-1.7/"
             + "google-java-format-1.7-all-deps.jar",
-        "Google Java Format (all-deps) JAR.");
+        "Google Java Format (all-deps) JAR."),
+
+    /** JUnit Platform Console Standalone Uniform Resource Identifier. */
+    URI_TOOL_JUNIT(
+        Downloader.MAVEN_CENTRAL
+            + "/org/junit/platform/junit-platform-console-standalone/1.5.0/"
+            + "junit-platform-console-standalone-1.5.0.jar",
+        "JUnit Platform Console Standalone JAR.");
 
     final String key;
     final String defaultValue;
@@ -224,6 +478,11 @@ public class Bach {
         this.tools = Map.copyOf(tools);
         this.redirectIO = redirectIO;
       }
+
+      /** Default process builder mutator, piped output is transferred to Bach's writers. */
+      static ProcessBuilder pipeOutput(ProcessBuilder builder) {
+        return builder.redirectInput(ProcessBuilder.Redirect.INHERIT);
+      }
     }
 
     /** Directories, files and other paths. */
@@ -231,11 +490,21 @@ public class Bach {
       final Path home;
       final Path work;
       final Path sources;
+      final Path libraries;
+      final Path target;
+      /** Directory for Bach's own per-project files, like caches and daemon state. */
+      final Path cache;
+      /** Directory for Bach's own per-user files, like tools and the download store. */
+      final Path user;
 
       Paths(Path home, Path work) {
         this.home = home;
         this.work = work;
         this.sources = home.resolve(get(Property.PATH_SOURCES));
+        this.libraries = home.resolve(get(Property.PATH_LIBRARIES));
+        this.target = work.resolve(get(Property.PATH_TARGET));
+        this.cache = work.resolve(".bach");
+        this.user = home.resolve(get(Property.PATH_USER));
       }
     }
 
@@ -244,6 +513,21 @@ public class Bach {
 
       final List<String> modules = modules(get(Property.OPTIONS_MODULES));
       final List<String> javac = lines(Property.OPTIONS_JAVAC);
+      final int parallelism = Math.max(1, Integer.parseInt(get(Property.OPTIONS_PARALLELISM)));
+      final String output = get(Property.OPTIONS_OUTPUT);
+      final int downloadConcurrency =
+          Math.max(1, Integer.parseInt(get(Property.DOWNLOAD_CONCURRENCY)));
+      final int downloadHostConcurrency =
+          Math.max(1, Integer.parseInt(get(Property.DOWNLOAD_HOST_CONCURRENCY)));
+      final int downloadRetries = Math.max(0, Integer.parseInt(get(Property.DOWNLOAD_RETRIES)));
+      final Duration downloadBackoff = Duration.parse(get(Property.DOWNLOAD_BACKOFF));
+      final Duration downloadTimeout = Duration.parse(get(Property.DOWNLOAD_TIMEOUT));
+      final Duration downloadTimeToLive = Duration.parse(get(Property.DOWNLOAD_TTL));
+      final List<String> repositories =
+          List.of(get(Property.MAVEN_REPOSITORIES).split("\\s*,\\s*"));
+      final boolean race = Boolean.parseBoolean(get(Property.MAVEN_RACE));
+      final long cacheSize = Util.bytes(get(Property.CACHE_SIZE));
+      final boolean cacheCollect = Boolean.parseBoolean(get(Property.CACHE_COLLECT));
 
       private List<String> modules(String modules) {
         if ("*".equals(modules)) {
@@ -257,6 +541,7 @@ public class Bach {
     class Uris {
 
       final URI toolFormat = uri(Property.URI_TOOL_FORMAT);
+      final URI toolJUnit = uri(Property.URI_TOOL_JUNIT);
     }
 
     /** Create new properties potentially loading contents from the given path. */
@@ -279,7 +564,7 @@ public class Bach {
     public static Configuration of(Path path) {
       var debug = System.getProperty("debug".substring(1)) != null;
       var level = debug ? DEBUG : INFO;
-      var basic = new Basic(level, Map.of(), ProcessBuilder::inheritIO);
+      var basic = new Basic(level, Map.of(), Basic::pipeOutput);
 
       var parent = Optional.ofNullable(path.getParent()).orElse(Path.of(""));
       var home = Files.isDirectory(path) ? path : parent;
@@ -298,6 +583,7 @@ public class Bach {
     final Options options;
     final Uris uris;
     final Project project;
+    final ToolRegistry registry;
 
     private Configuration(Basic basic, Path home, Path work, Properties properties) {
       this.map = new EnumMap<>(Property.class);
@@ -307,6 +593,7 @@ public class Bach {
       this.options = new Options();
       this.uris = new Uris();
       this.project = new Project(this);
+      this.registry = new ToolRegistry(basic.tools);
     }
 
     String actual(Property property) {
@@ -361,50 +648,174 @@ public class Bach {
   /** Tool-invoking dispatcher. */
   class Runner {
 
+    /** Names of tools expanding {@code @file} arguments, see "Command-Line Argument Files". */
+    final Set<String> argumentFileTools =
+        Set.of("jar", "java", "javac", "javadoc", "jlink", "jmod");
+
+    /** Total length of all arguments above which they are spilled into an argument file. */
+    static final int ARGUMENT_FILE_THRESHOLD = 8 * 1024;
+
     /** Run named tool with specified arguments returning an error code. */
     int run(String name, Object... arguments) {
       log(INFO, ">> %s(%s)", name, Util.join(arguments));
+      var event = new ToolEvent();
+      event.begin();
+      var span = Trace.begin("tool", name);
+      var entry = configuration.registry.get(name);
+      try {
+        event.code = run(entry, name, arguments);
+        return event.code;
+      } finally {
+        end(event, span, entry, name, arguments.length);
+      }
+    }
 
-      var configuredTool = configuration.basic.tools.get(name);
-      if (configuredTool != null) {
-        log(DEBUG, "Running configured tool named '%s'...", configuredTool.name());
-        return configuredTool.run(Bach.this);
+    /** End the flight recorder event and the trace span of a tool run. */
+    private void end(
+        ToolEvent event, Trace.Span span, ToolRegistry.Entry entry, String name, int arguments) {
+      event.end();
+      var kind = entry == null ? "UNKNOWN" : entry.kind.name();
+      span.put("kind", kind).put("arguments", arguments).put("code", event.code).end();
+      if (event.shouldCommit()) {
+        event.name = name;
+        event.kind = kind;
+        event.arguments = arguments;
+        event.commit();
       }
+    }
 
-      var providedTool = ToolProvider.findFirst(name);
-      if (providedTool.isPresent()) {
-        var tool = providedTool.get();
-        log(DEBUG, "Running provided tool: %s", tool);
-        return tool.run(out, err, Util.strings(arguments));
+    private int run(ToolRegistry.Entry entry, String name, Object... arguments) {
+      if (entry == null) {
+        log(ERROR, "Unknown tool '%s', returning non-zero error code", name);
+        return 42;
+      }
+      switch (entry.kind) {
+        case CONFIGURED:
+          var configuredTool = (Tool) entry.tool;
+          log(DEBUG, "Running configured tool named '%s'...", configuredTool.name());
+          return configuredTool.run(Bach.this);
+        case PROVIDED:
+          var providedTool = (ToolProvider) entry.tool;
+          log(DEBUG, "Running provided tool: %s", providedTool);
+          var strings = Util.strings(arguments);
+          var argumentFile = spill(name, strings);
+          try {
+            var args = argumentFile == null ? strings : new String[] {"@" + argumentFile};
+            return providedTool.run(out, err, args);
+          } finally {
+            Util.delete(argumentFile);
+          }
+        case API:
+          var apiTool = (Tool) entry.tool;
+          log(DEBUG, "Running API tool named %s", apiTool.name());
+          return apiTool.run(Bach.this);
+        case EXECUTABLE:
+          var processArguments = Util.strings(arguments);
+          var processArgumentFile = spill(name, processArguments);
+          var processBuilder = newProcessBuilder(entry, processArguments, processArgumentFile);
+          try {
+            return run(processBuilder);
+          } finally {
+            Util.delete(processArgumentFile);
+          }
       }
+      throw new AssertionError("Unsupported tool kind: " + entry.kind);
+    }
 
-      var apiTool = Tool.API.get(name);
-      if (apiTool != null) {
-        log(DEBUG, "Running API tool named %s", apiTool.name());
-        return apiTool.run(Bach.this);
+    /**
+     * Run named tool asynchronously.
+     *
+     * <p>Executable programs are started immediately and complete via {@link Process#onExit()},
+     * without blocking a thread while waiting. Their piped output is drained by tasks on the {@link
+     * #ASYNC} pool, which reuses idle threads instead of starting new ones for each process.
+     * Cancelling the returned future destroys the process and all its descendants. All other tools
+     * are run on the shared {@link #ASYNC} pool.
+     *
+     * @return a future completing with the error code of the tool
+     */
+    CompletableFuture<Integer> runAsync(String name, Object... arguments) {
+      var entry = configuration.registry.get(name);
+      if (entry == null || entry.kind != ToolRegistry.Kind.EXECUTABLE) {
+        return CompletableFuture.supplyAsync(() -> run(name, arguments), ASYNC);
+      }
+      log(INFO, ">> %s(%s)", name, Util.join(arguments));
+      var event = new ToolEvent();
+      event.begin();
+      var span = Trace.begin("tool", name);
+      var strings = Util.strings(arguments);
+      var argumentFile = spill(name, strings);
+      CompletableFuture<Integer> future;
+      try {
+        future = runAsync(newProcessBuilder(entry, strings, argumentFile));
+      } catch (RuntimeException | Error e) {
+        Util.delete(argumentFile);
+        end(event, span, entry, name, arguments.length);
+        throw e;
       }
+      var result =
+          future.whenComplete(
+              (code, throwable) -> {
+                Util.delete(argumentFile);
+                if (code != null) {
+                  event.code = code;
+                }
+                end(event, span, entry, name, arguments.length);
+              });
+      result.whenComplete(
+          (code, throwable) -> {
+            if (throwable instanceof CancellationException) {
+              future.cancel(true);
+            }
+          });
+      return result;
+    }
 
-      var javaBinaries = Path.of(System.getProperty("java.home")).resolve("bin");
-      var javaExecutable = Util.findExecutable(List.of(javaBinaries), name);
-      if (javaExecutable.isPresent()) {
-        var processBuilder = new ProcessBuilder(javaExecutable.get().toString());
-        processBuilder.command().addAll(List.of(Util.strings(arguments)));
-        processBuilder.environment().put("BACH_VERSION", Bach.VERSION);
-        processBuilder.environment().put("BACH_HOME", configuration.paths.home.toString());
-        processBuilder.environment().put("BACH_WORK", configuration.paths.work.toString());
-        log(DEBUG, "Starting new process: %s", processBuilder);
-        return run(configuration.basic.redirectIO.apply(processBuilder));
+    /** Create process builder for the executable tool, logging and redirecting its I/O. */
+    private ProcessBuilder newProcessBuilder(
+        ToolRegistry.Entry entry, String[] arguments, Path argumentFile) {
+      var processBuilder = new ProcessBuilder(entry.tool.toString());
+      if (argumentFile == null) {
+        processBuilder.command().addAll(List.of(arguments));
+      } else {
+        processBuilder.command().add("@" + argumentFile);
       }
+      processBuilder.environment().put("BACH_VERSION", Bach.VERSION);
+      processBuilder.environment().put("BACH_HOME", configuration.paths.home.toString());
+      processBuilder.environment().put("BACH_WORK", configuration.paths.work.toString());
+      log(DEBUG, "Starting new process: %s", processBuilder);
+      return configuration.basic.redirectIO.apply(processBuilder);
+    }
 
-      log(ERROR, "Unknown tool '%s', returning non-zero error code", name);
-      return 42;
+    /**
+     * Spill a long argument list into a temporary argument file, if the named tool supports it.
+     *
+     * @return the argument file to pass as {@code @file}, or {@code null} if nothing was spilled
+     */
+    Path spill(String name, String[] arguments) {
+      if (!argumentFileTools.contains(name)) {
+        return null;
+      }
+      var length = 0L;
+      for (var argument : arguments) {
+        length += argument.length() + 1;
+      }
+      if (length < ARGUMENT_FILE_THRESHOLD) {
+        return null;
+      }
+      var file = Util.createArgumentFile(consumer -> List.of(arguments).forEach(consumer));
+      log(DEBUG, "Spilled %d arguments (%d characters) into %s", arguments.length, length, file);
+      return file;
     }
 
     /** Start new process and wait for its termination. */
     int run(ProcessBuilder processBuilder) {
       try {
         var process = processBuilder.start();
+        var span = Trace.begin(process, processBuilder.command());
+        var pumps = pump(processBuilder, process);
         var code = process.waitFor();
+        pumps.join();
+        span.put("code", code).end();
         if (code == 0) {
           log(DEBUG, "Process '%s' successfully terminated.", process);
         }
@@ -413,228 +824,4930 @@ public class Bach {
         throw new Error("Starting process failed: " + e);
       }
     }
-  }
 
-  /** Download helper. */
-  class Downloader {
-    final Path destination;
+    /** Start new process, cancelling the returned future destroys the process tree. */
+    CompletableFuture<Integer> runAsync(ProcessBuilder processBuilder) {
+      Process process;
+      try {
+        process = processBuilder.start();
+      } catch (Exception e) {
+        throw new Error("Starting process failed: " + e);
+      }
+      var span = Trace.begin(process, processBuilder.command());
+      var pumps = pump(processBuilder, process);
+      var future =
+          process
+              .onExit()
+              .thenCombine(
+                  pumps,
+                  (__, ___) -> {
+                    var code = process.exitValue();
+                    if (code == 0) {
+                      log(DEBUG, "Process '%s' successfully terminated.", process);
+                    }
+                    return code;
+                  });
+      future.whenComplete(
+          (code, throwable) -> {
+            span.put("code", code).end();
+            if (throwable instanceof CancellationException) {
+              log(DEBUG, "Destroying process tree of '%s'", process);
+              process.descendants().forEach(ProcessHandle::destroy);
+              process.destroy();
+            }
+          });
+      return future;
+    }
 
-    Downloader(Path destination) {
-      this.destination = destination;
+    /** Start transferring piped output of the process into this Bach's writers. */
+    private CompletableFuture<Void> pump(ProcessBuilder processBuilder, Process process) {
+      var pumps = new ArrayList<CompletableFuture<Void>>();
+      if (processBuilder.redirectOutput().type() == ProcessBuilder.Redirect.Type.PIPE) {
+        pumps.add(Util.pump(process.getInputStream(), out));
+      }
+      if (processBuilder.redirectError().type() == ProcessBuilder.Redirect.Type.PIPE
+          && !processBuilder.redirectErrorStream()) {
+        pumps.add(Util.pump(process.getErrorStream(), err));
+      }
+      return CompletableFuture.allOf(pumps.toArray(CompletableFuture[]::new));
     }
+  }
 
-    /** Download an artifact from a Maven 2 repository specified by its GAV coordinates. */
-    Path download(String group, String artifact, String version) {
-      log(TRACE, "Downloader::download(%s, %s, %s)", group, artifact, version);
-      var host = "https://repo1.maven.org/maven2";
-      var path = group.replace('.', '/');
-      var file = artifact + '-' + version + ".jar";
-      var uri = URI.create(String.join("/", host, path, artifact, version, file));
-      return download(uri, Boolean.getBoolean("bach.offline"));
+  /** Named tool invocation, potentially depending on previously declared tasks. */
+  static class Task {
+
+    /**
+     * Parse task declarations from the given arguments.
+     *
+     * <p>A task is declared by its tool name, optionally followed by a colon and a comma-separated
+     * list of previously declared tasks it depends on: {@code "test:compile,format"}. An empty
+     * list, like in {@code "format:"}, declares a task without dependencies. The {@code "tool"}
+     * argument declares a task consuming all remaining arguments; it depends on all tasks declared
+     * before it.
+     *
+     * <p>Unless at least one task declares its dependencies, tasks run in declaration order: each
+     * task depends on the one declared before it, like {@code "clean build"} always did. Only with
+     * declared dependencies, tasks without dependencies may run concurrently.
+     */
+    static List<Task> parse(List<String> arguments) {
+      var tasks = new ArrayList<Task>();
+      var sequential = true;
+      for (var argument : arguments) {
+        if ("tool".equals(argument)) {
+          break;
+        }
+        sequential &= argument.indexOf(':') < 0;
+      }
+      var deque = new ArrayDeque<>(arguments);
+      while (!deque.isEmpty()) {
+        var argument = deque.removeFirst();
+        if ("tool".equals(argument)) {
+          var name = deque.removeFirst();
+          tasks.add(new Task(name, List.copyOf(deque), List.copyOf(tasks)));
+          break;
+        }
+        var colon = argument.indexOf(':');
+        if (colon < 0) {
+          var sequel = sequential && !tasks.isEmpty();
+          var previous = sequel ? List.of(tasks.get(tasks.size() - 1)) : List.<Task>of();
+          tasks.add(new Task(argument, List.of(), previous));
+          continue;
+        }
+        var name = argument.substring(0, colon);
+        var dependencies = new ArrayList<Task>();
+        for (var dependency : argument.substring(colon + 1).split(",")) {
+          if (!dependency.isBlank()) {
+            dependencies.add(find(tasks, dependency.strip(), name));
+          }
+        }
+        tasks.add(new Task(name, List.of(), dependencies));
+      }
+      return tasks;
     }
 
-    /** Download a file denoted by the specified uri. */
-    Path download(URI uri, boolean offline) {
-      log(TRACE, "Downloader::download(%s)", uri);
-      try {
-        var fileName = extractFileName(uri);
-        var target = Files.createDirectories(destination).resolve(fileName);
-        var url = uri.toURL(); // fails for non-absolute uri
-        if (offline) {
-          log(DEBUG, "Offline mode is active!");
-          if (Files.exists(target)) {
-            var file = target.getFileName().toString();
-            log(DEBUG, "Target already exists: %s, %d bytes.", file, Files.size(target));
-            return target;
-          }
-          var message = "Offline mode is active and target is missing: " + target;
-          log(ERROR, message);
-          throw new IllegalStateException(message);
+    /** Find the last task declared with the given name. */
+    private static Task find(List<Task> tasks, String name, String dependent) {
+      for (int i = tasks.size() - 1; i >= 0; i--) {
+        if (tasks.get(i).name.equals(name)) {
+          return tasks.get(i);
         }
-        return download(uri, url.openConnection());
-      } catch (IOException e) {
-        throw new UncheckedIOException("Download failed!", e);
       }
+      var message = "Task '%s' depends on '%s', which is not declared before it";
+      throw new IllegalArgumentException(String.format(message, dependent, name));
     }
 
-    /** Download a file using the given URL connection. */
-    Path download(URI uri, URLConnection connection) throws IOException {
-      var millis = connection.getLastModified(); // 0 means "unknown"
-      var lastModified = FileTime.fromMillis(millis == 0 ? System.currentTimeMillis() : millis);
-      log(TRACE, "Remote was modified on %s", lastModified);
-      var target = destination.resolve(extractFileName(connection));
-      log(TRACE, "Local target file is %s", target.toUri());
-      var file = target.getFileName().toString();
-      if (Files.exists(target)) {
-        var fileModified = Files.getLastModifiedTime(target);
-        log(TRACE, "Local last modified on %s", fileModified);
-        if (fileModified.equals(lastModified)) {
-          log(TRACE, "Timestamp match: %s, %d bytes.", file, Files.size(target));
-          connection.getInputStream().close(); // release all opened resources
-          return target;
+    final String name;
+    final List<String> arguments;
+    final List<Task> dependencies;
+
+    Task(String name, List<String> arguments, List<Task> dependencies) {
+      this.name = Util.assigned(name, "name");
+      this.arguments = List.copyOf(arguments);
+      this.dependencies = List.copyOf(dependencies);
+    }
+
+    @Override
+    public String toString() {
+      return name + '(' + Util.join(arguments.toArray()) + ')';
+    }
+  }
+
+  /** Task-graph executor running independent tasks concurrently on a bounded thread pool. */
+  class Scheduler {
+
+    /** Output channels and result of a single task. */
+    class Execution {
+      final Task task;
+      final Writer out, err;
+      CompletableFuture<Integer> future;
+
+      Execution(Task task) {
+        this.task = task;
+        if (prefix) {
+          var prefix = "[" + task.name + "] ";
+          this.out = new PrefixedLines(Bach.this.out, prefix);
+          this.err = new PrefixedLines(Bach.this.err, prefix);
+        } else {
+          this.out = new Capture(Capture.LIMIT);
+          this.err = new Capture(Capture.LIMIT);
+        }
+      }
+
+      /** Run the task using a Bach instance writing into this execution's channels. */
+      int run(AtomicBoolean failed) {
+        if (failed.get()) {
+          return 0; // skipped
+        }
+        var bach = fork(out, err);
+        try {
+          var code = bach.runner.run(task.name, task.arguments.toArray());
+          if (code != 0) {
+            failed.set(true);
+          }
+          return code;
+        } catch (RuntimeException | Error e) {
+          failed.set(true);
+          throw e;
         }
-        log(DEBUG, "Local target file differs from remote source -- replacing it...");
       }
-      log(INFO, ">> download(%s)", uri);
-      try (var sourceStream = connection.getInputStream()) {
-        try (var targetStream = Files.newOutputStream(target)) {
-          sourceStream.transferTo(targetStream);
+
+      /** Emit pending output to the shared writers and release all resources. */
+      void complete() {
+        try {
+          if (out instanceof Capture) {
+            ((Capture) out).transferTo(Bach.this.out);
+            ((Capture) err).transferTo(Bach.this.err);
+          }
+          out.close();
+          err.close();
+        } catch (IOException e) {
+          throw new UncheckedIOException("Emitting output of " + task + " failed", e);
         }
-        Files.setLastModifiedTime(target, lastModified);
+        Bach.this.out.flush();
+        Bach.this.err.flush();
       }
-      log(DEBUG, "Downloaded %s [%d bytes from %s]", file, Files.size(target), lastModified);
-      return target;
     }
 
-    /** Extract last path element from the supplied uri. */
-    String extractFileName(URI uri) {
-      var path = uri.getPath(); // strip query and fragment elements
-      return path.substring(path.lastIndexOf('/') + 1);
+    /** Print lines as they come prefixed with the task name, instead of blocks in order. */
+    final boolean prefix;
+
+    Scheduler() {
+      this(configuration.options.output.equals("prefix"));
     }
 
-    /** Extract target file name either from 'Content-Disposition' header or. */
-    String extractFileName(URLConnection connection) {
-      var contentDisposition = connection.getHeaderField("Content-Disposition");
-      if (contentDisposition != null && contentDisposition.indexOf('=') > 0) {
-        return contentDisposition.split("=")[1].replaceAll("\"", "");
+    Scheduler(boolean prefix) {
+      this.prefix = prefix;
+    }
+
+    /**
+     * Run all tasks respecting their dependencies.
+     *
+     * <p>No new task is started after the first task failed. Output of each task is either captured
+     * and printed as a block in declaration order, or printed line by line as it comes, each line
+     * prefixed with the name of its task.
+     *
+     * @return the first non-zero error code in declaration order, or zero
+     */
+    int run(List<Task> tasks) {
+      if (tasks.isEmpty()) {
+        return 0;
+      }
+      if (tasks.size() == 1) {
+        var task = tasks.get(0);
+        return runner.run(task.name, task.arguments.toArray());
       }
+      var parallelism = Math.min(tasks.size(), configuration.options.parallelism);
+      log(DEBUG, "Running %d tasks with a parallelism of %d", tasks.size(), parallelism);
+      var executor = Executors.newFixedThreadPool(parallelism);
+      var failed = new AtomicBoolean();
+      var executions = new LinkedHashMap<Task, Execution>();
       try {
-        return extractFileName(connection.getURL().toURI());
-      } catch (URISyntaxException e) {
-        throw new Error("URL connection returned invalid URL?!", e);
+        for (var task : tasks) {
+          var execution = new Execution(task);
+          var dependencies =
+              task.dependencies.stream()
+                  .map(dependency -> executions.get(dependency).future)
+                  .toArray(CompletableFuture<?>[]::new);
+          execution.future =
+              CompletableFuture.allOf(dependencies)
+                  .handleAsync((__, throwable) -> execution.run(failed), executor);
+          executions.put(task, execution);
+        }
+        var code = 0;
+        Throwable throwable = null;
+        for (var execution : executions.values()) {
+          try {
+            var result = execution.future.join();
+            if (code == 0) {
+              code = result;
+            }
+          } catch (CompletionException e) {
+            throwable = throwable == null ? e.getCause() : throwable;
+          }
+          try {
+            execution.complete();
+          } catch (RuntimeException e) {
+            throwable = throwable == null ? e : throwable;
+          }
+        }
+        if (throwable instanceof RuntimeException) {
+          throw (RuntimeException) throwable;
+        }
+        if (throwable instanceof Error) {
+          throw (Error) throwable;
+        }
+        if (throwable != null) {
+          throw new CompletionException(throwable);
+        }
+        return code;
+      } finally {
+        executor.shutdownNow();
       }
     }
   }
 
-  /** Format Java source files. */
-  class Formatter {
+  /**
+   * Output channel buffering characters in memory and spilling them to a temporary file once the
+   * given limit is exceeded. Writing never blocks on a consumer, so a chatty process pumping its
+   * output into a capture is never stalled.
+   */
+  static class Capture extends Writer {
 
-    /** Run format. */
-    int format(Object... args) {
-      log(TRACE, "format(%s)", Util.join(args));
-      var uri = configuration.uris.toolFormat;
-      var downloader = new Downloader(USER_HOME.resolve(".bach/tool/format"));
-      var jar = downloader.download(uri, Boolean.getBoolean("bach.offline"));
-      var arguments = new ArrayList<>();
-      arguments.add("-jar");
-      arguments.add(jar);
-      arguments.addAll(List.of(args));
-      return runner.run("java", arguments.toArray(Object[]::new));
+    /** Default number of characters kept in memory. */
+    static final int LIMIT = 1024 * 1024;
+
+    private final int limit;
+    private final StringBuilder buffer = new StringBuilder();
+    private Path file;
+    private Writer spill;
+
+    Capture(int limit) {
+      this.limit = limit;
     }
 
-    /** Run format. */
-    int format(Iterable<Path> roots, boolean replace) {
-      var files = Util.find(roots, Util::isJavaFile);
-      if (files.isEmpty()) {
-        return 0;
+    /** Test whether this capture spilled its content to disk. */
+    boolean isSpilled() {
+      synchronized (lock) {
+        return file != null;
       }
-      var args = new ArrayList<>();
-      args.addAll(replace ? List.of("--replace") : List.of("--dry-run", "--set-exit-if-changed"));
-      args.addAll(files);
-      return format(args.toArray(Object[]::new));
     }
-  }
 
-  /** Custom tool interface. */
-  @FunctionalInterface
-  public interface Tool {
+    @Override
+    public void write(char[] chars, int offset, int length) throws IOException {
+      synchronized (lock) {
+        if (spill == null && buffer.length() + length > limit) {
+          file = Files.createTempFile("bach-", ".out");
+          file.toFile().deleteOnExit();
+          spill = Files.newBufferedWriter(file);
+          spill.append(buffer);
+          buffer.setLength(0);
+        }
+        if (spill != null) {
+          spill.write(chars, offset, length);
+          return;
+        }
+        buffer.append(chars, offset, length);
+      }
+    }
 
-    /** Default tools. */
-    Map<String, Tool> API =
-        Map.of("format", Bach::format, "help", Bach::help, "version", Bach::version);
+    @Override
+    public void flush() throws IOException {
+      synchronized (lock) {
+        if (spill != null) {
+          spill.flush();
+        }
+      }
+    }
 
-    default String name() {
-      return getClass().getName();
+    /** Write all captured characters to the given writer. */
+    void transferTo(Writer writer) throws IOException {
+      synchronized (lock) {
+        if (spill == null) {
+          writer.append(buffer);
+          return;
+        }
+        spill.flush();
+        try (var reader = Files.newBufferedReader(file)) {
+          reader.transferTo(writer);
+        }
+      }
     }
 
-    int run(Bach bach);
+    @Override
+    public void close() throws IOException {
+      synchronized (lock) {
+        if (spill != null) {
+          spill.close();
+          Files.deleteIfExists(file);
+        }
+        buffer.setLength(0);
+      }
+    }
   }
 
-  /** Static helper. */
-  static class Util {
+  /** Output channel printing complete lines, each prefixed, to a shared target writer. */
+  static class PrefixedLines extends Writer {
+    private final PrintWriter target;
+    private final String prefix;
+    private final StringBuilder line = new StringBuilder();
 
-    Util() {
-      throw new Error();
+    PrefixedLines(PrintWriter target, String prefix) {
+      this.target = target;
+      this.prefix = prefix;
     }
 
-    /** Assigned returns P if P is non-nil and throws an exception if P is nil. */
-    static <T> T assigned(T object, String name) {
-      return Objects.requireNonNull(object, name + " must not be null");
-    }
-    /** List all paths matching the given filter starting at given root paths. */
-    static List<Path> find(Iterable<Path> roots, Predicate<Path> filter) {
-      var files = new ArrayList<Path>();
-      for (var root : roots) {
-        try (var stream = Files.walk(root)) {
-          stream.filter(filter).forEach(files::add);
-        } catch (Exception e) {
-          throw new Error("Scanning directory '" + root + "' failed: " + e, e);
+    @Override
+    public void write(char[] chars, int offset, int length) {
+      synchronized (lock) {
+        for (int i = offset; i < offset + length; i++) {
+          var c = chars[i];
+          if (c == '\n') {
+            emit();
+            continue;
+          }
+          if (c != '\r') {
+            line.append(c);
+          }
         }
       }
-      return files;
     }
 
-    /** Test supplied path for pointing to a Java source compilation unit. */
-    static boolean isJavaFile(Path path) {
-      if (Files.isRegularFile(path)) {
-        var name = path.getFileName().toString();
-        if (name.endsWith(".java")) {
-          return name.indexOf('.') == name.length() - 5; // single dot in filename
-        }
+    private void emit() {
+      synchronized (target) {
+        target.println(prefix + line);
+        target.flush();
       }
-      return false;
+      line.setLength(0);
     }
 
-    /** Test supplied path for pointing to a Java source compilation unit. */
-    static boolean isJarFile(Path path) {
-      return Files.isRegularFile(path) && path.getFileName().toString().endsWith(".jar");
+    @Override
+    public void flush() {
+      target.flush();
     }
 
-    /** Test supplied path for pointing to a Java module declaration source compilation unit. */
-    static boolean isModuleInfo(Path path) {
-      return Files.isRegularFile(path) && path.getFileName().toString().equals("module-info.java");
+    @Override
+    public void close() {
+      synchronized (lock) {
+        if (line.length() > 0) {
+          emit();
+        }
+      }
     }
+  }
 
-    /** List names of all directories found in given directory. */
-    static List<String> findDirectoryNames(Path directory) {
-      return findDirectoryEntries(directory, Files::isDirectory);
+  /** Name-indexed table of all tools, lazily built once on first access. */
+  static class ToolRegistry {
+
+    /** Kind of a registered tool, in descending lookup priority. */
+    enum Kind {
+      /** Custom tool passed via the basic configuration. */
+      CONFIGURED,
+      /** Tool provider found via the service loader. */
+      PROVIDED,
+      /** Default tool declared in {@link Tool#API}. */
+      API,
+      /** Executable program found in {@code ${java.home}/bin}. */
+      EXECUTABLE
     }
 
-    /** List paths of all entries found in given directory after applying the filter. */
-    static List<String> findDirectoryEntries(Path directory, DirectoryStream.Filter<Path> filter) {
-      var names = new ArrayList<String>();
-      try (var stream = Files.newDirectoryStream(directory, filter)) {
-        stream.forEach(entry -> names.add(entry.getFileName().toString()));
-      } catch (IOException e) {
-        throw new UncheckedIOException("Scanning directory entries failed: " + directory, e);
+    /** Registered tool. */
+    static class Entry {
+      final String name;
+      final Kind kind;
+      /** Either a {@link Tool}, a {@link ToolProvider} or the {@link Path} of an executable. */
+      final Object tool;
+
+      Entry(String name, Kind kind, Object tool) {
+        this.name = name;
+        this.kind = kind;
+        this.tool = tool;
+      }
+
+      @Override
+      public String toString() {
+        return name + " -> " + kind + " " + tool;
       }
-      Collections.sort(names);
-      return names;
     }
 
-    /** Find native foundation tool, an executable program in given paths. */
-    static Optional<Path> findExecutable(Iterable<Path> paths, String name) {
-      try {
-        for (var path : paths) {
-          for (var suffix : List.of("", ".exe")) {
-            var program = path.resolve(name + suffix);
-            if (Files.isRegularFile(program) && Files.isExecutable(program)) {
-              return Optional.of(program);
-            }
+    private final Map<String, Tool> configured;
+    private volatile Map<String, Entry> entries;
+    private long millis;
+
+    ToolRegistry(Map<String, Tool> configured) {
+      this.configured = Map.copyOf(configured);
+    }
+
+    /** Look up the tool registered under the given name, returning {@code null} if not found. */
+    Entry get(String name) {
+      index();
+      return entries.get(name);
+    }
+
+    /** Build the index unless already done, returning {@code true} if this call built it. */
+    boolean index() {
+      if (entries != null) {
+        return false;
+      }
+      synchronized (this) {
+        if (entries != null) {
+          return false;
+        }
+        var start = System.nanoTime();
+        var map = new HashMap<String, Entry>();
+        configured.forEach((name, tool) -> map.put(name, new Entry(name, Kind.CONFIGURED, tool)));
+        for (var provider : ServiceLoader.load(ToolProvider.class)) {
+          map.putIfAbsent(provider.name(), new Entry(provider.name(), Kind.PROVIDED, provider));
+        }
+        var javac = map.get("javac");
+        if (javac != null && javac.kind == Kind.PROVIDED) {
+          map.put("javac", new Entry("javac", Kind.PROVIDED, Javac.SHARED));
+        }
+        Tool.API.forEach((name, tool) -> map.putIfAbsent(name, new Entry(name, Kind.API, tool)));
+        var binaries = Path.of(System.getProperty("java.home")).resolve("bin");
+        if (Files.isDirectory(binaries)) {
+          for (var file : Util.findDirectoryEntries(binaries, Util::isExecutableFile)) {
+            var name = file.endsWith(".exe") ? file.substring(0, file.length() - 4) : file;
+            var path = binaries.resolve(file);
+            map.putIfAbsent(name, new Entry(name, Kind.EXECUTABLE, path));
           }
         }
-      } catch (InvalidPathException e) {
-        // fall-through
+        millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        entries = Map.copyOf(map);
+        return true;
       }
-      return Optional.empty();
     }
 
-    /** Gets a property value indicated by the specified {@code key}. */
-    static String get(String key, Properties properties, Supplier<Object> defaultValueSupplier) {
-      return Optional.ofNullable(System.getProperty(assigned(key, "key")))
-          .or(() -> Optional.ofNullable(assigned(properties, "properties").getProperty(key)))
-          .or(() -> Optional.ofNullable(System.getenv("BACH_" + key.toUpperCase())))
-          .orElse(Objects.toString(assigned(defaultValueSupplier, "defaultValueSupplier").get()));
+    /** Describe this registry, building its index if not already done. */
+    @Override
+    public String toString() {
+      index();
+      return String.format("%d tools indexed in %d ms", entries.size(), millis);
+    }
+  }
+
+  /**
+   * Long-lived build server keeping this Bach instance, its configuration and tool registry warm.
+   *
+   * <p>The daemon listens on a loopback socket and publishes its port and a secret token in a
+   * properties file stored in the project's cache directory. Requests are served one at a time. The
+   * daemon shuts down when idle for the given timeout, when a client of a different Bach version
+   * connects, or when the project's properties changed since the daemon was started. Changes to the
+   * properties files, libraries, and tools made outside of the daemon are detected by comparing the
+   * size and modification time of all their files with a snapshot taken after the last request.
+   */
+  class Daemon {
+    /** Time to wait for a connected client to send its request, in milliseconds. */
+    private static final int READ_TIMEOUT = 10_000;
+
+    final Path file;
+    final Duration timeout;
+    /** Configuration piping process output to the client. */
+    final Configuration configuration;
+    /** Size and modification time of all input files, taken after the last request. */
+    private Map<Path, String> inputs = Map.of();
+
+    Daemon(Duration timeout) {
+      var basic = Bach.this.configuration.basic;
+      var paths = Bach.this.configuration.paths;
+      var piped =
+          new Configuration.Basic(basic.threshold, basic.tools, Configuration.Basic::pipeOutput);
+      this.file = paths.cache.resolve("daemon.properties");
+      this.timeout = timeout;
+      this.configuration = Configuration.of(piped, paths.home, paths.work);
+    }
+
+    /** Accept and serve client requests until idle or evicted. */
+    int serve() {
+      var token = UUID.randomUUID().toString();
+      var address = InetAddress.getLoopbackAddress();
+      try (var server = new ServerSocket(0, 50, address)) {
+        server.setSoTimeout(Math.toIntExact(timeout.toMillis()));
+        inputs = snapshot();
+        publish(server.getLocalPort(), token);
+        log(INFO, "Daemon listening on %s:%d", address.getHostAddress(), server.getLocalPort());
+        while (true) {
+          Socket socket;
+          try {
+            socket = server.accept();
+          } catch (SocketTimeoutException e) {
+            log(INFO, "Daemon was idle for %s, shutting down", timeout);
+            return 0;
+          }
+          try (socket) {
+            socket.setSoTimeout(READ_TIMEOUT);
+            if (!serve(socket, token)) {
+              return 0;
+            }
+          } catch (IOException e) {
+            log(WARNING, "Daemon dropped connection: %s", e);
+          }
+        }
+      } catch (IOException e) {
+        throw new UncheckedIOException("Daemon failed", e);
+      } finally {
+        try {
+          if (Files.exists(file) && token.equals(Util.loadProperties(file).getProperty("token"))) {
+            Files.delete(file);
+          }
+        } catch (IOException e) {
+          log(WARNING, "Deleting daemon file failed: %s", e);
+        }
+      }
+    }
+
+    /** Write port and token to the daemon file, readable by the current user only. */
+    private void publish(int port, String token) throws IOException {
+      var properties = new Properties();
+      properties.setProperty("port", Integer.toString(port));
+      properties.setProperty("token", token);
+      properties.setProperty("version", VERSION);
+      properties.setProperty("pid", Long.toString(ProcessHandle.current().pid()));
+      var temporary = Files.createTempFile(Files.createDirectories(file.getParent()), "daemon", "");
+      try {
+        Files.setPosixFilePermissions(temporary, PosixFilePermissions.fromString("rw-------"));
+      } catch (UnsupportedOperationException e) {
+        // not a POSIX file system
+      }
+      try (var writer = Files.newBufferedWriter(temporary)) {
+        properties.store(writer, "Bach.java daemon");
+      }
+      Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /** Serve a single request, returning {@code false} if this daemon evicted itself. */
+    private boolean serve(Socket socket, String token) throws IOException {
+      var input = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+      var output = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+      if (!token.equals(input.readUTF())) {
+        log(WARNING, "Daemon rejected request with invalid token");
+        return true;
+      }
+      var version = input.readUTF();
+      var arguments = new ArrayList<String>();
+      for (int i = input.readInt(); i > 0; i--) {
+        arguments.add(input.readUTF());
+      }
+      var reason = evictionReason(version);
+      if (reason != null) {
+        log(INFO, "Daemon evicted: %s", reason);
+        output.writeByte(Client.REJECTED);
+        output.flush();
+        return false;
+      }
+      log(DEBUG, "Daemon serves %s", arguments);
+      var out = new PrintWriter(new Client.Channel(output, Client.OUT), true);
+      var err = new PrintWriter(new Client.Channel(output, Client.ERR), true);
+      int code;
+      try {
+        code = new Bach(out, err, configuration).main(arguments);
+      } catch (RuntimeException | Error e) {
+        e.printStackTrace(err);
+        code = 1;
+      }
+      out.flush();
+      err.flush();
+      synchronized (output) {
+        output.writeByte(Client.EXIT);
+        output.writeInt(code);
+        output.flush();
+      }
+      inputs = snapshot(); // tasks may have downloaded libraries and tools themselves
+      gcAsync();
+      return true;
+    }
+
+    /** Return the reason why this daemon must not serve the given client, or {@code null}. */
+    private String evictionReason(String clientVersion) {
+      if (!VERSION.equals(clientVersion)) {
+        return "client version " + clientVersion + " differs from " + VERSION;
+      }
+      if (!configuration.properties.equals(Configuration.properties(configuration.paths.home))) {
+        return "properties changed";
+      }
+      if ("*".equals(configuration.get(Property.OPTIONS_MODULES))) {
+        var sources = configuration.paths.sources;
+        var modules = Files.isDirectory(sources) ? Util.findDirectoryNames(sources) : List.of();
+        if (!configuration.options.modules.equals(modules)) {
+          return "modules changed from " + configuration.options.modules + " to " + modules;
+        }
+      }
+      var snapshot = snapshot();
+      if (!inputs.equals(snapshot)) {
+        var changed = new TreeSet<>(inputs.keySet());
+        changed.addAll(snapshot.keySet());
+        changed.removeIf(path -> Objects.equals(inputs.get(path), snapshot.get(path)));
+        return "files changed: " + changed;
+      }
+      return null;
+    }
+
+    /** Describe properties files, libraries, and tools by the size and time of their files. */
+    private Map<Path, String> snapshot() {
+      var paths = configuration.paths;
+      var roots = new ArrayList<Path>();
+      var directory = Objects.toString(paths.home.getFileName(), Property.NAME.defaultValue);
+      for (var name : List.of(directory, "bach", "")) {
+        roots.add(paths.home.resolve(name + ".properties"));
+      }
+      roots.add(paths.libraries);
+      roots.add(paths.user.resolve("tool"));
+      var snapshot = new HashMap<Path, String>();
+      for (var root : roots) {
+        if (!Files.exists(root)) {
+          continue;
+        }
+        try (var stream = Files.walk(root)) {
+          stream
+              .map(Path::toFile)
+              .filter(File::isFile)
+              .forEach(
+                  file -> snapshot.put(file.toPath(), file.length() + " " + file.lastModified()));
+        } catch (IOException | UncheckedIOException e) {
+          snapshot.put(root, "unreadable"); // a file vanished while walking, that's a change, too
+        }
+      }
+      return snapshot;
+    }
+  }
+
+  /**
+   * Thin client forwarding argument lists to a running {@link Daemon}.
+   *
+   * <p>Launch it via {@code java -cp bach.jar Bach$Client <tasks...>} from the project's directory.
+   * If no daemon is running, or the daemon rejects the request, all tasks are run in-process.
+   */
+  static class Client {
+
+    /** Frame kinds sent from the daemon to the client. */
+    static final int EXIT = 0, OUT = 1, ERR = 2, REJECTED = 3;
+
+    /** Main entry-point of the thin client. */
+    public static void main(String... arguments) {
+      var file = Path.of(".bach", "daemon.properties");
+      var args = List.of(Util.assigned(arguments, "arguments"));
+      var code = connect(file, VERSION, args, System.out, System.err);
+      if (code.isEmpty()) {
+        Bach.main(arguments);
+        return;
+      }
+      if (code.getAsInt() != 0) {
+        var message = "Bach.Client.main(%s) failed with error code: %d";
+        throw new Error(String.format(message, Util.join(arguments), code.getAsInt()));
+      }
+    }
+
+    /**
+     * Send the arguments to the daemon described by the given file and stream its output.
+     *
+     * @return the error code of the remote run, or an empty optional if no daemon served it
+     */
+    static OptionalInt connect(
+        Path file, String version, List<String> arguments, OutputStream out, OutputStream err) {
+      if (!Files.isRegularFile(file)) {
+        return OptionalInt.empty();
+      }
+      var properties = Util.loadProperties(file);
+      var port = Integer.parseInt(properties.getProperty("port"));
+      try (var socket = new Socket(InetAddress.getLoopbackAddress(), port)) {
+        var output = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+        output.writeUTF(properties.getProperty("token"));
+        output.writeUTF(version);
+        output.writeInt(arguments.size());
+        for (var argument : arguments) {
+          output.writeUTF(argument);
+        }
+        output.flush();
+        var input = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        while (true) {
+          var kind = input.readByte();
+          switch (kind) {
+            case EXIT:
+              return OptionalInt.of(input.readInt());
+            case REJECTED:
+              return OptionalInt.empty();
+            case OUT:
+            case ERR:
+              var bytes = new byte[input.readInt()];
+              input.readFully(bytes);
+              var stream = kind == OUT ? out : err;
+              stream.write(bytes);
+              stream.flush();
+              continue;
+            default:
+              throw new IOException("Unexpected frame kind: " + kind);
+          }
+        }
+      } catch (ConnectException e) {
+        return OptionalInt.empty(); // stale daemon file
+      } catch (IOException e) {
+        throw new UncheckedIOException("Talking to daemon failed", e);
+      }
+    }
+
+    /** Writer sending each chunk of characters as a frame of the given kind. */
+    static class Channel extends Writer {
+      final DataOutputStream output;
+      final int kind;
+
+      Channel(DataOutputStream output, int kind) {
+        this.output = output;
+        this.kind = kind;
+      }
+
+      @Override
+      public void write(char[] buffer, int offset, int length) throws IOException {
+        var bytes = new String(buffer, offset, length).getBytes(StandardCharsets.UTF_8);
+        synchronized (output) {
+          output.writeByte(kind);
+          output.writeInt(bytes.length);
+          output.write(bytes);
+        }
+      }
+
+      @Override
+      public void flush() throws IOException {
+        synchronized (output) {
+          output.flush();
+        }
+      }
+
+      @Override
+      public void close() throws IOException {
+        flush();
+      }
+    }
+  }
+
+  /** Shared HTTP client and transfer limits, created on first use. */
+  static class Http {
+    static final HttpClient CLIENT =
+        HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_2)
+            .followRedirects(HttpClient.Redirect.NORMAL)
+            .build();
+
+    /** Repositories that could not be reached, they are not asked again by this process. */
+    static final Set<String> UNREACHABLE = ConcurrentHashMap.newKeySet();
+
+    /** Transfers waiting to be started, guards itself and the counters of running transfers. */
+    private static final List<Slot> PENDING = new ArrayList<>();
+
+    private static final Map<String, Integer> RUNNING_PER_HOST = new HashMap<>();
+    private static int running;
+
+    /**
+     * Start the transfer as soon as the total and per-host limits of transfers allow it.
+     *
+     * <p>Limits are shared by all downloaders of this process, each transfer is started only while
+     * fewer transfers than the limits it was scheduled with are running.
+     */
+    static CompletableFuture<Path> schedule(
+        String host, int total, int perHost, Supplier<CompletableFuture<Path>> start) {
+      var slot = new Slot(host, total, perHost, start);
+      synchronized (PENDING) {
+        PENDING.add(slot);
+      }
+      drain();
+      return slot.future;
+    }
+
+    /** Start pending transfers in order, skipping those whose host is saturated. */
+    private static void drain() {
+      var ready = new ArrayList<Slot>();
+      synchronized (PENDING) {
+        var iterator = PENDING.iterator();
+        while (iterator.hasNext()) {
+          var slot = iterator.next();
+          var count = RUNNING_PER_HOST.getOrDefault(slot.host, 0);
+          if (running >= slot.total || count >= slot.perHost) {
+            continue;
+          }
+          iterator.remove();
+          RUNNING_PER_HOST.put(slot.host, count + 1);
+          running++;
+          ready.add(slot);
+        }
+      }
+      ready.forEach(Slot::start);
+    }
+
+    /** Pending transfer. */
+    private static class Slot {
+      final String host;
+      final int total, perHost;
+      final Supplier<CompletableFuture<Path>> start;
+      final CompletableFuture<Path> future = new CompletableFuture<>();
+
+      Slot(String host, int total, int perHost, Supplier<CompletableFuture<Path>> start) {
+        this.host = host;
+        this.total = total;
+        this.perHost = perHost;
+        this.start = start;
+      }
+
+      void start() {
+        CompletableFuture<Path> started;
+        try {
+          started = start.get();
+        } catch (RuntimeException e) {
+          started = CompletableFuture.failedFuture(e);
+        }
+        started.whenComplete(
+            (path, throwable) -> {
+              synchronized (PENDING) {
+                running--;
+                RUNNING_PER_HOST.merge(host, -1, Integer::sum);
+              }
+              drain();
+              if (throwable == null) {
+                future.complete(path);
+                return;
+              }
+              future.completeExceptionally(Util.unwrap(throwable));
+            });
+      }
+    }
+  }
+
+  /**
+   * Download helper.
+   *
+   * <p>All downloads share a single {@link HttpClient}, reusing its connections and multiplexing
+   * concurrent requests to the same host over HTTP/2. The number of transfers in flight in this
+   * process is limited by {@link Property#DOWNLOAD_CONCURRENCY} in total and by {@link
+   * Property#DOWNLOAD_HOST_CONCURRENCY} per host, across all downloaders.
+   *
+   * <p>A file found in the destination directory without validators, like one put there by hand or
+   * by an older version of Bach, is considered stale: it is downloaded again, unless offline mode
+   * is active.
+   */
+  class Downloader {
+    final Path destination;
+    final Store store;
+
+    /** Maven Central, the default Maven 2 repository. */
+    static final String MAVEN_CENTRAL = "https://repo1.maven.org/maven2";
+
+    /** Upper bound of the delay between two attempts to download a file. */
+    static final long MAXIMUM_BACKOFF_MILLIS = 60_000;
+
+    Downloader(Path destination) {
+      this(destination, new Store());
+    }
+
+    Downloader(Path destination, Store store) {
+      this.destination = destination;
+      this.store = store;
+    }
+
+    /** Download an artifact from the configured Maven 2 repositories by its GAV coordinates. */
+    Path download(String group, String artifact, String version) {
+      log(TRACE, "Downloader::download(%s, %s, %s)", group, artifact, version);
+      var repositories = configuration.options.repositories;
+      var offline = Boolean.getBoolean("bach.offline");
+      return join(downloadAsync(repositories, group, artifact, version, "jar", offline));
+    }
+
+    /** Create the uri of a JAR artifact in Maven Central specified by its GAV coordinates. */
+    URI uri(String group, String artifact, String version) {
+      return uri(MAVEN_CENTRAL, group, artifact, version, "jar");
+    }
+
+    /** Create the uri of an artifact in a Maven 2 repository specified by its GAV coordinates. */
+    URI uri(String repository, String group, String artifact, String version, String type) {
+      var host =
+          repository.endsWith("/") ? repository.substring(0, repository.length() - 1) : repository;
+      var path = group.replace('.', '/');
+      var file = artifact + '-' + version + '.' + type;
+      return URI.create(String.join("/", host, path, artifact, version, file));
+    }
+
+    /** Download a file denoted by the specified uri. */
+    Path download(URI uri, boolean offline) {
+      log(TRACE, "Downloader::download(%s)", uri);
+      return join(downloadAsync(uri, offline));
+    }
+
+    /** Wait for the download to complete, unwrapping the cause of its failure. */
+    private Path join(CompletableFuture<Path> download) {
+      try {
+        return download.join();
+      } catch (CompletionException e) {
+        var cause = e.getCause();
+        if (cause instanceof RuntimeException) {
+          throw (RuntimeException) cause;
+        }
+        if (cause instanceof Error) {
+          throw (Error) cause;
+        }
+        if (cause instanceof IOException) {
+          var message = "Download failed: " + cause.getMessage();
+          throw new UncheckedIOException(message, (IOException) cause);
+        }
+        throw new Error("Download failed!", cause);
+      }
+    }
+
+    /** Download all files denoted by the given uris concurrently, keyed by their uri. */
+    Map<URI, CompletableFuture<Path>> downloadAll(Collection<URI> uris, boolean offline) {
+      var futures = new LinkedHashMap<URI, CompletableFuture<Path>>();
+      for (var uri : uris) {
+        futures.computeIfAbsent(uri, key -> downloadAsync(key, offline));
+      }
+      return futures;
+    }
+
+    /**
+     * Download a file denoted by the specified uri asynchronously.
+     *
+     * @return a future completing with the path of the local file as soon as it landed
+     */
+    CompletableFuture<Path> downloadAsync(URI uri, boolean offline) {
+      return fetch(uri, offline).thenApply(store::touch);
+    }
+
+    /** Make the file denoted by the uri available locally, transferring it only if needed. */
+    private CompletableFuture<Path> fetch(URI uri, boolean offline) {
+      Path target;
+      try {
+        target = Files.createDirectories(destination).resolve(extractFileName(uri));
+      } catch (IOException e) {
+        return CompletableFuture.failedFuture(new UncheckedIOException("Download failed!", e));
+      }
+      if ("file".equals(uri.getScheme())) {
+        return CompletableFuture.supplyAsync(() -> copy(uri, target), ASYNC);
+      }
+      var scheme = uri.getScheme();
+      if (!"http".equals(scheme) && !"https".equals(scheme)) {
+        var message = "Expected a file, http, or https uri, but got: " + uri;
+        return CompletableFuture.failedFuture(new IllegalArgumentException(message));
+      }
+      var validators = new Validators(uri);
+      var present = validators.target();
+      if (present == null) {
+        var blob = store.find(uri);
+        if (blob.isPresent()) {
+          log(DEBUG, "Linking %s from store blob %s", target.getFileName(), blob.get());
+          return CompletableFuture.supplyAsync(
+              () -> cached(uri, store.link(blob.get(), target)), ASYNC);
+        }
+      }
+      if (offline) {
+        log(DEBUG, "Offline mode is active!");
+        var local = present != null ? present : target;
+        if (!Files.exists(local)) {
+          var message = "Offline mode is active and target is missing: " + local;
+          log(ERROR, message);
+          return CompletableFuture.failedFuture(new IllegalStateException(message));
+        }
+        return CompletableFuture.supplyAsync(() -> cached(uri, local), ASYNC);
+      }
+      if (present != null && validators.isFresh()) {
+        log(TRACE, "Cached %s was validated at %s", present.getFileName(), validators.checked());
+        return CompletableFuture.completedFuture(cached(uri, present));
+      }
+      if (present == null && Files.isRegularFile(target)) {
+        log(DEBUG, "Revalidating %s, which was stored without validators", target.getFileName());
+      }
+      var lock = store.lock(target);
+      return CompletableFuture.supplyAsync(() -> Lock.acquire(lock), ASYNC)
+          .thenCompose(acquired -> transfer(uri, acquired));
+    }
+
+    /**
+     * Test whether the file denoted by the uri was downloaded before, with or without validators.
+     */
+    private boolean isPresent(URI uri) {
+      var validators = new Validators(uri);
+      if (validators.target() != null) {
+        return true;
+      }
+      var target = destination.resolve(extractFileName(uri));
+      return Files.isRegularFile(target) && !Files.exists(validators.file);
+    }
+
+    /** Transfer the file while holding its lock, unless the previous holder just did that. */
+    private CompletableFuture<Path> transfer(URI uri, Lock lock) {
+      if (lock.contended) {
+        var message = "Waited %d ms for another download of %s";
+        log(DEBUG, message, lock.waited.toMillis(), extractFileName(uri));
+      }
+      CompletableFuture<Path> future;
+      try {
+        var validators = new Validators(uri); // reload, the previous holder may have updated them
+        var present = validators.target();
+        if (present != null && validators.isFresh()) {
+          future = CompletableFuture.completedFuture(cached(uri, present));
+        } else {
+          future = schedule(uri.getHost(), () -> new Transfer(uri, validators).send());
+        }
+      } catch (RuntimeException e) {
+        future = CompletableFuture.failedFuture(e);
+      }
+      return future.whenComplete((path, throwable) -> lock.release());
+    }
+
+    /**
+     * Download an artifact from the first of the given Maven 2 repositories that has it.
+     *
+     * <p>An artifact already present locally is not looked up again. Repositories are asked in
+     * order, unless {@link Property#MAVEN_RACE} is set: then all of them are probed concurrently
+     * and the artifact is downloaded from the first one that confirms to have it. A remote
+     * repository found to miss the artifact is not asked for it again until {@link
+     * Property#DOWNLOAD_TTL} has passed. A repository that could not be reached is skipped for the
+     * rest of the process.
+     */
+    CompletableFuture<Path> downloadAsync(
+        List<String> repositories,
+        String group,
+        String artifact,
+        String version,
+        String type,
+        boolean offline) {
+      var candidates = new LinkedHashMap<URI, String>();
+      for (var repository : repositories) {
+        var uri = uri(repository, group, artifact, version, type);
+        var local = "file".equals(uri.getScheme());
+        if (!local && (isPresent(uri) || store.find(uri).isPresent())) {
+          return downloadAsync(uri, offline);
+        }
+        if (!local && (offline || Http.UNREACHABLE.contains(repository))) {
+          continue;
+        }
+        if (!local && store.isMissing(uri)) {
+          log(TRACE, "Known to be missing: %s", uri);
+          continue;
+        }
+        candidates.put(uri, repository);
+      }
+      if (candidates.isEmpty()) {
+        var coordinates = String.join(":", group, artifact, version, type);
+        var message = "Artifact " + coordinates + " not found in " + repositories;
+        return CompletableFuture.failedFuture(
+            new UncheckedIOException(new FileNotFoundException(message)));
+      }
+      if (configuration.options.race && candidates.size() > 1) {
+        return race(candidates)
+            .thenCompose(
+                winner -> {
+                  var uris = new ArrayList<>(candidates.keySet());
+                  uris.remove(winner);
+                  uris.add(0, winner);
+                  return first(uris, candidates, 0);
+                });
+      }
+      return first(new ArrayList<>(candidates.keySet()), candidates, 0);
+    }
+
+    /** Download from the uri at the given index, falling back to the uris following it. */
+    private CompletableFuture<Path> first(
+        List<URI> uris, Map<URI, String> repositories, int index) {
+      var uri = uris.get(index);
+      return downloadAsync(uri, false)
+          .handle(
+              (path, throwable) -> {
+                if (throwable == null) {
+                  return CompletableFuture.completedFuture(path);
+                }
+                var cause = Util.unwrap(throwable);
+                failed(uri, repositories.get(uri), cause);
+                if (index + 1 == uris.size()) {
+                  return CompletableFuture.<Path>failedFuture(cause);
+                }
+                log(DEBUG, "%s -- trying next repository", cause);
+                return first(uris, repositories, index + 1);
+              })
+          .thenCompose(Function.identity());
+    }
+
+    /** Probe all repositories concurrently, completing with the uri of the first having it. */
+    private CompletableFuture<URI> race(Map<URI, String> repositories) {
+      var winner = new CompletableFuture<URI>();
+      var remaining = new AtomicInteger(repositories.size());
+      for (var entry : repositories.entrySet()) {
+        var uri = entry.getKey();
+        probe(uri)
+            .whenComplete(
+                (found, throwable) -> {
+                  if (throwable != null) {
+                    failed(uri, entry.getValue(), Util.unwrap(throwable));
+                  }
+                  if (Boolean.TRUE.equals(found) && winner.complete(uri)) {
+                    log(DEBUG, "Repository %s won the race for %s", entry.getValue(), uri);
+                    return;
+                  }
+                  if (remaining.decrementAndGet() == 0) {
+                    var message = "Artifact not found in any repository: " + uri.getPath();
+                    var exception = new FileNotFoundException(message);
+                    winner.completeExceptionally(new UncheckedIOException(exception));
+                  }
+                });
+      }
+      return winner;
+    }
+
+    /** Check whether the file denoted by the uri exists, remembering a missing one. */
+    private CompletableFuture<Boolean> probe(URI uri) {
+      if ("file".equals(uri.getScheme())) {
+        return CompletableFuture.completedFuture(Files.isRegularFile(Path.of(uri)));
+      }
+      var request =
+          HttpRequest.newBuilder(uri)
+              .method("HEAD", HttpRequest.BodyPublishers.noBody())
+              .timeout(configuration.options.downloadTimeout)
+              .build();
+      return Http.CLIENT
+          .sendAsync(request, HttpResponse.BodyHandlers.discarding())
+          .thenApply(
+              response -> {
+                var code = response.statusCode();
+                if (code == 404 || code == 410) {
+                  store.missing(uri);
+                }
+                return code == 200;
+              });
+    }
+
+    /** Return {@code true} if the server could not be reached or did not respond in time. */
+    private boolean isUnreachable(Throwable cause) {
+      return cause instanceof ConnectException || cause instanceof HttpTimeoutException;
+    }
+
+    /** Remember a missing artifact per remote repository, and unreachable repositories. */
+    private void failed(URI uri, String repository, Throwable throwable) {
+      for (var cause = throwable; cause != null; cause = cause.getCause()) {
+        if (cause instanceof FileNotFoundException && !"file".equals(uri.getScheme())) {
+          store.missing(uri);
+          return;
+        }
+        if (isUnreachable(cause)) {
+          log(WARNING, "Repository %s is unreachable: %s", repository, cause);
+          Http.UNREACHABLE.add(repository);
+          return;
+        }
+      }
+    }
+
+    /** Return the already present target file, reporting a cache hit. */
+    private Path cached(URI uri, Path target) {
+      if (!Files.exists(target)) {
+        var message = "Target is missing: " + target;
+        log(ERROR, message);
+        throw new IllegalStateException(message);
+      }
+      try {
+        var size = Files.size(target);
+        log(DEBUG, "Target already exists: %s, %d bytes.", target.getFileName(), size);
+        var event = new DownloadEvent();
+        if (event.shouldCommit()) {
+          event.uri = uri.toString();
+          event.bytes = size;
+          event.hit = true;
+          event.commit();
+        }
+        return target;
+      } catch (IOException e) {
+        throw new UncheckedIOException("Download failed!", e);
+      }
+    }
+
+    /**
+     * Validators of a downloaded file, stored in a hidden properties file next to it.
+     *
+     * <p>The entity tag and last modified date sent by the server are passed back in conditional
+     * requests, when the time the file was last checked lies further back than {@link
+     * Property#DOWNLOAD_TTL}.
+     */
+    class Validators {
+      final Path file;
+      final Properties properties;
+
+      Validators(URI uri) {
+        this.file = destination.resolve('.' + extractFileName(uri) + ".properties");
+        this.properties = Files.isRegularFile(file) ? Util.loadProperties(file) : new Properties();
+      }
+
+      /** Return the previously downloaded file, or {@code null} if it is not present. */
+      Path target() {
+        var name = properties.getProperty("file");
+        if (name == null) {
+          return null;
+        }
+        var target = destination.resolve(name);
+        return Files.exists(target) ? target : null;
+      }
+
+      Optional<String> etag() {
+        return Optional.ofNullable(properties.getProperty("etag"));
+      }
+
+      Optional<String> lastModified() {
+        return Optional.ofNullable(properties.getProperty("last-modified"));
+      }
+
+      Instant checked() {
+        return Instant.parse(properties.getProperty("checked", Instant.EPOCH.toString()));
+      }
+
+      boolean isFresh() {
+        var ttl = configuration.options.downloadTimeToLive;
+        return checked().plus(ttl).isAfter(Instant.now());
+      }
+
+      /** Validator of the partially downloaded file, to be sent as {@code If-Range}. */
+      Optional<String> partial() {
+        return Optional.ofNullable(properties.getProperty("partial"));
+      }
+
+      /** Remember the strongest validator of a response whose body is written to a part file. */
+      void partial(HttpHeaders headers) {
+        var validator = headers.firstValue("ETag").or(() -> headers.firstValue("Last-Modified"));
+        if (validator.equals(partial())) {
+          return;
+        }
+        validator.ifPresentOrElse(
+            value -> properties.setProperty("partial", value), () -> properties.remove("partial"));
+        Util.storeProperties(file, properties, "Validators of " + file.getFileName());
+      }
+
+      /** Forget the validator of a discarded part file. */
+      void discard() {
+        if (properties.remove("partial") == null) {
+          return;
+        }
+        if (properties.isEmpty()) {
+          Util.delete(file);
+          return;
+        }
+        Util.storeProperties(file, properties, "Validators of " + file.getFileName());
+      }
+
+      /** Remember the validators of a response and the time it was received. */
+      void store(Path target, HttpHeaders headers) {
+        properties.remove("partial");
+        properties.setProperty("file", target.getFileName().toString());
+        var etag = headers.firstValue("ETag");
+        var lastModified = headers.firstValue("Last-Modified");
+        etag.ifPresent(value -> properties.setProperty("etag", value));
+        lastModified.ifPresent(value -> properties.setProperty("last-modified", value));
+        properties.setProperty("checked", Instant.now().toString());
+        Util.storeProperties(file, properties, "Validators of " + target.getFileName());
+      }
+    }
+
+    /** Copy a local file, unless the target has the same last modified time. */
+    private Path copy(URI uri, Path target) {
+      try {
+        var source = Path.of(uri);
+        var lastModified = Files.getLastModifiedTime(source);
+        if (Files.exists(target) && Files.getLastModifiedTime(target).equals(lastModified)) {
+          log(TRACE, "Timestamp match: %s, %d bytes.", target.getFileName(), Files.size(target));
+          return target;
+        }
+        log(INFO, ">> download(%s)", uri);
+        var temporary = target.resolveSibling(target.getFileName() + "." + UUID.randomUUID());
+        try {
+          Files.copy(source, temporary);
+          Files.setLastModifiedTime(temporary, lastModified);
+          Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+          Files.deleteIfExists(temporary);
+        }
+        return target;
+      } catch (IOException e) {
+        throw new UncheckedIOException("Download failed!", e);
+      }
+    }
+
+    /** Start the transfer as soon as the shared limits of transfers allow it. */
+    private CompletableFuture<Path> schedule(String host, Supplier<CompletableFuture<Path>> start) {
+      var options = configuration.options;
+      var total = options.downloadConcurrency;
+      return Http.schedule(host, total, options.downloadHostConcurrency, start);
+    }
+
+    /** Delay before the given retry attempt, an exponential backoff with full jitter. */
+    Duration backoff(int attempt) {
+      var base = configuration.options.downloadBackoff.toMillis();
+      var ceiling = Math.min(base << Math.min(attempt - 1, 20), MAXIMUM_BACKOFF_MILLIS);
+      return Duration.ofMillis(ThreadLocalRandom.current().nextLong(ceiling + 1));
+    }
+
+    /**
+     * Transfer of a single file via HTTP.
+     *
+     * <p>The body is written to a {@code .part} file next to the target. When a transfer fails with
+     * an I/O error, the part file is kept and the request is retried with backoff, asking the
+     * server to send only the missing range. A server that can't be connected to or doesn't respond
+     * in time isn't asked again. The part file is published by an atomic rename after all available
+     * checksums match.
+     */
+    private class Transfer {
+      final URI uri;
+      final Validators validators;
+      final Path part;
+      final DownloadEvent event = new DownloadEvent();
+      final Trace.Span span;
+      final Map<String, MessageDigest> digests = new LinkedHashMap<>();
+      volatile CompletableFuture<Map<String, String>> checksums;
+
+      Transfer(URI uri, Validators validators) {
+        this.uri = uri;
+        this.validators = validators;
+        this.part = destination.resolve(extractFileName(uri) + ".part");
+        this.span = Trace.begin("download", uri.toString());
+        event.begin();
+        event.uri = uri.toString();
+      }
+
+      CompletableFuture<Path> send() {
+        return attempt(1).whenComplete(this::finish);
+      }
+
+      /** Send a request, retrying it on I/O errors until all attempts are exhausted. */
+      private CompletableFuture<Path> attempt(int attempt) {
+        return Http.CLIENT
+            .sendAsync(request(), this::subscribe)
+            .thenCompose(response -> expected().thenApply(sums -> complete(response, sums)))
+            .handle(
+                (path, throwable) -> {
+                  if (throwable == null) {
+                    return CompletableFuture.completedFuture(path);
+                  }
+                  var cause = Util.unwrap(throwable);
+                  if (!(cause instanceof IOException)
+                      || isUnreachable(cause)
+                      || attempt > configuration.options.downloadRetries) {
+                    return CompletableFuture.<Path>failedFuture(cause);
+                  }
+                  var delay = backoff(attempt);
+                  var message = "Download attempt %d of %s failed: %s -- retrying in %d ms";
+                  log(WARNING, message, attempt, uri, cause, delay.toMillis());
+                  var millis = delay.toMillis();
+                  var executor =
+                      CompletableFuture.delayedExecutor(millis, TimeUnit.MILLISECONDS, ASYNC);
+                  return CompletableFuture.runAsync(() -> {}, executor)
+                      .thenCompose(__ -> attempt(attempt + 1));
+                })
+            .thenCompose(Function.identity());
+      }
+
+      /** Create a request, conditional if the target is present, ranged if a part is present. */
+      HttpRequest request() {
+        var request = HttpRequest.newBuilder(uri).timeout(configuration.options.downloadTimeout);
+        if (validators.target() != null) {
+          validators.etag().ifPresent(etag -> request.header("If-None-Match", etag));
+          validators.lastModified().ifPresent(date -> request.header("If-Modified-Since", date));
+        }
+        var size = part.toFile().length();
+        var partial = validators.partial();
+        if (size > 0 && partial.isPresent()) {
+          request.header("Range", "bytes=" + size + "-");
+          request.header("If-Range", partial.get());
+        }
+        return request.build();
+      }
+
+      /** Return the checksums, fetched once concurrently with the first transfer of the body. */
+      CompletableFuture<Map<String, String>> expected() {
+        var checksums = this.checksums;
+        return checksums == null ? CompletableFuture.completedFuture(Map.of()) : checksums;
+      }
+
+      /** Decide, based on the response status, whether and where the body is transferred. */
+      BodySubscriber<Path> subscribe(HttpResponse.ResponseInfo info) {
+        var status = info.statusCode();
+        if (status == 304) {
+          var target = validators.target();
+          log(TRACE, "Not modified: %s, %d bytes.", target.getFileName(), target.toFile().length());
+          event.hit = true;
+          return BodySubscribers.replacing(target);
+        }
+        if (status != 200 && status != 206) {
+          return BodySubscribers.replacing(null);
+        }
+        if (checksums == null) {
+          checksums = checksums(uri);
+        }
+        validators.partial(info.headers());
+        digests.clear();
+        digests.put("SHA-1", Util.digest("SHA-1"));
+        digests.put("SHA-256", Util.digest("SHA-256"));
+        try {
+          if (status == 206) {
+            var size = Files.size(part);
+            var range = info.headers().firstValue("Content-Range").orElse("");
+            if (!range.startsWith("bytes " + size + "-")) {
+              Files.delete(part);
+              return BodySubscribers.replacing(null);
+            }
+            log(INFO, ">> download(%s) resuming at %d bytes", uri, size);
+            try (var channel = FileChannel.open(part)) {
+              var buffer = ByteBuffer.allocate(64 * 1024);
+              while (channel.read(buffer) != -1) {
+                for (var digest : digests.values()) {
+                  digest.update(buffer.flip().duplicate());
+                }
+                buffer.clear();
+              }
+            }
+            var subscriber = BodySubscribers.ofFile(part, StandardOpenOption.APPEND);
+            return new DigestingSubscriber(subscriber, digests.values());
+          }
+          log(INFO, ">> download(%s)", uri);
+          var options =
+              new OpenOption[] {
+                StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING
+              };
+          var subscriber = BodySubscribers.ofFile(part, options);
+          return new DigestingSubscriber(subscriber, digests.values());
+        } catch (IOException e) {
+          throw new UncheckedIOException("Download failed!", e);
+        }
+      }
+
+      /**
+       * Verify the transferred file and publish it by an atomic rename.
+       *
+       * <p>Failures worth retrying are thrown as a completion exception caused by an I/O exception,
+       * all other failures as an unchecked I/O exception.
+       */
+      Path complete(HttpResponse<Path> response, Map<String, String> checksums) {
+        var code = response.statusCode();
+        if (code == 304) {
+          validators.store(response.body(), response.headers());
+          return response.body();
+        }
+        if (code == 416) {
+          Util.delete(part); // range not satisfiable, start over
+        }
+        if (code == 206 && response.body() == null || code == 416 || code == 429 || code >= 500) {
+          var message = "Download failed with status code " + code + ": " + uri;
+          throw new CompletionException(new IOException(message));
+        }
+        if (code == 404 || code == 410) {
+          var message = "Download failed with status code " + code + ": " + uri;
+          throw new UncheckedIOException(new FileNotFoundException(message));
+        }
+        if (code != 200 && code != 206) {
+          var message = "Download failed with status code " + code + ": " + uri;
+          throw new UncheckedIOException(new IOException(message));
+        }
+        var actuals = new HashMap<String, String>();
+        digests.forEach((algorithm, digest) -> actuals.put(algorithm, Util.hex(digest.digest())));
+        if (checksums.isEmpty()) {
+          log(DEBUG, "No checksum available for %s", uri);
+        }
+        for (var checksum : checksums.entrySet()) {
+          var algorithm = checksum.getKey();
+          var actual = actuals.get(algorithm);
+          if (!actual.equals(checksum.getValue())) {
+            Util.delete(part);
+            validators.discard();
+            var message = "%s checksum mismatch for %s: expected %s, but computed %s";
+            var text = String.format(message, algorithm, uri, checksum.getValue(), actual);
+            throw new UncheckedIOException(new IOException(text));
+          }
+          log(DEBUG, "Verified %s checksum %s", algorithm, actual);
+        }
+        var lastModified = lastModified(response.headers());
+        var target = destination.resolve(extractFileName(uri, response.headers()));
+        try {
+          Files.setLastModifiedTime(part, lastModified);
+          Files.move(part, target, StandardCopyOption.ATOMIC_MOVE);
+          validators.store(target, response.headers());
+          var size = Files.size(target);
+          log(DEBUG, "Downloaded %s [%d bytes from %s]", target.getFileName(), size, lastModified);
+          try {
+            store.put(uri, target, actuals.get("SHA-256"));
+          } catch (UncheckedIOException e) {
+            log(WARNING, "Storing %s failed: %s", target.getFileName(), e.getMessage());
+          }
+          return target;
+        } catch (IOException e) {
+          throw new UncheckedIOException("Download failed!", e);
+        }
+      }
+
+      /** Report this transfer, a part file is kept for resuming it later. */
+      void finish(Path target, Throwable throwable) {
+        event.end();
+        if (target != null) {
+          event.bytes = target.toFile().length();
+        }
+        if (event.shouldCommit()) {
+          event.commit();
+        }
+        span.put("bytes", event.bytes).put("hit", event.hit).end();
+      }
+    }
+
+    /**
+     * Fetch the checksum files published next to the artifact, like Maven repositories do.
+     *
+     * @return a future completing with a map of available checksums keyed by algorithm name
+     */
+    CompletableFuture<Map<String, String>> checksums(URI uri) {
+      var sha1 = checksum(uri, ".sha1", 40);
+      var sha256 = checksum(uri, ".sha256", 64);
+      return sha1.thenCombine(
+          sha256,
+          (one, two) -> {
+            var map = new LinkedHashMap<String, String>();
+            one.ifPresent(value -> map.put("SHA-1", value));
+            two.ifPresent(value -> map.put("SHA-256", value));
+            return map;
+          });
+    }
+
+    /** Fetch a single checksum file, an absent or malformed file yields an empty optional. */
+    private CompletableFuture<Optional<String>> checksum(URI uri, String extension, int length) {
+      var timeout = configuration.options.downloadTimeout;
+      var request = HttpRequest.newBuilder(URI.create(uri + extension)).timeout(timeout).build();
+      return Http.CLIENT
+          .sendAsync(request, HttpResponse.BodyHandlers.ofString())
+          .thenApply(
+              response -> {
+                if (response.statusCode() != 200) {
+                  return Optional.<String>empty();
+                }
+                var value = response.body().strip().split("\\s+")[0].toLowerCase();
+                var valid = value.length() == length && value.matches("[0-9a-f]+");
+                return valid ? Optional.of(value) : Optional.<String>empty();
+              })
+          .exceptionally(throwable -> Optional.empty());
+    }
+
+    /** Extract the last modified time from the given headers, defaulting to "now". */
+    FileTime lastModified(HttpHeaders headers) {
+      var now = FileTime.fromMillis(System.currentTimeMillis());
+      try {
+        return headers
+            .firstValue("Last-Modified")
+            .map(value -> ZonedDateTime.parse(value, DateTimeFormatter.RFC_1123_DATE_TIME))
+            .map(dateTime -> FileTime.from(dateTime.toInstant()))
+            .orElse(now);
+      } catch (DateTimeParseException e) {
+        return now;
+      }
+    }
+
+    /** Extract last path element from the supplied uri. */
+    String extractFileName(URI uri) {
+      var path = uri.getPath(); // strip query and fragment elements
+      return path.substring(path.lastIndexOf('/') + 1);
+    }
+
+    /** Extract target file name either from 'Content-Disposition' header or the uri. */
+    String extractFileName(URI uri, HttpHeaders headers) {
+      var contentDisposition = headers.firstValue("Content-Disposition").orElse("");
+      if (contentDisposition.indexOf('=') > 0) {
+        return contentDisposition.split("=")[1].replaceAll("\"", "");
+      }
+      return extractFileName(uri);
+    }
+  }
+
+  /** Body subscriber updating message digests with all bytes passed on to its delegate. */
+  static class DigestingSubscriber implements BodySubscriber<Path> {
+    private final BodySubscriber<Path> delegate;
+    private final Collection<MessageDigest> digests;
+
+    DigestingSubscriber(BodySubscriber<Path> delegate, Collection<MessageDigest> digests) {
+      this.delegate = delegate;
+      this.digests = digests;
+    }
+
+    @Override
+    public CompletionStage<Path> getBody() {
+      return delegate.getBody();
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+      delegate.onSubscribe(subscription);
+    }
+
+    @Override
+    public void onNext(List<ByteBuffer> buffers) {
+      for (var buffer : buffers) {
+        for (var digest : digests) {
+          digest.update(buffer.duplicate());
+        }
+      }
+      delegate.onNext(buffers);
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+      delegate.onError(throwable);
+    }
+
+    @Override
+    public void onComplete() {
+      delegate.onComplete();
+    }
+  }
+
+  /**
+   * Content-addressed store of downloaded artifacts.
+   *
+   * <p>Each distinct content is stored once as a blob named by its SHA-256 digest. An index maps
+   * the uri an artifact was downloaded from to the digest of its content. Blobs are materialized
+   * into tool and library folders by hard links, falling back to copying them. Uris that were not
+   * found are remembered with the time they were looked up.
+   *
+   * <p>All store instances of this process serialize their updates on a single monitor, other
+   * processes are kept out by a file lock in the store's root directory.
+   */
+  class Store {
+    /** Accesses to a file within this many milliseconds of the recorded one are not recorded. */
+    static final long ACCESS_RESOLUTION_MILLIS = 60 * 1000;
+
+    /** Minimum number of milliseconds between two evictions started after builds. */
+    static final long COLLECTION_INTERVAL_MILLIS = 24 * 60 * 60 * 1000;
+
+    final Path root;
+    final Path index;
+    final Path missing;
+    final Path access;
+
+    Store() {
+      this(configuration.paths.user.resolve("store"));
+    }
+
+    Store(Path root) {
+      this.root = root;
+      this.index = root.resolve("index.properties");
+      this.missing = root.resolve("missing.properties");
+      this.access = root.resolve("access.properties");
+    }
+
+    /** Record the current time as the last access of the given file, returning the file. */
+    Path touch(Path file) {
+      synchronized (Store.class) {
+        var key = file.toAbsolutePath().normalize().toString();
+        var now = System.currentTimeMillis();
+        try {
+          if (Files.isRegularFile(access)) {
+            var recorded = Util.loadProperties(access).getProperty(key);
+            if (recorded != null && now - Long.parseLong(recorded) < ACCESS_RESOLUTION_MILLIS) {
+              return file;
+            }
+          }
+          var lock = Lock.acquire(root.resolve(".lock"));
+          try {
+            var properties =
+                Files.isRegularFile(access) ? Util.loadProperties(access) : new Properties();
+            properties.setProperty(key, Long.toString(now));
+            Util.storeProperties(access, properties, "Last access of files, in epoch milliseconds");
+          } finally {
+            lock.release();
+          }
+        } catch (UncheckedIOException e) {
+          log(WARNING, "Recording access to %s failed: %s", file.getFileName(), e.getMessage());
+        }
+        return file;
+      }
+    }
+
+    /** Keep the given file from being evicted as long as the current process is alive. */
+    void pin(Path file) {
+      synchronized (Store.class) {
+        var pid = ProcessHandle.current().pid();
+        var pins = root.resolve("pins").resolve(pid + ".properties");
+        var properties = Files.isRegularFile(pins) ? Util.loadProperties(pins) : new Properties();
+        if (properties.setProperty(file.toAbsolutePath().normalize().toString(), "") == null) {
+          Util.storeProperties(pins, properties, "Files in use by process " + pid);
+        }
+      }
+    }
+
+    /** Return {@code true} if the last eviction started after a build lies a day back. */
+    boolean isCollectionDue() {
+      var marker = root.resolve("gc");
+      var last = Files.exists(marker) ? marker.toFile().lastModified() : 0;
+      return System.currentTimeMillis() - last >= COLLECTION_INTERVAL_MILLIS;
+    }
+
+    /**
+     * Evict the least recently used files found in the cache directory until its size fits into the
+     * budget.
+     *
+     * <p>Hard links of the same file, like a blob and the downloaded files linked to it, are sized
+     * and evicted together, along with the validators of downloaded files. Files locked by a
+     * running download, files pinned by a living process and blobs of artifacts listed in the Maven
+     * lock file of the project are never evicted. Only the lock file of the current project is
+     * known: artifacts locked by other projects sharing the store are only kept while pinned.
+     *
+     * @param cache directory to evict files from
+     * @param budget maximum size of all files in the cache directory, in bytes
+     * @return number of bytes freed
+     */
+    long gc(Path cache, long budget) {
+      if (!Files.isDirectory(cache)) {
+        return 0;
+      }
+      var lock = Lock.acquire(root.resolve(".lock"));
+      try {
+        Files.write(root.resolve("gc"), new byte[0]);
+        var files = new LinkedHashMap<Object, Cached>();
+        var recorded = Files.isRegularFile(access) ? Util.loadProperties(access) : new Properties();
+        var size = 0L;
+        for (var file : Util.find(List.of(cache), this::isEvictable)) {
+          var attributes = Files.readAttributes(file, BasicFileAttributes.class);
+          var key = Objects.requireNonNullElse(attributes.fileKey(), file);
+          var cached = files.get(key);
+          if (cached == null) {
+            cached = new Cached(attributes.size());
+            files.put(key, cached);
+            size += attributes.size();
+          }
+          var path = file.toAbsolutePath().normalize();
+          var millis = recorded.getProperty(path.toString());
+          cached.files.add(path);
+          cached.accessed =
+              Math.max(
+                  cached.accessed,
+                  millis == null
+                      ? attributes.lastModifiedTime().toMillis()
+                      : Long.parseLong(millis));
+        }
+        log(DEBUG, "Download cache %s holds %d bytes, budget is %d bytes", cache, size, budget);
+        var freed = 0L;
+        if (size > budget) {
+          var pinned = pinned();
+          var locked = locked();
+          Predicate<Path> kept = // blobs are named by the digest of their content
+              file -> pinned.contains(file) || locked.contains(file.getFileName().toString());
+          var candidates = new ArrayList<>(files.values());
+          candidates.sort(Comparator.comparingLong(cached -> cached.accessed));
+          for (var cached : candidates) {
+            if (size - freed <= budget) {
+              break;
+            }
+            if (cached.files.stream().anyMatch(kept)) {
+              log(DEBUG, "Not evicting pinned %s", cached.files);
+              continue;
+            }
+            if (evict(cached)) {
+              freed += cached.size;
+            }
+          }
+          var evicted = size - budget <= freed ? "all" : "not all";
+          log(INFO, "Evicted %d bytes from %s, %s exceeding its budget", freed, cache, evicted);
+        }
+        prune(recorded);
+        return freed;
+      } catch (IOException e) {
+        throw new UncheckedIOException("Evicting from download cache failed: " + cache, e);
+      } finally {
+        lock.release();
+      }
+    }
+
+    /** Return {@code true} for downloaded files and blobs, skipping metadata and partial files. */
+    private boolean isEvictable(Path file) {
+      if (!Files.isRegularFile(file)) {
+        return false;
+      }
+      var name = file.getFileName().toString();
+      if (name.startsWith(".") || name.endsWith(".part")) {
+        return false;
+      }
+      var base = root.toAbsolutePath().normalize();
+      var parent = file.toAbsolutePath().normalize().getParent();
+      return !parent.equals(base)
+          && !parent.startsWith(base.resolve("locks"))
+          && !parent.startsWith(base.resolve("pins"));
+    }
+
+    /** Return all files pinned by living processes, deleting pins of terminated processes. */
+    private Set<Path> pinned() throws IOException {
+      var pinned = new HashSet<Path>();
+      var pins = root.resolve("pins");
+      if (!Files.isDirectory(pins)) {
+        return pinned;
+      }
+      try (var stream = Files.newDirectoryStream(pins, "*.properties")) {
+        for (var file : stream) {
+          var name = file.getFileName().toString();
+          var pid = Long.parseLong(name.substring(0, name.length() - 11));
+          if (ProcessHandle.of(pid).map(ProcessHandle::isAlive).orElse(false)) {
+            Util.loadProperties(file)
+                .stringPropertyNames()
+                .forEach(key -> pinned.add(Path.of(key)));
+          } else {
+            Files.deleteIfExists(file);
+          }
+        }
+      }
+      return pinned;
+    }
+
+    /** Return digests of the JAR and POM files of all artifacts in the project's lock file. */
+    private Set<String> locked() {
+      var locked = new HashSet<String>();
+      var lock = configuration.paths.cache.resolve("maven.lock");
+      if (!Files.isRegularFile(lock) || !Files.isRegularFile(index)) {
+        return locked;
+      }
+      var paths = new HashSet<String>(); // in the Maven 2 repository layout
+      var properties = Util.loadProperties(lock);
+      for (var key : properties.stringPropertyNames()) {
+        for (var coordinates : properties.getProperty(key).split(",")) {
+          var gav = coordinates.split(":");
+          if (gav.length == 3) {
+            var file = gav[1] + '-' + gav[2];
+            var path = String.join("/", "", gav[0].replace('.', '/'), gav[1], gav[2], file);
+            paths.add(path + ".jar");
+            paths.add(path + ".pom");
+          }
+        }
+      }
+      var digests = Util.loadProperties(index);
+      for (var uri : digests.stringPropertyNames()) {
+        if (paths.stream().anyMatch(uri::endsWith)) {
+          locked.add(digests.getProperty(uri));
+        }
+      }
+      return locked;
+    }
+
+    /** Delete all hard links of a cached file, unless one of them is locked. */
+    private boolean evict(Cached cached) throws IOException {
+      var locks = new ArrayList<Lock>();
+      try {
+        for (var file : cached.files) {
+          var lock = Lock.tryAcquire(lock(file));
+          if (lock == null) {
+            log(DEBUG, "Not evicting locked %s", file);
+            return false;
+          }
+          locks.add(lock);
+        }
+        var digests = new HashSet<String>();
+        for (var file : cached.files) {
+          log(DEBUG, "Evicting %s", file);
+          Files.deleteIfExists(file);
+          Files.deleteIfExists(
+              file.resolveSibling('.' + file.getFileName().toString() + ".properties"));
+          if (file.startsWith(root.resolve("sha256").toAbsolutePath().normalize())) {
+            digests.add(file.getFileName().toString());
+          }
+        }
+        if (!digests.isEmpty() && Files.isRegularFile(index)) {
+          var properties = Util.loadProperties(index);
+          properties.values().removeIf(digests::contains);
+          Util.storeProperties(
+              index, properties, "Uris mapped to SHA-256 digests of their content");
+        }
+        return true;
+      } finally {
+        locks.forEach(Lock::release);
+      }
+    }
+
+    /** Forget the last access of files that no longer exist. */
+    private void prune(Properties recorded) {
+      if (recorded.keySet().removeIf(key -> !Files.exists(Path.of(key.toString())))) {
+        Util.storeProperties(access, recorded, "Last access of files, in epoch milliseconds");
+      }
+    }
+
+    /** Hard links of a file in the cache, with the size of the file and their latest access. */
+    private class Cached {
+      final List<Path> files = new ArrayList<>();
+      final long size;
+      long accessed;
+
+      Cached(long size) {
+        this.size = size;
+      }
+    }
+
+    /** Path of the file locked while the given target file is downloaded. */
+    Path lock(Path target) {
+      var path = target.toAbsolutePath().normalize().toString();
+      return root.resolve("locks").resolve(Util.sha256(path.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    /** Return {@code true} if the uri was not found within {@link Property#DOWNLOAD_TTL}. */
+    boolean isMissing(URI uri) {
+      synchronized (Store.class) {
+        if (!Files.isRegularFile(missing)) {
+          return false;
+        }
+        var checked = Util.loadProperties(missing).getProperty(uri.toString());
+        var ttl = configuration.options.downloadTimeToLive;
+        return checked != null && Instant.parse(checked).plus(ttl).isAfter(Instant.now());
+      }
+    }
+
+    /** Remember that the uri was not found. */
+    void missing(URI uri) {
+      synchronized (Store.class) {
+        var lock = Lock.acquire(root.resolve(".lock"));
+        try {
+          var properties =
+              Files.isRegularFile(missing) ? Util.loadProperties(missing) : new Properties();
+          properties.setProperty(uri.toString(), Instant.now().toString());
+          var comments = "Uris not found and the time they were looked up";
+          Util.storeProperties(missing, properties, comments);
+        } finally {
+          lock.release();
+        }
+      }
+    }
+
+    /** Path of the blob with the given SHA-256 digest. */
+    Path blob(String digest) {
+      return root.resolve("sha256").resolve(digest.substring(0, 2)).resolve(digest);
+    }
+
+    /** Return the blob holding the content downloaded from the given uri, if present. */
+    Optional<Path> find(URI uri) {
+      synchronized (Store.class) {
+        if (!Files.isRegularFile(index)) {
+          return Optional.empty();
+        }
+        var digest = Util.loadProperties(index).getProperty(uri.toString());
+        return Optional.ofNullable(digest).map(this::blob).filter(Files::isRegularFile);
+      }
+    }
+
+    /** Add the given file with the given SHA-256 digest as the content downloaded from the uri. */
+    Path put(URI uri, Path file, String digest) {
+      synchronized (Store.class) {
+        var blob = blob(digest);
+        if (Files.exists(blob)) {
+          log(TRACE, "Blob %s already stored", digest);
+        } else {
+          link(file, blob);
+          log(DEBUG, "Stored %s as blob %s", file.getFileName(), digest);
+        }
+        var lock = Lock.acquire(root.resolve(".lock"));
+        try {
+          var properties =
+              Files.isRegularFile(index) ? Util.loadProperties(index) : new Properties();
+          properties.setProperty(uri.toString(), digest);
+          Util.storeProperties(
+              index, properties, "Uris mapped to SHA-256 digests of their content");
+        } finally {
+          lock.release();
+        }
+        return blob;
+      }
+    }
+
+    /** Make the source file available at the target path, by hard link or by copying it. */
+    Path link(Path source, Path target) {
+      try {
+        if (Files.exists(target) && Files.isSameFile(source, target)) {
+          return target;
+        }
+        var parent = Files.createDirectories(target.toAbsolutePath().getParent());
+        var temporary = parent.resolve(target.getFileName() + "." + UUID.randomUUID());
+        try {
+          Files.createLink(temporary, source);
+        } catch (UnsupportedOperationException | IOException e) {
+          log(TRACE, "Hard link failed, copying %s: %s", source, e);
+          Util.delete(temporary);
+          Util.copy(source, temporary);
+        }
+        return Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING);
+      } catch (IOException e) {
+        throw new UncheckedIOException("Linking " + source + " to " + target + " failed", e);
+      }
+    }
+  }
+
+  /**
+   * Exclusive lock on a file, shared by all threads of this process and all processes.
+   *
+   * <p>Threads of this process queue on a semaphore per lock file, other processes are kept out by
+   * a {@link FileChannel#lock()} on it. Lock files are never deleted, as that would break mutual
+   * exclusion with a process that has just opened one.
+   */
+  static class Lock {
+    /** Number of locks that had to be waited for since this process started. */
+    static final AtomicLong CONTENTIONS = new AtomicLong();
+
+    private static final Map<Path, Semaphore> SEMAPHORES = new ConcurrentHashMap<>();
+
+    /** Acquire the lock on the given file, blocking until no other thread or process holds it. */
+    static Lock acquire(Path file) {
+      var path = file.toAbsolutePath().normalize();
+      var event = new LockEvent();
+      event.begin();
+      var start = System.nanoTime();
+      var span = Trace.Span.NONE;
+      var semaphore = SEMAPHORES.computeIfAbsent(path, key -> new Semaphore(1));
+      var contended = !semaphore.tryAcquire();
+      if (contended) {
+        span = Trace.begin("lock", path.toString());
+        semaphore.acquireUninterruptibly();
+      }
+      FileChannel channel;
+      try {
+        Files.createDirectories(path.getParent());
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        try {
+          if (channel.tryLock() == null) {
+            if (!contended) {
+              contended = true;
+              span = Trace.begin("lock", path.toString());
+            }
+            channel.lock();
+          }
+        } catch (IOException | RuntimeException e) {
+          channel.close();
+          throw e;
+        }
+      } catch (IOException e) {
+        semaphore.release();
+        throw new UncheckedIOException("Acquiring lock failed: " + path, e);
+      } catch (RuntimeException e) {
+        semaphore.release();
+        throw e;
+      }
+      if (contended) {
+        CONTENTIONS.incrementAndGet();
+        span.end();
+      }
+      event.end();
+      if (event.shouldCommit()) {
+        event.path = path.toString();
+        event.contended = contended;
+        event.commit();
+      }
+      var waited = Duration.ofNanos(System.nanoTime() - start);
+      return new Lock(path, channel, semaphore, contended, waited);
+    }
+
+    /** Acquire the lock on the given file, returning {@code null} if it is held already. */
+    static Lock tryAcquire(Path file) {
+      var path = file.toAbsolutePath().normalize();
+      var semaphore = SEMAPHORES.computeIfAbsent(path, key -> new Semaphore(1));
+      if (!semaphore.tryAcquire()) {
+        return null;
+      }
+      try {
+        Files.createDirectories(path.getParent());
+        var channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        if (channel.tryLock() == null) {
+          channel.close();
+          semaphore.release();
+          return null;
+        }
+        return new Lock(path, channel, semaphore, false, Duration.ZERO);
+      } catch (IOException e) {
+        semaphore.release();
+        throw new UncheckedIOException("Acquiring lock failed: " + path, e);
+      }
+    }
+
+    final Path path;
+    final boolean contended;
+    final Duration waited;
+    private final FileChannel channel;
+    private final Semaphore semaphore;
+
+    private Lock(
+        Path path, FileChannel channel, Semaphore semaphore, boolean contended, Duration waited) {
+      this.path = path;
+      this.channel = channel;
+      this.semaphore = semaphore;
+      this.contended = contended;
+      this.waited = waited;
+    }
+
+    /** Release this lock, letting the next thread or process acquire it. */
+    void release() {
+      try {
+        channel.close();
+      } catch (IOException e) {
+        throw new UncheckedIOException("Releasing lock failed: " + path, e);
+      } finally {
+        semaphore.release();
+      }
+    }
+  }
+
+  /** Maven project object model, reduced to what dependency resolution needs. */
+  static class Pom {
+
+    /** Parse the given POM file, rejecting document type declarations and external entities. */
+    static Pom parse(Path file) {
+      try {
+        var factory = DocumentBuilderFactory.newInstance();
+        factory.setNamespaceAware(false);
+        factory.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, true);
+        factory.setFeature("http://apache.org/xml/features/disallow-doctype-decl", true);
+        factory.setAttribute(XMLConstants.ACCESS_EXTERNAL_DTD, "");
+        factory.setAttribute(XMLConstants.ACCESS_EXTERNAL_SCHEMA, "");
+        factory.setXIncludeAware(false);
+        factory.setExpandEntityReferences(false);
+        var builder = factory.newDocumentBuilder();
+        builder.setErrorHandler(
+            new DefaultHandler()); // throw fatal errors instead of printing them
+        var document = builder.parse(file.toFile());
+        return new Pom(document.getDocumentElement());
+      } catch (Exception e) {
+        throw new IllegalArgumentException("Parsing POM failed: " + file, e);
+      }
+    }
+
+    final String group, artifact, version;
+    final String parent;
+    final Map<String, String> properties = new LinkedHashMap<>();
+    final Map<String, Dependency> managed = new LinkedHashMap<>();
+    final List<Dependency> dependencies = new ArrayList<>();
+
+    private Pom(Element project) {
+      var parent = child(project, "parent");
+      var parentGroup = parent == null ? null : text(parent, "groupId");
+      var parentVersion = parent == null ? null : text(parent, "version");
+      this.group = Objects.requireNonNullElse(text(project, "groupId"), parentGroup);
+      this.artifact = text(project, "artifactId");
+      this.version = Objects.requireNonNullElse(text(project, "version"), parentVersion);
+      this.parent =
+          parent == null
+              ? null
+              : String.join(":", parentGroup, text(parent, "artifactId"), parentVersion);
+      var properties = child(project, "properties");
+      if (properties != null) {
+        for (var property : children(properties, null)) {
+          this.properties.put(property.getTagName(), property.getTextContent().strip());
+        }
+      }
+      if (parent != null) {
+        this.properties.putIfAbsent("project.parent.groupId", parentGroup);
+        this.properties.putIfAbsent("project.parent.version", parentVersion);
+      }
+      this.properties.put("project.groupId", group);
+      this.properties.put("project.artifactId", artifact);
+      this.properties.put("project.version", version);
+      var management = child(project, "dependencyManagement");
+      if (management != null) {
+        for (var dependency : dependencies(child(management, "dependencies"))) {
+          managed.put(dependency.key(), dependency);
+        }
+      }
+      this.dependencies.addAll(dependencies(child(project, "dependencies")));
+    }
+
+    /** Inherit properties, managed dependencies and dependencies from the given parent. */
+    Pom inherit(Pom parent) {
+      parent.properties.forEach(properties::putIfAbsent);
+      parent.managed.forEach(managed::putIfAbsent);
+      var declared = new ArrayList<>(dependencies);
+      dependencies.clear();
+      for (var dependency : parent.dependencies) {
+        if (declared.stream().noneMatch(it -> it.key().equals(dependency.key()))) {
+          dependencies.add(dependency);
+        }
+      }
+      dependencies.addAll(declared);
+      return this;
+    }
+
+    /** Interpolate group, artifact and exclusions of all managed and declared dependencies. */
+    Pom interpolateCoordinates() {
+      var declared = new ArrayList<>(managed.values());
+      managed.clear();
+      for (var dependency : declared) {
+        var interpolated = interpolate(dependency);
+        managed.putIfAbsent(interpolated.key(), interpolated);
+      }
+      dependencies.replaceAll(this::interpolate);
+      return this;
+    }
+
+    private Dependency interpolate(Dependency dependency) {
+      var exclusions = new TreeSet<String>();
+      for (var exclusion : dependency.exclusions) {
+        exclusions.add(interpolate(exclusion));
+      }
+      return new Dependency(
+          dependency,
+          interpolate(dependency.group),
+          interpolate(dependency.artifact),
+          dependency.version,
+          Collections.unmodifiableSet(exclusions));
+    }
+
+    /** Return coordinates of the bills of materials imported into the dependency management. */
+    List<String> imports() {
+      var imports = new ArrayList<String>();
+      for (var dependency : managed.values()) {
+        if ("import".equals(dependency.scope)) {
+          imports.add(String.join(":", dependency.key(), interpolate(dependency.version)));
+        }
+      }
+      return imports;
+    }
+
+    /** Replace imported entries by the managed dependencies of the given bills of materials. */
+    Pom manage(List<Pom> boms) {
+      managed.values().removeIf(dependency -> "import".equals(dependency.scope));
+      for (var bom : boms) {
+        for (var dependency : bom.managed.values()) {
+          var version = bom.interpolate(dependency.version);
+          managed.putIfAbsent(dependency.key(), dependency.withVersion(version));
+        }
+      }
+      return this;
+    }
+
+    /** Return the interpolated version of the dependency, falling back to its managed version. */
+    String version(Dependency dependency) {
+      var version = dependency.version;
+      if (version == null) {
+        var managed = this.managed.get(dependency.key());
+        version = managed == null ? null : managed.version;
+      }
+      if (version == null) {
+        var message = "No version of %s found in %s:%s:%s";
+        throw new IllegalStateException(
+            String.format(message, dependency, group, artifact, this.version));
+      }
+      version = interpolate(version);
+      if (version.startsWith("[") || version.startsWith("(")) {
+        version = version.substring(1).split("[,)\\]]")[0].strip(); // lower bound of a range
+      }
+      return version;
+    }
+
+    /** Replace all {@code ${...}} expressions by the values of the properties they refer to. */
+    String interpolate(String value) {
+      if (value == null) {
+        return null;
+      }
+      for (int depth = 0; depth < 10 && value.contains("${"); depth++) {
+        var builder = new StringBuilder();
+        var start = 0;
+        for (var open = value.indexOf("${"); open >= 0; open = value.indexOf("${", start)) {
+          var close = value.indexOf('}', open);
+          if (close < 0) {
+            break;
+          }
+          var key = value.substring(open + 2, close);
+          var property =
+              properties.get(key.startsWith("pom.") ? "project." + key.substring(4) : key);
+          builder.append(value, start, open).append(property == null ? "${" + key + "}" : property);
+          start = close + 1;
+        }
+        var replaced = builder.append(value.substring(start)).toString();
+        if (replaced.equals(value)) {
+          break;
+        }
+        value = replaced;
+      }
+      return value;
+    }
+
+    private static List<Dependency> dependencies(Element dependencies) {
+      var list = new ArrayList<Dependency>();
+      if (dependencies != null) {
+        for (var dependency : children(dependencies, "dependency")) {
+          list.add(new Dependency(dependency));
+        }
+      }
+      return list;
+    }
+
+    private static List<Element> children(Element parent, String name) {
+      var children = new ArrayList<Element>();
+      var nodes = parent.getChildNodes();
+      for (int i = 0; i < nodes.getLength(); i++) {
+        if (nodes.item(i) instanceof Element) {
+          var element = (Element) nodes.item(i);
+          if (name == null || name.equals(element.getTagName())) {
+            children.add(element);
+          }
+        }
+      }
+      return children;
+    }
+
+    private static Element child(Element parent, String name) {
+      var children = children(parent, name);
+      return children.isEmpty() ? null : children.get(0);
+    }
+
+    private static String text(Element parent, String name) {
+      var child = child(parent, name);
+      return child == null ? null : child.getTextContent().strip();
+    }
+
+    /** Dependency declaration. */
+    static class Dependency {
+      final String group, artifact, version, type, scope;
+      final boolean optional;
+      final Set<String> exclusions;
+
+      Dependency(Element element) {
+        this.group = text(element, "groupId");
+        this.artifact = text(element, "artifactId");
+        this.version = text(element, "version");
+        this.type = Objects.requireNonNullElse(text(element, "type"), "jar");
+        this.scope = Objects.requireNonNullElse(text(element, "scope"), "compile");
+        this.optional = "true".equals(text(element, "optional"));
+        var exclusions = new TreeSet<String>();
+        var list = child(element, "exclusions");
+        if (list != null) {
+          for (var exclusion : children(list, "exclusion")) {
+            exclusions.add(text(exclusion, "groupId") + ':' + text(exclusion, "artifactId"));
+          }
+        }
+        this.exclusions = Collections.unmodifiableSet(exclusions);
+      }
+
+      private Dependency(
+          Dependency dependency,
+          String group,
+          String artifact,
+          String version,
+          Set<String> exclusions) {
+        this.group = group;
+        this.artifact = artifact;
+        this.version = version;
+        this.type = dependency.type;
+        this.scope = dependency.scope;
+        this.optional = dependency.optional;
+        this.exclusions = exclusions;
+      }
+
+      Dependency withVersion(String version) {
+        return new Dependency(this, group, artifact, version, exclusions);
+      }
+
+      /** Versionless key, unique within a dependency graph. */
+      String key() {
+        return group + ':' + artifact;
+      }
+
+      @Override
+      public String toString() {
+        return key() + ':' + version;
+      }
+    }
+  }
+
+  /**
+   * Resolver of transitive Maven dependencies.
+   *
+   * <p>The dependency graph is walked breadth-first, fetching all POMs of a level concurrently.
+   * Only dependencies in {@code compile} and {@code runtime} scope are followed, optional ones are
+   * not. Parent POMs, properties, dependency management including imported bills of materials and
+   * exclusions are honored. Versions managed by the requested artifacts override the versions of
+   * their transitive dependencies. Remaining conflicts are resolved like Maven does: the
+   * declaration nearest to the root wins, the first one wins among declarations of the same depth.
+   *
+   * <p>Results are kept in a lock file, keyed by the requested coordinates. Resolving the same
+   * coordinates again only reads that file.
+   */
+  class Resolver {
+    final List<String> repositories;
+    final Downloader downloader;
+    final Path lock;
+    final Map<String, CompletableFuture<Pom>> poms = new ConcurrentHashMap<>();
+
+    Resolver() {
+      this(
+          configuration.options.repositories,
+          new Downloader(configuration.paths.user.resolve("pom")),
+          configuration.paths.cache.resolve("maven.lock"));
+    }
+
+    Resolver(List<String> repositories, Downloader downloader, Path lock) {
+      this.repositories = repositories;
+      this.downloader = downloader;
+      this.lock = lock;
+    }
+
+    /**
+     * Resolve the given artifacts and their transitive dependencies.
+     *
+     * @param coordinates list of {@code group:artifact:version} coordinates
+     * @return coordinates of all JAR artifacts needed at runtime, in breadth-first order
+     */
+    List<String> resolve(List<String> coordinates) {
+      var key = String.join(",", coordinates);
+      var locked = Files.isRegularFile(lock) ? Util.loadProperties(lock) : new Properties();
+      var value = locked.getProperty(key);
+      if (value != null) {
+        log(DEBUG, "Resolved %s from lock file %s", key, lock);
+        return value.isEmpty() ? List.of() : List.of(value.split(","));
+      }
+      log(INFO, ">> resolve(%s)", key);
+      var resolved = new LinkedHashMap<String, Vertex>();
+      var level = new ArrayList<Vertex>();
+      for (var root : coordinates) {
+        var gav = root.split(":");
+        level.add(new Vertex(gav[0], gav[1], gav[2], "jar", Set.of()));
+      }
+      var management = new HashMap<String, String>();
+      for (int depth = 0; !level.isEmpty(); depth++) {
+        var fresh = new ArrayList<Vertex>();
+        for (var vertex : level) {
+          var winner = resolved.putIfAbsent(vertex.key(), vertex);
+          if (winner == null) {
+            fresh.add(vertex);
+          } else if (!winner.version.equals(vertex.version)) {
+            log(DEBUG, "Omitted %s for conflict with %s", vertex, winner.version);
+          }
+        }
+        var futures = new ArrayList<CompletableFuture<Pom>>();
+        for (var vertex : fresh) {
+          futures.add(pom(vertex.toString()));
+        }
+        try {
+          CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).join();
+        } catch (CompletionException e) {
+          var cause = e.getCause();
+          throw cause instanceof RuntimeException ? (RuntimeException) cause : e;
+        }
+        level = new ArrayList<>();
+        for (int i = 0; i < fresh.size(); i++) {
+          var vertex = fresh.get(i);
+          var pom = futures.get(i).join();
+          if (depth == 0) {
+            for (var managed : pom.managed.values()) {
+              management.putIfAbsent(managed.key(), pom.version(managed));
+            }
+          }
+          for (var dependency : pom.dependencies) {
+            var scope = dependency.scope;
+            if (!scope.equals("compile") && !scope.equals("runtime") || dependency.optional) {
+              continue;
+            }
+            if (vertex.excludes(dependency)) {
+              log(TRACE, "Excluded %s via %s", dependency.key(), vertex);
+              continue;
+            }
+            var version = depth == 0 ? null : management.get(dependency.key());
+            if (version == null) {
+              version = pom.version(dependency);
+            }
+            var exclusions = new TreeSet<>(vertex.exclusions);
+            exclusions.addAll(dependency.exclusions);
+            var group = dependency.group;
+            level.add(new Vertex(group, dependency.artifact, version, dependency.type, exclusions));
+          }
+        }
+      }
+      var list = new ArrayList<String>();
+      for (var vertex : resolved.values()) {
+        if (vertex.type.equals("jar")) {
+          list.add(vertex.toString());
+        }
+      }
+      locked.setProperty(key, String.join(",", list));
+      Util.storeProperties(lock, locked, "Resolved Maven coordinates");
+      return list;
+    }
+
+    /** Return the effective model of the given coordinates, loading it only once. */
+    CompletableFuture<Pom> pom(String coordinates) {
+      return pom(coordinates, List.of());
+    }
+
+    /**
+     * Return the effective model of the given coordinates, failing if it is one of the given POMs,
+     * whose effective models depend on it as their parent or imported bill of materials.
+     */
+    private CompletableFuture<Pom> pom(String coordinates, List<String> dependents) {
+      if (dependents.contains(coordinates)) {
+        var cycle = String.join(" -> ", dependents) + " -> " + coordinates;
+        var message = "POMs inherit or import each other in a cycle: " + cycle;
+        return CompletableFuture.failedFuture(new IllegalStateException(message));
+      }
+      var chain = new ArrayList<>(dependents);
+      chain.add(coordinates);
+      var future = new CompletableFuture<Pom>();
+      var present = poms.putIfAbsent(coordinates, future);
+      if (present != null) {
+        return present;
+      }
+      var gav = coordinates.split(":");
+      var offline = Boolean.getBoolean("bach.offline");
+      downloader
+          .downloadAsync(repositories, gav[0], gav[1], gav[2], "pom", offline)
+          .thenApply(Pom::parse)
+          .thenCompose(
+              pom ->
+                  pom.parent == null
+                      ? completed(pom)
+                      : pom(pom.parent, chain).thenApply(pom::inherit))
+          .thenApply(Pom::interpolateCoordinates)
+          .thenCompose(
+              pom -> {
+                var boms = new ArrayList<CompletableFuture<Pom>>();
+                for (var bom : pom.imports()) {
+                  boms.add(pom(bom, chain));
+                }
+                return CompletableFuture.allOf(boms.toArray(CompletableFuture[]::new))
+                    .thenApply(
+                        __ ->
+                            pom.manage(
+                                boms.stream()
+                                    .map(CompletableFuture::join)
+                                    .collect(Collectors.toList())));
+              })
+          .whenComplete(
+              (pom, throwable) -> {
+                if (throwable == null) {
+                  future.complete(pom);
+                } else {
+                  future.completeExceptionally(Util.unwrap(throwable));
+                }
+              });
+      return future;
+    }
+
+    private CompletableFuture<Pom> completed(Pom pom) {
+      return CompletableFuture.completedFuture(pom);
+    }
+
+    /** Artifact in the dependency graph, with the exclusions collected on its path. */
+    private class Vertex {
+      final String group, artifact, version, type;
+      final Set<String> exclusions;
+
+      Vertex(String group, String artifact, String version, String type, Set<String> exclusions) {
+        this.group = group;
+        this.artifact = artifact;
+        this.version = version;
+        this.type = type;
+        this.exclusions = exclusions;
+      }
+
+      String key() {
+        return group + ':' + artifact;
+      }
+
+      boolean excludes(Pom.Dependency dependency) {
+        return exclusions.contains(dependency.key())
+            || exclusions.contains(dependency.group + ":*")
+            || exclusions.contains("*:*");
+      }
+
+      @Override
+      public String toString() {
+        return String.join(":", group, artifact, version);
+      }
+    }
+  }
+
+  /** Module declaration, reduced to its name and the names of the modules it requires. */
+  static class ModuleInfo {
+
+    private static final Pattern COMMENTS = Pattern.compile("//.*|/\\*(?s:.*?)\\*/");
+    private static final Pattern NAME = Pattern.compile("\\bmodule\\s+([\\w.]+)\\s*\\{");
+    private static final Pattern REQUIRES =
+        Pattern.compile("\\brequires\\s+(?:(?:static|transitive)\\s+)*([\\w.]+)\\s*;");
+
+    /** Parse the given module-info.java source file. */
+    static ModuleInfo parse(Path file) {
+      try {
+        return parse(Files.readString(file));
+      } catch (IOException e) {
+        throw new UncheckedIOException("Reading module declaration failed: " + file, e);
+      }
+    }
+
+    /** Parse the given module declaration source. */
+    static ModuleInfo parse(CharSequence source) {
+      var text = COMMENTS.matcher(source).replaceAll(" ");
+      var name = NAME.matcher(text);
+      if (!name.find()) {
+        throw new IllegalArgumentException("Expected a module declaration, but got: " + source);
+      }
+      var requires = new TreeSet<String>();
+      var matcher = REQUIRES.matcher(text);
+      while (matcher.find()) {
+        requires.add(matcher.group(1));
+      }
+      return new ModuleInfo(name.group(1), requires);
+    }
+
+    final String name;
+    final Set<String> requires;
+
+    ModuleInfo(String name, Set<String> requires) {
+      this.name = name;
+      this.requires = Collections.unmodifiableSet(requires);
+    }
+
+    @Override
+    public String toString() {
+      return "module " + name + " requires " + requires;
+    }
+  }
+
+  /** Requires relation between the modules of a project, ignoring modules outside of it. */
+  static class ModuleGraph {
+
+    final Map<String, ModuleInfo> modules;
+
+    ModuleGraph(Collection<ModuleInfo> infos) {
+      var modules = new TreeMap<String, ModuleInfo>();
+      for (var info : infos) {
+        if (modules.put(info.name, info) != null) {
+          throw new IllegalArgumentException("Module " + info.name + " is declared twice");
+        }
+      }
+      this.modules = Collections.unmodifiableMap(modules);
+    }
+
+    /** Return the project modules the given module requires directly. */
+    Set<String> requires(String module) {
+      var requires = new TreeSet<>(modules.get(module).requires);
+      requires.retainAll(modules.keySet());
+      return requires;
+    }
+
+    /** Return the project modules the given module requires directly or indirectly. */
+    Set<String> upstream(String module) {
+      var upstream = new TreeSet<String>();
+      var deque = new ArrayDeque<>(requires(module));
+      while (!deque.isEmpty()) {
+        var next = deque.removeFirst();
+        if (upstream.add(next)) {
+          deque.addAll(requires(next));
+        }
+      }
+      return upstream;
+    }
+
+    /**
+     * Sort all modules into waves, a module only requires modules of earlier waves.
+     *
+     * @throws IllegalStateException if modules require each other in a cycle
+     */
+    List<List<String>> waves() {
+      var waves = new ArrayList<List<String>>();
+      var done = new HashSet<String>();
+      var pending = new TreeSet<>(modules.keySet());
+      while (!pending.isEmpty()) {
+        var wave =
+            pending.stream()
+                .filter(module -> done.containsAll(requires(module)))
+                .collect(Collectors.toList());
+        if (wave.isEmpty()) {
+          throw new IllegalStateException("Modules require each other in a cycle: " + pending);
+        }
+        waves.add(List.copyOf(wave));
+        done.addAll(wave);
+        pending.removeAll(wave);
+      }
+      return waves;
+    }
+  }
+
+  /**
+   * Downloads of all artifacts a build needs, started up front on background threads.
+   *
+   * <p>Artifacts are the tools configured via {@link Configuration.Uris} and the modules required
+   * by {@code module-info.java} files below the sources path. A required module is downloaded into
+   * the libraries path if a {@code module.<name>} property maps it to a uri or to {@code
+   * group:artifact:version} coordinates of a Maven repository. Running a {@code compile} or {@code
+   * format} task starts the prefetch. Consumers await the download started for the artifact they
+   * need, starting it themselves if it was not prefetched: the {@link Compiler} awaits all modules
+   * required from the libraries path before running javac.
+   */
+  class Prefetch {
+    private final Map<String, CompletableFuture<Path>> downloads = new ConcurrentHashMap<>();
+    private final boolean offline = Boolean.getBoolean("bach.offline");
+
+    /** Start downloading all artifacts known to be needed. */
+    Prefetch start() {
+      var span = Trace.begin("build", "prefetch");
+      var uris = configuration.uris;
+      var tools = configuration.paths.user.resolve("tool");
+      get(uris.toolFormat.toString(), tools.resolve("format"));
+      get(uris.toolJUnit.toString(), tools.resolve("junit"));
+      for (var module : requires()) {
+        var artifact = artifact(module);
+        if (artifact.isEmpty()) {
+          log(TRACE, "No artifact mapped to required module %s", module);
+          continue;
+        }
+        get(artifact, configuration.paths.libraries);
+      }
+      log(DEBUG, "Prefetching %d artifacts", downloads.size());
+      span.put("artifacts", downloads.size()).end();
+      return this;
+    }
+
+    /** Return the artifact mapped to the given module via a property, or an empty string. */
+    String artifact(String module) {
+      return Util.get("module." + module, configuration.properties, () -> "");
+    }
+
+    /**
+     * Wait for the downloads of all given modules mapped to an artifact into the libraries path.
+     */
+    void awaitModules(Collection<String> modules) {
+      for (var module : modules) {
+        var artifact = artifact(module);
+        if (!artifact.isEmpty()) {
+          await(artifact, configuration.paths.libraries);
+        }
+      }
+    }
+
+    /** Return the names of modules required by the project, excluding its own and system ones. */
+    Set<String> requires() {
+      var sources = configuration.paths.sources;
+      if (!Files.isDirectory(sources)) {
+        return Set.of();
+      }
+      var declared = new TreeSet<String>();
+      var required = new TreeSet<String>();
+      for (var file : Util.find(List.of(sources), Util::isModuleInfo)) {
+        var info = ModuleInfo.parse(file);
+        declared.add(info.name);
+        required.addAll(info.requires);
+      }
+      var system = ModuleFinder.ofSystem();
+      required.removeIf(module -> declared.contains(module) || system.find(module).isPresent());
+      return required;
+    }
+
+    /**
+     * Return the download of an artifact into the given directory, starting it if necessary.
+     *
+     * @param artifact uri or {@code group:artifact:version} coordinates of the artifact
+     * @param directory directory to store the downloaded file in
+     */
+    CompletableFuture<Path> get(String artifact, Path directory) {
+      return downloads.computeIfAbsent(artifact, key -> download(key, directory));
+    }
+
+    /** Wait for the download of the artifact into the given directory, starting it if necessary. */
+    Path await(String artifact, Path directory) {
+      try {
+        return get(artifact, directory).join();
+      } catch (CompletionException e) {
+        var cause = e.getCause();
+        throw cause instanceof RuntimeException ? (RuntimeException) cause : e;
+      }
+    }
+
+    private CompletableFuture<Path> download(String artifact, Path directory) {
+      var downloader = new Downloader(directory);
+      CompletableFuture<Path> future;
+      if (artifact.contains(":/")) {
+        future = downloader.downloadAsync(URI.create(artifact), offline);
+      } else {
+        var gav = artifact.split(":");
+        if (gav.length != 3) {
+          var message = "Expected uri or group:artifact:version coordinates, but got: " + artifact;
+          return CompletableFuture.failedFuture(new IllegalArgumentException(message));
+        }
+        var repositories = configuration.options.repositories;
+        future = downloader.downloadAsync(repositories, gav[0], gav[1], gav[2], "jar", offline);
+      }
+      future.whenComplete(
+          (path, throwable) -> {
+            if (throwable != null) {
+              log(DEBUG, "Prefetching %s failed: %s", artifact, Util.unwrap(throwable));
+            }
+          });
+      return future;
+    }
+  }
+
+  /**
+   * Compile the modules of the project, each one with its own javac call.
+   *
+   * <p>Module declarations are parsed to find the project modules a module requires. A module is
+   * compiled as soon as all of them are compiled, so modules independent of each other compile
+   * concurrently. Compiled upstream modules are passed to javac as exploded modules via {@code
+   * --module-path}, along with the libraries path. Output of each javac call is printed as a block
+   * in topological order.
+   *
+   * <p>A module is not compiled again if its sources, the javac arguments and the ABI fingerprints,
+   * see {@link ClassFile#fingerprint(Path)}, of all project modules it requires are unchanged since
+   * its last successful compilation. Changing only the implementation of a module thus doesn't
+   * recompile the modules requiring it.
+   */
+  class Compiler {
+
+    /** Root directory containing each compiled module in a directory named like the module. */
+    final Path classes = configuration.paths.target.resolve("classes");
+    /** Fingerprints of the sources and ABIs of all modules compiled successfully. */
+    final Path file = configuration.paths.cache.resolve("compile.properties");
+
+    private final Properties state = new Properties();
+
+    /** Compilation of a single module, capturing its output. */
+    class Unit {
+      final String module;
+      final Path source;
+      final List<Unit> upstream;
+      final Capture out = new Capture(Capture.LIMIT);
+      final Capture err = new Capture(Capture.LIMIT);
+      CompletableFuture<Integer> future;
+      /** ABI fingerprint of the compiled module, available after it was compiled or skipped. */
+      volatile String abi;
+
+      Unit(String module, Path source, List<Unit> upstream) {
+        this.module = module;
+        this.source = source;
+        this.upstream = upstream;
+      }
+
+      /** Return the arguments of the javac call compiling this module from the given sources. */
+      List<Object> arguments(List<Path> sources) {
+        var arguments = new ArrayList<Object>();
+        arguments.add("-d");
+        arguments.add(classes.resolve(module));
+        var modulePath = new ArrayList<String>();
+        upstream.forEach(unit -> modulePath.add(classes.resolve(unit.module).toString()));
+        if (Files.isDirectory(configuration.paths.libraries)) {
+          modulePath.add(configuration.paths.libraries.toString());
+        }
+        if (!modulePath.isEmpty()) {
+          arguments.add("--module-path");
+          arguments.add(String.join(File.pathSeparator, modulePath));
+        }
+        arguments.add("--module-version");
+        arguments.add(configuration.project.version);
+        arguments.addAll(configuration.options.javac);
+        arguments.addAll(sources);
+        return arguments;
+      }
+
+      /** Compute the fingerprint of the javac options, the module path and the libraries. */
+      String options() throws IOException {
+        var digest = Util.digest("SHA-256");
+        for (var argument : arguments(List.of())) {
+          digest.update((argument + "\n").getBytes(StandardCharsets.UTF_8));
+        }
+        var libraries = configuration.paths.libraries;
+        if (Files.isDirectory(libraries)) {
+          for (var jar : Util.find(List.of(libraries), Util::isJarFile)) {
+            var line = jar + " " + Files.size(jar) + " " + Files.getLastModifiedTime(jar) + "\n";
+            digest.update(line.getBytes(StandardCharsets.UTF_8));
+          }
+        }
+        return Util.hex(digest.digest());
+      }
+
+      /** Hash the content of each source file, keyed by its path relative to the source root. */
+      Map<String, String> hash(List<Path> sources) throws IOException {
+        var hashes = new TreeMap<String, String>();
+        for (var file : sources) {
+          var path = source.relativize(file).toString().replace('\\', '/');
+          hashes.put(path, Util.sha256(Files.readAllBytes(file)));
+        }
+        return hashes;
+      }
+
+      /** Run javac using a Bach instance writing into this unit's channels, unless up to date. */
+      int run(AtomicBoolean failed) {
+        if (failed.get()) {
+          return 0; // skipped
+        }
+        var bach = fork(out, err);
+        var span = Trace.begin("compile", module);
+        try {
+          var sources = Util.find(List.of(source), Util::isJavaFile);
+          Collections.sort(sources);
+          var options = options();
+          var hashes = hash(sources);
+          var digest = Util.sha256((options + hashes).getBytes(StandardCharsets.UTF_8));
+          var requires = new StringJoiner(",");
+          upstream.forEach(unit -> requires.add(unit.module + '=' + unit.abi));
+          var target = classes.resolve(module);
+          var previous = state.getProperty(module + ".abi");
+          var compiled =
+              previous != null && Files.isRegularFile(target.resolve("module-info.class"));
+          var unchanged = requires.toString().equals(state.getProperty(module + ".requires"));
+          if (compiled && unchanged && digest.equals(state.getProperty(module + ".sources"))) {
+            bach.log(INFO, "Module %s is up to date", module);
+            span.put("skipped", true);
+            abi = previous;
+            return 0;
+          }
+          state.remove(module + ".abi");
+          var database =
+              configuration.paths.cache.resolve("compile").resolve(module + ".properties");
+          Integer code = null;
+          if (compiled && unchanged && options.equals(state.getProperty(module + ".options"))) {
+            code = recompile(bach, Dependencies.load(database), hashes);
+          }
+          if (code == null) {
+            Util.treeDelete(target);
+            code = bach.runner.run("javac", arguments(sources).toArray());
+          }
+          span.put("code", code);
+          if (code != 0) {
+            failed.set(true);
+            return code;
+          }
+          var dependencies = Dependencies.scan(target, hashes);
+          dependencies.store(database);
+          abi = dependencies.fingerprint;
+          state.setProperty(module + ".sources", digest);
+          state.setProperty(module + ".options", options);
+          state.setProperty(module + ".requires", requires.toString());
+          state.setProperty(module + ".abi", abi);
+          bach.log(DEBUG, "Module %s compiled with ABI fingerprint %s", module, abi);
+          return 0;
+        } catch (IOException e) {
+          failed.set(true);
+          throw new UncheckedIOException("Compiling module " + module + " failed", e);
+        } catch (RuntimeException | Error e) {
+          failed.set(true);
+          throw e;
+        } finally {
+          span.end();
+        }
+      }
+
+      /**
+       * Recompile changed sources and, transitively, the sources of all classes referring to a
+       * class whose declarations changed. Class files compiled from changed or deleted sources are
+       * deleted before.
+       *
+       * @return the error code of javac, or {@code null} if the module needs a full compilation
+       */
+      Integer recompile(Bach bach, Dependencies previous, Map<String, String> hashes) {
+        if (previous == null) {
+          return unsure(bach, "no dependency database found");
+        }
+        if (configuration.options.javac.stream().anyMatch(o -> o.matches("--?processor.*"))
+            && !configuration.options.javac.contains("-proc:none")) {
+          return unsure(bach, "annotation processors may generate sources");
+        }
+        if (!previous.isComplete()) {
+          return unsure(bach, "the source files of some classes are unknown");
+        }
+        var info = "module-info.java";
+        if (!Objects.equals(previous.sources.get(info), hashes.get(info))) {
+          return unsure(bach, "its module declaration changed");
+        }
+        var target = classes.resolve(module);
+        Set<String> pending = new TreeSet<>(previous.sources.keySet());
+        pending.removeAll(hashes.keySet()); // deleted
+        for (var entry : hashes.entrySet()) {
+          if (!entry.getValue().equals(previous.sources.get(entry.getKey()))) {
+            pending.add(entry.getKey()); // added or modified
+          }
+        }
+        var done = new TreeSet<String>();
+        var code = 0;
+        while (!pending.isEmpty()) {
+          var stale = previous.classes(pending);
+          stale.forEach(name -> Util.delete(target.resolve(name + ".class")));
+          done.addAll(pending);
+          var files = new ArrayList<Path>();
+          for (var path : pending) {
+            if (hashes.containsKey(path)) {
+              files.add(source.resolve(path));
+            }
+          }
+          if (!files.isEmpty()) {
+            var size = hashes.size();
+            bach.log(DEBUG, "Recompiling %d of %d files of %s", files.size(), size, module);
+            files.add(0, source.resolve(info));
+            code = bach.runner.run("javac", arguments(files).toArray());
+            if (code != 0) {
+              return code;
+            }
+          }
+          var current = Dependencies.scan(target, hashes);
+          var changed = new TreeSet<String>();
+          for (var name : stale) {
+            var before = previous.classes.get(name);
+            var after = current.classes.get(name);
+            if (after != null && after.declarations.equals(before.declarations)) {
+              continue;
+            }
+            if (!before.constants.isEmpty()
+                && (after == null || !after.constants.equals(before.constants))) {
+              return unsure(bach, "constants of " + name + ", which may be inlined, changed");
+            }
+            changed.add(name);
+          }
+          // members inherited from a changed class change the binary interface of its subtypes
+          pending = previous.dependents(previous.subtypes(changed));
+          pending.removeAll(done);
+        }
+        return code;
+      }
+
+      private Integer unsure(Bach bach, String reason) {
+        bach.log(DEBUG, "Compiling all files of module %s, %s", module, reason);
+        return null;
+      }
+
+      /** Emit captured output to the shared writers and release all resources. */
+      void complete() {
+        try {
+          out.transferTo(Bach.this.out);
+          err.transferTo(Bach.this.err);
+          out.close();
+          err.close();
+        } catch (IOException e) {
+          throw new UncheckedIOException("Emitting output of compiling " + module + " failed", e);
+        }
+        Bach.this.out.flush();
+        Bach.this.err.flush();
+      }
+    }
+
+    /** Return the directory containing the sources of the module in the given directory. */
+    Path source(String directory) {
+      var root = configuration.paths.sources.resolve(directory);
+      var main = root.resolve("main/java");
+      return Files.isDirectory(main) ? main : root;
+    }
+
+    /**
+     * Compile all modules declared in the given directories below the sources path.
+     *
+     * <p>No new module is compiled after the first compilation failed. Modules already being
+     * compiled run to completion and their output is emitted, before the fingerprints of all
+     * compiled modules are stored and an exception thrown by a compilation is rethrown.
+     *
+     * @return the first non-zero error code in topological order, or zero
+     */
+    int compile(List<String> directories) {
+      var sources = new TreeMap<String, Path>();
+      var infos = new ArrayList<ModuleInfo>();
+      for (var directory : directories) {
+        var source = source(directory);
+        var file = source.resolve("module-info.java");
+        if (!Files.isRegularFile(file)) {
+          log(DEBUG, "No module declaration found in %s", source);
+          continue;
+        }
+        var info = ModuleInfo.parse(file);
+        sources.put(info.name, source);
+        infos.add(info);
+      }
+      if (infos.isEmpty()) {
+        log(INFO, "No modules to compile");
+        return 0;
+      }
+      var graph = new ModuleGraph(infos);
+      var waves = graph.waves();
+      var libraries = new TreeSet<String>();
+      infos.forEach(info -> libraries.addAll(info.requires));
+      libraries.removeAll(sources.keySet());
+      try {
+        prefetch().awaitModules(libraries);
+      } catch (RuntimeException e) {
+        log(ERROR, "Downloading required modules failed: %s", e);
+        return 1;
+      }
+      log(DEBUG, "Compiling %d modules in %d waves: %s", sources.size(), waves.size(), waves);
+      var span = Trace.begin("build", "compile");
+      if (Files.isRegularFile(file)) {
+        state.putAll(Util.loadProperties(file));
+      }
+      var parallelism = Math.min(sources.size(), configuration.options.parallelism);
+      var executor = Executors.newFixedThreadPool(parallelism);
+      var failed = new AtomicBoolean();
+      var units = new LinkedHashMap<String, Unit>();
+      try {
+        for (var wave : waves) {
+          for (var module : wave) {
+            var upstream =
+                graph.upstream(module).stream().map(units::get).collect(Collectors.toList());
+            var unit = new Unit(module, sources.get(module), upstream);
+            var requires =
+                graph.requires(module).stream()
+                    .map(name -> units.get(name).future)
+                    .toArray(CompletableFuture<?>[]::new);
+            unit.future =
+                CompletableFuture.allOf(requires)
+                    .handleAsync((__, throwable) -> unit.run(failed), executor);
+            units.put(module, unit);
+          }
+        }
+        var code = 0;
+        Throwable throwable = null;
+        for (var unit : units.values()) {
+          try {
+            var result = unit.future.join();
+            if (code == 0) {
+              code = result;
+            }
+          } catch (CompletionException e) {
+            throwable = throwable == null ? e.getCause() : throwable;
+          }
+          try {
+            unit.complete();
+          } catch (RuntimeException e) {
+            throwable = throwable == null ? e : throwable;
+          }
+        }
+        Util.storeProperties(file, state, "Fingerprints of compiled modules");
+        if (throwable instanceof RuntimeException) {
+          throw (RuntimeException) throwable;
+        }
+        if (throwable instanceof Error) {
+          throw (Error) throwable;
+        }
+        if (throwable != null) {
+          throw new CompletionException(throwable);
+        }
+        return code;
+      } finally {
+        executor.shutdownNow();
+        span.put("modules", sources.size()).put("waves", waves.size()).end();
+      }
+    }
+  }
+
+  /**
+   * In-process javac reusing long-lived file managers across compilations.
+   *
+   * <p>A javac call creates a new file manager, which opens and indexes the run-time image and
+   * every JAR file on the module path again. This tool provider keeps a pool of standard file
+   * managers instead, one for each concurrent compilation, shared by all Bach instances of the JVM,
+   * like the ones serving builds in a {@link Daemon}. Before a file manager is reused, its
+   * per-location indexes are flushed; the indexes of archives it opened are kept. Only file
+   * managers whose last compilation set the same locations are reused, as a location can't be reset
+   * to its default. A file manager is replaced if a file or directory passed via a path option
+   * changed since it last saw it, like a modified JAR file or a directory created in the meantime.
+   *
+   * <p>Calls without source files, like {@code --version}, and calls with options setting locations
+   * that can't be reset, like {@code --module-source-path} or {@code --processor-path}, are
+   * delegated to the system's javac.
+   */
+  static class Javac implements ToolProvider {
+
+    /** Javac tool provider shared by all Bach instances of this JVM. */
+    static final Javac SHARED = new Javac();
+
+    /** Time of all JAR entries, the one reproducible builds of other tools use as well. */
+    private static final long ENTRY_TIME = Instant.parse("1980-02-01T00:00:00Z").toEpochMilli();
+
+    /** Options, followed by a value, setting a location of the file manager, and their aliases. */
+    private static final Map<String, String> PATH_OPTIONS =
+        Map.ofEntries(
+            Map.entry("-d", "-d"),
+            Map.entry("-s", "-s"),
+            Map.entry("-h", "-h"),
+            Map.entry("--class-path", "--class-path"),
+            Map.entry("-classpath", "--class-path"),
+            Map.entry("-cp", "--class-path"),
+            Map.entry("--module-path", "--module-path"),
+            Map.entry("-p", "--module-path"),
+            Map.entry("--source-path", "--source-path"),
+            Map.entry("-sourcepath", "--source-path"),
+            Map.entry("--upgrade-module-path", "--upgrade-module-path"));
+
+    /** Options setting locations that can't be reset. */
+    private static final Set<String> UNSUPPORTED_OPTIONS =
+        Set.of(
+            "--boot-class-path",
+            "-bootclasspath",
+            "--module-source-path",
+            "--patch-module",
+            "--processor-module-path",
+            "--processor-path",
+            "-processorpath",
+            "--system");
+
+    /** Standard file manager, remembering the state of all paths it has seen. */
+    private class Manager {
+      final StandardJavaFileManager fileManager = compiler.getStandardFileManager(null, null, null);
+      final Map<Path, String> stamps = new HashMap<>();
+
+      Manager() {
+        managers.incrementAndGet();
+      }
+
+      /** Test whether none of the given paths changed since this file manager saw them. */
+      boolean isCurrent(Map<Path, String> current) {
+        for (var entry : current.entrySet()) {
+          var stamp = stamps.get(entry.getKey());
+          if (stamp != null && !stamp.equals(entry.getValue())) {
+            return false;
+          }
+        }
+        return true;
+      }
+    }
+
+    private final JavaCompiler compiler = javax.tools.ToolProvider.getSystemJavaCompiler();
+    private final Map<Set<String>, Queue<Manager>> idle = new ConcurrentHashMap<>();
+    /** Number of file managers created. */
+    final AtomicInteger managers = new AtomicInteger();
+
+    Javac() {}
+
+    @Override
+    public String name() {
+      return "javac";
+    }
+
+    @Override
+    public int run(PrintWriter out, PrintWriter err, String... args) {
+      var options = new ArrayList<String>();
+      var sources = new ArrayList<Path>();
+      for (var argument : expand(args)) {
+        if (argument.endsWith(".java") && !argument.startsWith("-")) {
+          sources.add(Path.of(argument));
+        } else {
+          options.add(argument);
+        }
+      }
+      if (sources.isEmpty() || options.stream().anyMatch(UNSUPPORTED_OPTIONS::contains)) {
+        var javac = ToolProvider.findFirst("javac").orElseThrow();
+        return javac.run(out, err, args);
+      }
+      return compile(err, options, sources, null);
+    }
+
+    /**
+     * Compile the given sources straight into a JAR file, without writing class files to disk.
+     *
+     * <p>All class files and other files written to the class output are captured in memory and
+     * stored in the JAR file in a deterministic order: the manifest first, followed by all other
+     * entries sorted by name, each with the same fixed time. A module descriptor compiled from a
+     * {@code module-info.java} source file is updated with the main class; its version is passed to
+     * javac via {@code --module-version}.
+     *
+     * @param jar the JAR file to create
+     * @param mainClass the binary name of the main class, or {@code null}
+     * @param version the module version, or {@code null}
+     * @param options javac options, without {@code -d}
+     * @param sources Java source files to compile
+     * @return javac's exit code, or 3 if writing the JAR file failed
+     */
+    int jar(
+        PrintWriter err,
+        Path jar,
+        String mainClass,
+        String version,
+        List<String> options,
+        List<Path> sources) {
+      var arguments = new ArrayList<>(options);
+      if (version != null) {
+        arguments.add("--module-version");
+        arguments.add(version);
+      }
+      if (arguments.contains("-d") || arguments.stream().anyMatch(UNSUPPORTED_OPTIONS::contains)) {
+        err.println("error: options not supported when compiling into a JAR file: " + options);
+        return 2; // command line error
+      }
+      var entries = new TreeMap<String, ByteArrayOutputStream>();
+      var code = compile(err, arguments, sources, entries);
+      if (code != 0) {
+        return code;
+      }
+      var manifest = new Manifest();
+      var attributes = manifest.getMainAttributes();
+      attributes.put(Attributes.Name.MANIFEST_VERSION, "1.0");
+      attributes.put(new Attributes.Name("Created-By"), "Bach.java " + VERSION);
+      if (mainClass != null) {
+        attributes.put(Attributes.Name.MAIN_CLASS, mainClass);
+      }
+      try {
+        Files.createDirectories(jar.toAbsolutePath().getParent());
+        try (var stream = new JarOutputStream(Files.newOutputStream(jar))) {
+          stream.putNextEntry(newJarEntry("META-INF/"));
+          stream.putNextEntry(newJarEntry(JarFile.MANIFEST_NAME));
+          manifest.write(stream);
+          var directories = new TreeSet<String>();
+          for (var name : entries.keySet()) {
+            for (int i = name.indexOf('/'); i > 0; i = name.indexOf('/', i + 1)) {
+              directories.add(name.substring(0, i + 1));
+            }
+          }
+          directories.remove("META-INF/");
+          var names = new TreeSet<>(entries.keySet());
+          names.addAll(directories);
+          names.remove(JarFile.MANIFEST_NAME);
+          for (var name : names) {
+            stream.putNextEntry(newJarEntry(name));
+            var bytes = entries.containsKey(name) ? entries.get(name).toByteArray() : new byte[0];
+            if (name.equals("module-info.class") && mainClass != null) {
+              bytes = addModuleMainClass(bytes, mainClass);
+            }
+            stream.write(bytes);
+          }
+        }
+      } catch (IOException e) {
+        err.println("error: writing JAR file failed: " + e);
+        return 3; // system error
+      }
+      return 0;
+    }
+
+    /**
+     * Compile the given sources using a pooled file manager.
+     *
+     * @param entries map capturing all class output by JAR entry name, or {@code null} to write
+     *     class output to the file system
+     */
+    private int compile(
+        PrintWriter err,
+        List<String> options,
+        List<Path> sources,
+        Map<String, ByteArrayOutputStream> entries) {
+      var locations = new TreeSet<String>();
+      for (var option : options) {
+        var location = PATH_OPTIONS.get(option);
+        if (location != null) {
+          locations.add(location);
+        }
+      }
+      var queue = idle.computeIfAbsent(locations, key -> new ConcurrentLinkedQueue<>());
+      Manager manager;
+      try {
+        manager = borrow(queue, stamps(options));
+      } catch (IOException e) {
+        err.println("error: " + e);
+        return 3; // system error
+      }
+      JavaFileManager fileManager = manager.fileManager;
+      if (entries != null) {
+        fileManager = new MemoryFileManager(manager.fileManager, entries);
+      }
+      var reusable = false;
+      try {
+        var units = manager.fileManager.getJavaFileObjectsFromPaths(sources);
+        var task = compiler.getTask(err, fileManager, null, options, null, units);
+        var code = task.call() ? 0 : 1;
+        reusable = true;
+        return code;
+      } catch (IllegalArgumentException | IllegalStateException e) {
+        reusable = true;
+        err.println("error: " + e.getMessage());
+        return 2; // command line error
+      } finally {
+        if (reusable) {
+          queue.add(manager);
+        } else {
+          close(manager); // an exception escaped the compiler, its state is unknown
+        }
+      }
+    }
+
+    private void close(Manager manager) {
+      try {
+        manager.fileManager.close();
+      } catch (IOException e) {
+        // ignore, the file manager is discarded anyway
+      }
+    }
+
+    /**
+     * Take an idle file manager that is still current or create a new one.
+     *
+     * <p>All file managers in a queue had the same locations set by their last compilation, which
+     * are overwritten by the options of the next one. Locations can't be reset to their defaults.
+     */
+    private Manager borrow(Queue<Manager> queue, Map<Path, String> stamps) throws IOException {
+      var manager = queue.poll();
+      if (manager != null && !manager.isCurrent(stamps)) {
+        manager.fileManager.close();
+        manager = null;
+      }
+      if (manager == null) {
+        manager = new Manager();
+      }
+      manager.stamps.putAll(stamps);
+      manager.fileManager.flush();
+      return manager;
+    }
+
+    /** File manager capturing all class output in memory, keyed by JAR entry name. */
+    static class MemoryFileManager extends ForwardingJavaFileManager<StandardJavaFileManager> {
+
+      private final Map<String, ByteArrayOutputStream> entries;
+
+      MemoryFileManager(StandardJavaFileManager manager, Map<String, ByteArrayOutputStream> map) {
+        super(manager);
+        this.entries = map;
+      }
+
+      @Override
+      public JavaFileObject getJavaFileForOutput(
+          Location location, String className, JavaFileObject.Kind kind, FileObject sibling)
+          throws IOException {
+        if (location != StandardLocation.CLASS_OUTPUT) {
+          return super.getJavaFileForOutput(location, className, kind, sibling);
+        }
+        return new Entry(className.replace('.', '/') + kind.extension, kind);
+      }
+
+      @Override
+      public FileObject getFileForOutput(
+          Location location, String packageName, String relativeName, FileObject sibling)
+          throws IOException {
+        if (location != StandardLocation.CLASS_OUTPUT) {
+          return super.getFileForOutput(location, packageName, relativeName, sibling);
+        }
+        var prefix = packageName.isEmpty() ? "" : packageName.replace('.', '/') + '/';
+        return new Entry(prefix + relativeName, JavaFileObject.Kind.OTHER);
+      }
+
+      /** File object writing into a buffer stored under its JAR entry name. */
+      class Entry extends SimpleJavaFileObject {
+
+        final String name;
+
+        Entry(String name, Kind kind) {
+          super(URI.create("memory:///" + name), kind);
+          this.name = name;
+        }
+
+        @Override
+        public OutputStream openOutputStream() {
+          var buffer = new ByteArrayOutputStream();
+          synchronized (entries) {
+            entries.put(name, buffer);
+          }
+          return buffer;
+        }
+      }
+    }
+
+    /** Create a JAR entry with a fixed time, making the JAR file reproducible. */
+    private static JarEntry newJarEntry(String name) {
+      var entry = new JarEntry(name);
+      entry.setTime(ENTRY_TIME);
+      return entry;
+    }
+
+    /**
+     * Add a {@code ModuleMainClass} attribute to a module descriptor, like the jar tool does.
+     *
+     * @param info module descriptor compiled by javac, declaring no fields and methods
+     * @param mainClass binary name of the main class
+     * @return the updated module descriptor
+     */
+    static byte[] addModuleMainClass(byte[] info, String mainClass) {
+      var buffer = ByteBuffer.wrap(info);
+      var count = buffer.getShort(8) & 0xFFFF;
+      buffer.position(10);
+      for (int index = 1; index < count; index++) {
+        var tag = buffer.get();
+        var size = 4; // Integer, Float, references, NameAndType, Dynamic, and InvokeDynamic
+        if (tag == 1) {
+          size = buffer.getShort() & 0xFFFF; // Utf8
+        } else if (tag == 5 || tag == 6) {
+          size = 8; // Long and Double, taking two entries
+          index++;
+        } else if (tag == 7 || tag == 8 || tag == 16 || tag == 19 || tag == 20) {
+          size = 2; // Class, String, MethodType, Module, and Package
+        } else if (tag == 15) {
+          size = 3; // MethodHandle
+        }
+        buffer.position(buffer.position() + size);
+      }
+      var end = buffer.position();
+      buffer.position(end + 6); // access flags, this class, and super class
+      if (buffer.getShort() != 0 || buffer.getShort() != 0 || buffer.getShort() != 0) {
+        throw new IllegalArgumentException("Expected a module descriptor without members");
+      }
+      var attributes = buffer.position();
+      var bytes = new ByteArrayOutputStream(info.length + mainClass.length() + 32);
+      try (var out = new DataOutputStream(bytes)) {
+        out.write(info, 0, 8);
+        out.writeShort(count + 3);
+        out.write(info, 10, end - 10);
+        out.writeByte(1); // Utf8 at index count
+        out.writeUTF("ModuleMainClass");
+        out.writeByte(1); // Utf8 at index count + 1
+        out.writeUTF(mainClass.replace('.', '/'));
+        out.writeByte(7); // Class at index count + 2
+        out.writeShort(count + 1);
+        out.write(info, end, attributes - end);
+        out.writeShort(buffer.getShort(attributes) + 1);
+        out.write(info, attributes + 2, info.length - attributes - 2);
+        out.writeShort(count);
+        out.writeInt(2);
+        out.writeShort(count + 2);
+      } catch (IOException e) {
+        throw new UncheckedIOException("Adding main class to module descriptor failed", e);
+      }
+      return bytes.toByteArray();
+    }
+
+    /** Describe the current state of all paths passed via path options, creating output ones. */
+    static Map<Path, String> stamps(List<String> options) throws IOException {
+      var stamps = new HashMap<Path, String>();
+      for (int i = 0; i < options.size() - 1; i++) {
+        var option = options.get(i);
+        if (!PATH_OPTIONS.containsKey(option)) {
+          continue;
+        }
+        for (var element : options.get(++i).split(File.pathSeparator)) {
+          var path = Path.of(element);
+          if (option.length() == 2 && !option.equals("-p")) {
+            Files.createDirectories(path); // -d, -s, and -h
+          }
+          stamps.put(path, stamp(path));
+        }
+      }
+      return stamps;
+    }
+
+    /** Describe a file by its size and modification time, a directory by its archives. */
+    static String stamp(Path path) throws IOException {
+      if (Files.isRegularFile(path)) {
+        return Files.size(path) + " " + Files.getLastModifiedTime(path);
+      }
+      if (Files.isDirectory(path)) {
+        var archives = new StringJoiner(", ", "[", "]");
+        for (var name : Util.findDirectoryEntries(path, Util::isJarFile)) {
+          archives.add(name + " " + stamp(path.resolve(name)));
+        }
+        return "directory " + archives;
+      }
+      return "missing";
+    }
+
+    /** Expand {@code @file} arguments as written by {@link Util#createArgumentFile(Consumer)}. */
+    static List<String> expand(String... args) {
+      var arguments = new ArrayList<String>();
+      for (var arg : args) {
+        if (!arg.startsWith("@")) {
+          arguments.add(arg);
+          continue;
+        }
+        String text;
+        try {
+          text = Files.readString(Path.of(arg.substring(1)));
+        } catch (IOException e) {
+          throw new UncheckedIOException("Reading argument file failed: " + arg, e);
+        }
+        var builder = new StringBuilder();
+        var quoted = false;
+        var token = false;
+        for (int i = 0; i < text.length(); i++) {
+          var c = text.charAt(i);
+          if (quoted && c == '\\' && i + 1 < text.length()) {
+            builder.append(text.charAt(++i));
+          } else if (c == '"') {
+            quoted = !quoted;
+            token = true;
+          } else if (!quoted && Character.isWhitespace(c)) {
+            if (token) {
+              arguments.add(builder.toString());
+              builder.setLength(0);
+              token = false;
+            }
+          } else {
+            builder.append(c);
+            token = true;
+          }
+        }
+        if (token) {
+          arguments.add(builder.toString());
+        }
+      }
+      return arguments;
+    }
+  }
+
+  /**
+   * Compiled class file, reduced to its application binary interface.
+   *
+   * <p>The ABI of a class consists of all parts other classes compile against: its declaration and
+   * its public and protected fields and methods, with their signatures, constant values, thrown
+   * exceptions and annotations, including type annotations. The declaration of a class includes its
+   * permitted subclasses and its record components. Method bodies, private and package-private
+   * members, and synthetic members are not part of it. The ABI of a {@code module-info.class} is
+   * its module declaration.
+   *
+   * <p>Within its module, a class is also visible to the classes of its package, so all of its
+   * non-private declarations and the classes it refers to are recorded as well.
+   */
+  static class ClassFile {
+
+    private static final int PUBLIC = 0x0001, PRIVATE = 0x0002, PROTECTED = 0x0004;
+    private static final int SYNTHETIC = 0x1000;
+    private static final int CLASS_FLAGS = 0x661D, FIELD_FLAGS = 0x001D, METHOD_FLAGS = 0x049D;
+    /** Class name in a type descriptor or signature, like {@code Ljava/util/List<...>;}. */
+    private static final Pattern REFERENCE = Pattern.compile("L([^;<>\\[\\]():.]+)[;<]");
+
+    /** Read the class file at the given path. */
+    static ClassFile read(Path file) {
+      try (var stream = Files.newInputStream(file)) {
+        return new ClassFile(new DataInputStream(new BufferedInputStream(stream)));
+      } catch (IOException e) {
+        throw new UncheckedIOException("Reading class file failed: " + file, e);
+      }
+    }
+
+    /**
+     * Compute the ABI fingerprint of all class files in the given directory.
+     *
+     * <p>If the directory contains a compiled module, only classes in packages it exports are taken
+     * into account; other modules can't compile against the rest.
+     *
+     * @return SHA-256 message digest of the ABI of all classes, as a lower-case hex string
+     */
+    static String fingerprint(Path directory) {
+      return fingerprint(readAll(directory));
+    }
+
+    /**
+     * Compute the ABI fingerprint of the given classes, taking a module descriptor into account.
+     */
+    static String fingerprint(Collection<ClassFile> types) {
+      var lines = new TreeSet<String>();
+      Set<String> exports = null;
+      for (var type : types) {
+        if (type.isModuleInfo()) {
+          lines.addAll(type.abi);
+          exports = type.exports;
+        }
+      }
+      for (var type : types) {
+        if (!type.isModuleInfo() && (exports == null || exports.contains(type.packageName()))) {
+          lines.addAll(type.abi);
+        }
+      }
+      return Util.sha256(String.join("\n", lines).getBytes(StandardCharsets.UTF_8));
+    }
+
+    /** Read all class files in the given directory, including a module descriptor. */
+    static List<ClassFile> readAll(Path directory) {
+      var types = new ArrayList<ClassFile>();
+      var info = directory.resolve("module-info.class");
+      if (Files.isRegularFile(info)) {
+        types.add(read(info));
+      }
+      for (var file : Util.find(List.of(directory), ClassFile::isClassFile)) {
+        types.add(read(file));
+      }
+      return types;
+    }
+
+    /** Test supplied path for pointing to a class file, other than a module descriptor. */
+    static boolean isClassFile(Path path) {
+      var name = path.getFileName().toString();
+      return name.endsWith(".class") && !name.equals("module-info.class");
+    }
+
+    /** Internal name of this class, like {@code java/lang/Object}. */
+    final String name;
+    /** Lines describing the ABI of this class, empty if it is not accessible to other packages. */
+    final List<String> abi;
+    /** Lines describing all non-private declarations of this class. */
+    final List<String> declarations;
+    /** Declarations of non-private constant fields, which other classes may inline. */
+    final Set<String> constants = new TreeSet<>();
+    /** Internal names of all classes this class refers to, in its constant pool or signatures. */
+    final Set<String> references = new TreeSet<>();
+    /** Internal names of the direct superclass and all direct superinterfaces of this class. */
+    final Set<String> supertypes = new TreeSet<>();
+    /** Path of the source file of this class relative to its source root, or {@code null}. */
+    final String source;
+    /** Packages exported by a module declaration, in internal form. */
+    final Set<String> exports = new TreeSet<>();
+
+    private final byte[] tags;
+    private final Object[] pool;
+
+    private ClassFile(DataInputStream in) throws IOException {
+      if (in.readInt() != 0xCAFEBABE) {
+        throw new IOException("Expected a class file, but magic number doesn't match");
+      }
+      in.readUnsignedShort(); // minor version
+      in.readUnsignedShort(); // major version
+      var count = in.readUnsignedShort();
+      this.tags = new byte[count];
+      this.pool = new Object[count];
+      for (int index = 1; index < count; index++) {
+        var tag = in.readUnsignedByte();
+        tags[index] = (byte) tag;
+        switch (tag) {
+          case 1: // Utf8
+            pool[index] = in.readUTF();
+            break;
+          case 3: // Integer
+            pool[index] = in.readInt();
+            break;
+          case 4: // Float
+            pool[index] = in.readFloat();
+            break;
+          case 5: // Long, taking two entries
+            pool[index++] = in.readLong();
+            break;
+          case 6: // Double, taking two entries
+            pool[index++] = in.readDouble();
+            break;
+          case 7: // Class
+          case 8: // String
+          case 16: // MethodType
+          case 19: // Module
+          case 20: // Package
+            pool[index] = in.readUnsignedShort();
+            break;
+          case 15: // MethodHandle
+            in.readUnsignedByte();
+            pool[index] = in.readUnsignedShort();
+            break;
+          case 9: // Fieldref
+          case 10: // Methodref
+          case 11: // InterfaceMethodref
+          case 12: // NameAndType
+          case 17: // Dynamic
+          case 18: // InvokeDynamic
+            pool[index] = in.readInt();
+            break;
+          default:
+            throw new IOException("Unknown constant pool tag " + tag + " at index " + index);
+        }
+      }
+      var access = in.readUnsignedShort();
+      this.name = name(in.readUnsignedShort());
+      var superIndex = in.readUnsignedShort();
+      var interfaces = new ArrayList<String>();
+      for (int i = in.readUnsignedShort(); i > 0; i--) {
+        interfaces.add(name(in.readUnsignedShort()));
+      }
+      if (superIndex != 0) {
+        supertypes.add(name(superIndex));
+      }
+      supertypes.addAll(interfaces);
+      var members = new ArrayList<String>();
+      var declarations = new ArrayList<String>();
+      members(in, "field", FIELD_FLAGS, members, declarations);
+      members(in, "method", METHOD_FLAGS, members, declarations);
+      var attributes = attributes(in);
+      var abi = new ArrayList<String>();
+      if (attributes.containsKey("Module")) {
+        module(attributes.get("Module"), abi);
+        declarations.addAll(abi);
+      } else {
+        access = access(access, attributes.get("InnerClasses"));
+        var declaration = new StringBuilder(name).append(" class ");
+        declaration.append(Integer.toHexString(access & CLASS_FLAGS));
+        declaration.append(" extends ").append(superIndex == 0 ? "" : name(superIndex));
+        declaration.append(" implements ").append(interfaces);
+        declaration.append(render(attributes));
+        declarations.add(0, declaration.toString());
+        if ((access & (PUBLIC | PROTECTED)) != 0) {
+          abi.add(declaration.toString());
+          abi.addAll(members);
+        }
+      }
+      this.abi = List.copyOf(abi);
+      this.declarations = List.copyOf(declarations);
+      var sourceFile = attributes.get("SourceFile");
+      if (sourceFile == null) {
+        this.source = null;
+      } else {
+        var file =
+            utf8(new DataInputStream(new ByteArrayInputStream(sourceFile)).readUnsignedShort());
+        this.source = packageName().isEmpty() ? file : packageName() + '/' + file;
+      }
+      for (int index = 1; index < count; index++) {
+        if (tags[index] == 7 && !name(index).startsWith("[")) {
+          references.add(name(index));
+        } else if (tags[index] == 1 || tags[index] == 7) {
+          var matcher = REFERENCE.matcher(tags[index] == 1 ? utf8(index) : name(index));
+          while (matcher.find()) {
+            references.add(matcher.group(1));
+          }
+        }
+      }
+      references.remove(name);
+    }
+
+    /** Test whether this class file is a module descriptor. */
+    boolean isModuleInfo() {
+      return name.equals("module-info");
+    }
+
+    /** Return the package of this class in internal form, the unnamed package is empty. */
+    String packageName() {
+      var slash = name.lastIndexOf('/');
+      return slash < 0 ? "" : name.substring(0, slash);
+    }
+
+    private String utf8(int index) {
+      return (String) pool[index];
+    }
+
+    /** Return the name of the class, module or package entry at the given index. */
+    private String name(int index) {
+      return utf8((Integer) pool[index]);
+    }
+
+    /** Return the constant value at the given index. */
+    private String constant(int index) {
+      return tags[index] == 8 ? '"' + name(index) + '"' : String.valueOf(pool[index]);
+    }
+
+    private Map<String, byte[]> attributes(DataInputStream in) throws IOException {
+      var attributes = new TreeMap<String, byte[]>();
+      for (int i = in.readUnsignedShort(); i > 0; i--) {
+        var name = utf8(in.readUnsignedShort());
+        var bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        attributes.put(name, bytes);
+      }
+      return attributes;
+    }
+
+    private void members(
+        DataInputStream in, String kind, int flags, List<String> members, List<String> declarations)
+        throws IOException {
+      for (int i = in.readUnsignedShort(); i > 0; i--) {
+        var access = in.readUnsignedShort();
+        var member = new StringBuilder(name).append(' ').append(kind).append(' ');
+        member.append(utf8(in.readUnsignedShort())).append(' ');
+        member.append(utf8(in.readUnsignedShort())).append(' ');
+        member.append(Integer.toHexString(access & flags));
+        var attributes = attributes(in);
+        if ((access & (PRIVATE | SYNTHETIC)) != 0) {
+          continue;
+        }
+        var line = member.append(render(attributes)).toString();
+        declarations.add(line);
+        if ((access & (PUBLIC | PROTECTED)) != 0) {
+          members.add(line);
+        }
+        if (attributes.containsKey("ConstantValue")) {
+          constants.add(line);
+        }
+      }
+    }
+
+    /** Return the access flags of a nested class, as declared in its inner classes attribute. */
+    private int access(int access, byte[] innerClasses) throws IOException {
+      if (innerClasses == null) {
+        return access;
+      }
+      var in = new DataInputStream(new ByteArrayInputStream(innerClasses));
+      for (int i = in.readUnsignedShort(); i > 0; i--) {
+        var inner = in.readUnsignedShort();
+        in.readUnsignedShort(); // outer class
+        in.readUnsignedShort(); // inner name
+        var flags = in.readUnsignedShort();
+        if (name(inner).equals(name)) {
+          return flags;
+        }
+      }
+      return access;
+    }
+
+    /** Render the attributes of a class or member that are part of its ABI. */
+    private String render(Map<String, byte[]> attributes) throws IOException {
+      var builder = new StringBuilder();
+      for (var entry : attributes.entrySet()) {
+        var in = new DataInputStream(new ByteArrayInputStream(entry.getValue()));
+        switch (entry.getKey()) {
+          case "AnnotationDefault":
+            builder.append(" default ").append(element(in));
+            break;
+          case "ConstantValue":
+            builder.append(" = ").append(constant(in.readUnsignedShort()));
+            break;
+          case "Deprecated":
+            builder.append(" deprecated");
+            break;
+          case "Exceptions":
+            builder.append(" throws");
+            for (int i = in.readUnsignedShort(); i > 0; i--) {
+              builder.append(' ').append(name(in.readUnsignedShort()));
+            }
+            break;
+          case "PermittedSubclasses":
+            builder.append(" permits");
+            for (int i = in.readUnsignedShort(); i > 0; i--) {
+              builder.append(' ').append(name(in.readUnsignedShort()));
+            }
+            break;
+          case "Record":
+            var components = new StringJoiner(", ", " record(", ")");
+            for (int i = in.readUnsignedShort(); i > 0; i--) {
+              var component = utf8(in.readUnsignedShort()) + ' ' + utf8(in.readUnsignedShort());
+              components.add(component + render(attributes(in)));
+            }
+            builder.append(components);
+            break;
+          case "RuntimeInvisibleAnnotations":
+          case "RuntimeVisibleAnnotations":
+            for (int i = in.readUnsignedShort(); i > 0; i--) {
+              builder.append(' ').append(annotation(in));
+            }
+            break;
+          case "RuntimeInvisibleParameterAnnotations":
+          case "RuntimeVisibleParameterAnnotations":
+            for (int parameter = 0, n = in.readUnsignedByte(); parameter < n; parameter++) {
+              for (int i = in.readUnsignedShort(); i > 0; i--) {
+                builder.append(" #").append(parameter).append(annotation(in));
+              }
+            }
+            break;
+          case "RuntimeInvisibleTypeAnnotations":
+          case "RuntimeVisibleTypeAnnotations":
+            for (int i = in.readUnsignedShort(); i > 0; i--) {
+              builder.append(" type ").append(typeAnnotation(in));
+            }
+            break;
+          case "Signature":
+            builder.append(" signature ").append(utf8(in.readUnsignedShort()));
+            break;
+        }
+      }
+      return builder.toString();
+    }
+
+    /** Render a type annotation with its target and type path, like {@code 13[]@LT;()}. */
+    private String typeAnnotation(DataInputStream in) throws IOException {
+      var type = in.readUnsignedByte();
+      int length; // of the target info, see JVMS 4.7.20.1
+      switch (type) {
+        case 0x00: // type parameter of a class or method
+        case 0x01:
+        case 0x16: // formal parameter
+          length = 1;
+          break;
+        case 0x10: // supertype
+        case 0x11: // type parameter bound of a class or method
+        case 0x12:
+        case 0x17: // thrown type
+          length = 2;
+          break;
+        case 0x13: // field, return or receiver type
+        case 0x14:
+        case 0x15:
+          length = 0;
+          break;
+        default:
+          throw new IOException("Unexpected type annotation target " + Integer.toHexString(type));
+      }
+      var builder = new StringBuilder(Integer.toHexString(type));
+      for (int i = 0; i < length; i++) {
+        builder.append('.').append(in.readUnsignedByte());
+      }
+      var path = new StringJoiner(",", "[", "]");
+      for (int i = in.readUnsignedByte(); i > 0; i--) {
+        path.add(in.readUnsignedByte() + ":" + in.readUnsignedByte());
+      }
+      return builder.append(path).append(annotation(in)).toString();
+    }
+
+    private String annotation(DataInputStream in) throws IOException {
+      var joiner = new StringJoiner(", ", "@" + utf8(in.readUnsignedShort()) + "(", ")");
+      for (int i = in.readUnsignedShort(); i > 0; i--) {
+        joiner.add(utf8(in.readUnsignedShort()) + "=" + element(in));
+      }
+      return joiner.toString();
+    }
+
+    private String element(DataInputStream in) throws IOException {
+      var tag = (char) in.readUnsignedByte();
+      switch (tag) {
+        case 'e':
+          return utf8(in.readUnsignedShort()) + '.' + utf8(in.readUnsignedShort());
+        case 'c':
+          return utf8(in.readUnsignedShort()) + ".class";
+        case '@':
+          return annotation(in);
+        case '[':
+          var joiner = new StringJoiner(", ", "{", "}");
+          for (int i = in.readUnsignedShort(); i > 0; i--) {
+            joiner.add(element(in));
+          }
+          return joiner.toString();
+        case 's':
+          return '"' + utf8(in.readUnsignedShort()) + '"';
+        default:
+          return tag + constant(in.readUnsignedShort());
+      }
+    }
+
+    /** Describe the module declaration, one line per directive, and collect exported packages. */
+    private void module(byte[] attribute, List<String> abi) throws IOException {
+      var in = new DataInputStream(new ByteArrayInputStream(attribute));
+      var module = name(in.readUnsignedShort());
+      var flags = in.readUnsignedShort();
+      var version = in.readUnsignedShort();
+      abi.add("module " + module + ' ' + flags + (version == 0 ? "" : " @" + utf8(version)));
+      for (int i = in.readUnsignedShort(); i > 0; i--) {
+        var required = name(in.readUnsignedShort());
+        flags = in.readUnsignedShort();
+        version = in.readUnsignedShort();
+        abi.add("requires " + required + ' ' + flags + (version == 0 ? "" : " @" + utf8(version)));
+      }
+      for (var directive : List.of("exports", "opens")) {
+        for (int i = in.readUnsignedShort(); i > 0; i--) {
+          var packageName = name(in.readUnsignedShort());
+          var line = new StringBuilder(directive).append(' ').append(packageName);
+          line.append(' ').append(in.readUnsignedShort()).append(" to");
+          for (int j = in.readUnsignedShort(); j > 0; j--) {
+            line.append(' ').append(name(in.readUnsignedShort()));
+          }
+          if (directive.equals("exports")) {
+            exports.add(packageName);
+          }
+          abi.add(line.toString());
+        }
+      }
+      for (int i = in.readUnsignedShort(); i > 0; i--) {
+        abi.add("uses " + name(in.readUnsignedShort()));
+      }
+      for (int i = in.readUnsignedShort(); i > 0; i--) {
+        var line = new StringBuilder("provides ").append(name(in.readUnsignedShort()));
+        line.append(" with");
+        for (int j = in.readUnsignedShort(); j > 0; j--) {
+          line.append(' ').append(name(in.readUnsignedShort()));
+        }
+        abi.add(line.toString());
+      }
+    }
+  }
+
+  /**
+   * Class-level dependency database of a compiled module, stored as a properties file.
+   *
+   * <p>It records the content hash of each source file of the module and, for each class compiled
+   * from one of them, a hash of its non-private declarations, a hash of the constants among them,
+   * and the classes of the module it refers to. That is enough to find the classes to recompile
+   * after the declarations of a class changed, unless a changed constant was inlined.
+   */
+  static class Dependencies {
+
+    /** Class compiled from a source file. */
+    static class Entry {
+      final String source;
+      final String declarations;
+      /** Hash of the declarations of all constants, empty if the class declares none. */
+      final String constants;
+
+      final Set<String> supertypes;
+      final Set<String> references;
+
+      Entry(
+          String source,
+          String declarations,
+          String constants,
+          Set<String> supertypes,
+          Set<String> references) {
+        this.source = source;
+        this.declarations = declarations;
+        this.constants = constants;
+        this.supertypes = supertypes;
+        this.references = references;
+      }
+    }
+
+    /**
+     * Load the database from the given file.
+     *
+     * @return the database, or {@code null} if there is none or it was stored in an older format
+     */
+    static Dependencies load(Path file) {
+      if (!Files.isRegularFile(file)) {
+        return null;
+      }
+      var properties = Util.loadProperties(file);
+      var dependencies = new Dependencies(properties.getProperty("fingerprint"));
+      for (var key : properties.stringPropertyNames()) {
+        var value = properties.getProperty(key);
+        if (key.startsWith("source:")) {
+          dependencies.sources.put(key.substring(7), value);
+        }
+        if (key.startsWith("class:")) {
+          var fields = value.split("\t", 5);
+          if (fields.length < 5) {
+            return null;
+          }
+          var supertypes = names(fields[3]);
+          var entry = new Entry(fields[0], fields[1], fields[2], supertypes, names(fields[4]));
+          dependencies.classes.put(key.substring(6), entry);
+        }
+      }
+      return dependencies;
+    }
+
+    private static Set<String> names(String field) {
+      return field.isEmpty() ? Set.of() : Set.of(field.split(" "));
+    }
+
+    /** Scan all class files in the given directory, compiled from the given sources. */
+    static Dependencies scan(Path directory, Map<String, String> sources) {
+      var types = ClassFile.readAll(directory);
+      var names = types.stream().map(type -> type.name).collect(Collectors.toSet());
+      var dependencies = new Dependencies(ClassFile.fingerprint(types));
+      dependencies.sources.putAll(sources);
+      for (var type : types) {
+        if (type.isModuleInfo()) {
+          continue;
+        }
+        var declarations = String.join("\n", new TreeSet<>(type.declarations));
+        var hash = Util.sha256(declarations.getBytes(StandardCharsets.UTF_8));
+        var constants = "";
+        if (!type.constants.isEmpty()) {
+          var lines = String.join("\n", new TreeSet<>(type.constants));
+          constants = Util.sha256(lines.getBytes(StandardCharsets.UTF_8));
+        }
+        var supertypes = new TreeSet<>(type.supertypes);
+        supertypes.retainAll(names);
+        var references = new TreeSet<>(type.references);
+        references.retainAll(names);
+        var source = Objects.toString(type.source, "");
+        var entry = new Entry(source, hash, constants, supertypes, references);
+        dependencies.classes.put(type.name, entry);
+      }
+      return dependencies;
+    }
+
+    /** ABI fingerprint of the module. */
+    final String fingerprint;
+    /** Content hash of each source file, keyed by its path relative to the source root. */
+    final Map<String, String> sources = new TreeMap<>();
+    /** Classes compiled from the sources, keyed by their internal names. */
+    final Map<String, Entry> classes = new TreeMap<>();
+
+    Dependencies(String fingerprint) {
+      this.fingerprint = fingerprint;
+    }
+
+    /** Test whether the source file of every class is known. */
+    boolean isComplete() {
+      return classes.values().stream().allMatch(entry -> sources.containsKey(entry.source));
+    }
+
+    /** Return the names of all classes compiled from the given source files. */
+    Set<String> classes(Set<String> sources) {
+      var names = new TreeSet<String>();
+      classes.forEach(
+          (name, entry) -> {
+            if (sources.contains(entry.source)) {
+              names.add(name);
+            }
+          });
+      return names;
+    }
+
+    /** Return the given classes and all classes extending or implementing them, transitively. */
+    Set<String> subtypes(Set<String> names) {
+      var subtypes = new TreeSet<>(names);
+      var added = true;
+      while (added) {
+        added = false;
+        for (var entry : classes.entrySet()) {
+          if (!Collections.disjoint(entry.getValue().supertypes, subtypes)) {
+            added |= subtypes.add(entry.getKey());
+          }
+        }
+      }
+      return subtypes;
+    }
+
+    /** Return the source files of all classes referring to one of the given classes. */
+    Set<String> dependents(Set<String> names) {
+      var dependents = new TreeSet<String>();
+      for (var entry : classes.values()) {
+        if (!Collections.disjoint(entry.references, names)) {
+          dependents.add(entry.source);
+        }
+      }
+      return dependents;
+    }
+
+    /** Store this database in the given file. */
+    void store(Path file) {
+      var properties = new Properties();
+      properties.setProperty("fingerprint", fingerprint);
+      sources.forEach((path, hash) -> properties.setProperty("source:" + path, hash));
+      classes.forEach(
+          (name, entry) -> {
+            var supertypes = String.join(" ", entry.supertypes);
+            var references = String.join(" ", entry.references);
+            var value =
+                String.join(
+                    "\t",
+                    entry.source,
+                    entry.declarations,
+                    entry.constants,
+                    supertypes,
+                    references);
+            properties.setProperty("class:" + name, value);
+          });
+      Util.storeProperties(file, properties, "Dependencies between classes of a module");
+    }
+  }
+
+  /** Format Java source files. */
+  class Formatter {
+
+    /** Download the formatter JAR, unless it is already present. */
+    Path jar() {
+      var uri = configuration.uris.toolFormat.toString();
+      return prefetch().await(uri, configuration.paths.user.resolve("tool/format"));
+    }
+
+    /** Run format in a new Java process. */
+    int format(Object... args) {
+      log(TRACE, "format(%s)", Util.join(args));
+      var arguments = new ArrayList<>();
+      arguments.add("-jar");
+      arguments.add(jar());
+      arguments.addAll(List.of(args));
+      return runner.run("java", arguments.toArray(Object[]::new));
+    }
+
+    /**
+     * Format all Java source files found in the given roots in-process and in parallel.
+     *
+     * @param roots directories to scan for Java source files
+     * @param replace {@code true} to replace files in-place, {@code false} to print the names of
+     *     unformatted files and return a non-zero error code if at least one was found
+     * @return zero on success, a non-zero error code otherwise
+     */
+    int format(Iterable<Path> roots, boolean replace) {
+      var cache = new Cache(configuration.uris.toolFormat.toString());
+      var found = Util.find(roots, Util::isJavaFile);
+      var files = new ArrayList<Path>();
+      for (var file : found) {
+        if (!cache.isFormatted(file)) {
+          files.add(file);
+        }
+      }
+      var pruned = cache.retain(found);
+      if (files.isEmpty()) {
+        if (pruned) {
+          cache.store();
+        }
+        log(DEBUG, "All files are known to be formatted");
+        return 0;
+      }
+      var jar = jar();
+      new Store().pin(jar); // kept open by a class loader until this process exits
+      var format = GoogleJavaFormat.of(jar);
+      var mode = replace ? "--replace" : "--dry-run --set-exit-if-changed";
+      log(INFO, ">> format(%s, %d files) using %s", mode, files.size(), format);
+      var parallelism = Math.min(files.size(), configuration.options.parallelism);
+      var executor = Executors.newFixedThreadPool(parallelism);
+      try {
+        var futures = new ArrayList<Future<Integer>>();
+        for (var file : files) {
+          futures.add(executor.submit(() -> format(format, cache, file, replace)));
+        }
+        var code = 0;
+        for (int i = 0; i < files.size(); i++) {
+          var result = futures.get(i).get();
+          if (result == 0) {
+            continue;
+          }
+          if (result == 1) {
+            out.println(files.get(i)); // changed
+            code = Math.max(code, replace ? 0 : 1);
+            continue;
+          }
+          code = 1;
+        }
+        return code;
+      } catch (InterruptedException | ExecutionException e) {
+        throw new Error("Formatting failed: " + e, e);
+      } finally {
+        executor.shutdownNow();
+        cache.store();
+      }
+    }
+
+    /** Format a single file, returning 0 if unchanged, 1 if changed and 2 on error. */
+    private int format(GoogleJavaFormat format, Cache cache, Path file, boolean replace)
+        throws IOException {
+      var source = Files.readString(file);
+      String formatted;
+      try {
+        formatted = format.format(source);
+      } catch (IllegalArgumentException e) {
+        log(ERROR, "%s: %s", file, e.getMessage());
+        return 2;
+      }
+      if (source.equals(formatted)) {
+        cache.put(file, source);
+        return 0;
+      }
+      if (replace) {
+        Files.writeString(file, formatted);
+        cache.put(file, formatted);
+      }
+      return 1;
+    }
+
+    /**
+     * Persistent record of files known to be formatted.
+     *
+     * <p>Each entry maps a file to its size, last modified time and the SHA-256 hash of its
+     * formatted content. A file is known to be formatted if its size and time stamp match, or if
+     * the hash of its current content is one of the recorded hashes. All entries are discarded when
+     * the formatter version changes. Entries of files a format run no longer finds are dropped.
+     */
+    class Cache {
+      final Path file = configuration.paths.cache.resolve("format.properties");
+      final String version;
+      final Map<String, String> entries = new ConcurrentHashMap<>();
+      final Set<String> hashes = ConcurrentHashMap.newKeySet();
+
+      Cache(String version) {
+        this.version = version;
+        if (!Files.isRegularFile(file)) {
+          return;
+        }
+        var properties = Util.loadProperties(file);
+        if (!version.equals(properties.getProperty(".version"))) {
+          log(DEBUG, "Formatter version changed, discarding %s", file);
+          return;
+        }
+        properties.remove(".version");
+        for (var key : properties.stringPropertyNames()) {
+          var value = properties.getProperty(key);
+          entries.put(key, value);
+          hashes.add(value.substring(value.lastIndexOf(',') + 1));
+        }
+      }
+
+      /** Test whether the given file is known to be formatted. */
+      boolean isFormatted(Path file) {
+        try {
+          var key = key(file);
+          var entry = entries.get(key);
+          var stamp = stamp(file);
+          if (entry != null && entry.startsWith(stamp)) {
+            return true;
+          }
+          var hash = Util.sha256(Files.readAllBytes(file));
+          if (hashes.contains(hash)) {
+            entries.put(key, stamp + hash);
+            return true;
+          }
+          return false;
+        } catch (IOException e) {
+          return false;
+        }
+      }
+
+      /** Record the given file to be formatted, with the given content. */
+      void put(Path file, String content) throws IOException {
+        var hash = Util.sha256(content.getBytes(StandardCharsets.UTF_8));
+        hashes.add(hash);
+        entries.put(key(file), stamp(file) + hash);
+      }
+
+      /**
+       * Drop entries of files not in the given collection, like deleted or renamed ones.
+       *
+       * @return {@code true} if at least one entry was dropped
+       */
+      boolean retain(Collection<Path> files) {
+        var keys = files.stream().map(this::key).collect(Collectors.toSet());
+        return entries.keySet().retainAll(keys);
+      }
+
+      /** Write all entries to the cache file. */
+      void store() {
+        var properties = new Properties();
+        properties.putAll(entries);
+        properties.setProperty(".version", version);
+        try {
+          Util.storeProperties(file, properties, "Files known to be formatted");
+        } catch (UncheckedIOException e) {
+          log(WARNING, "Storing format cache failed: %s", e);
+        }
+      }
+
+      private String key(Path file) {
+        return file.toAbsolutePath().normalize().toString();
+      }
+
+      private String stamp(Path file) throws IOException {
+        var attributes = Files.readAttributes(file, BasicFileAttributes.class);
+        return attributes.size() + "," + attributes.lastModifiedTime().toMillis() + ",";
+      }
+    }
+  }
+
+  /** Google Java Format API, loaded once per JAR into an isolated class loader. */
+  static class GoogleJavaFormat {
+
+    private static final Map<Path, GoogleJavaFormat> CACHE = new ConcurrentHashMap<>();
+
+    /** Get the cached formatter loaded from the given JAR, loading it on first access. */
+    static GoogleJavaFormat of(Path jar) {
+      return CACHE.computeIfAbsent(jar.toAbsolutePath().normalize(), GoogleJavaFormat::new);
+    }
+
+    final String version;
+    private final Object formatter;
+    private final Method formatSourceAndFixImports;
+
+    private GoogleJavaFormat(Path jar) {
+      try {
+        var urls = new URL[] {jar.toUri().toURL()};
+        var parent = ClassLoader.getPlatformClassLoader();
+        var loader = new URLClassLoader("google-java-format", urls, parent);
+        var type = loader.loadClass("com.google.googlejavaformat.java.Formatter");
+        var implementationVersion = type.getPackage().getImplementationVersion();
+        this.version = Objects.toString(implementationVersion, jar.getFileName().toString());
+        this.formatter = type.getConstructor().newInstance();
+        this.formatSourceAndFixImports = type.getMethod("formatSourceAndFixImports", String.class);
+      } catch (ReflectiveOperationException | IOException e) {
+        throw new Error("Loading google-java-format failed: " + jar, e);
+      }
+    }
+
+    /**
+     * Format the given Java compilation unit and fix its imports.
+     *
+     * @throws IllegalArgumentException if the source could not be parsed
+     */
+    String format(String source) {
+      try {
+        return (String) formatSourceAndFixImports.invoke(formatter, source);
+      } catch (InvocationTargetException e) {
+        throw new IllegalArgumentException(e.getCause().getMessage(), e.getCause());
+      } catch (IllegalAccessException e) {
+        throw new Error("Calling google-java-format failed", e);
+      }
+    }
+
+    @Override
+    public String toString() {
+      return "google-java-format " + version;
+    }
+  }
+
+  /** Flight recorder event committed for each tool run. */
+  @Name("bach.Tool")
+  @Label("Tool Run")
+  @Category("Bach")
+  static class ToolEvent extends Event {
+    @Label("Name")
+    String name;
+
+    @Label("Kind")
+    @Description("Dispatch kind of the tool, or UNKNOWN")
+    String kind;
+
+    @Label("Arguments")
+    int arguments;
+
+    @Label("Exit Code")
+    @Description("Error code returned by the tool, -1 if it threw")
+    int code = -1;
+  }
+
+  /** Flight recorder event committed for each download request. */
+  @Name("bach.Download")
+  @Label("Download")
+  @Category("Bach")
+  static class DownloadEvent extends Event {
+    @Label("URI")
+    String uri;
+
+    @Label("Bytes")
+    @DataAmount
+    long bytes;
+
+    @Label("Cache Hit")
+    @Description("Local target file was reused without transferring it")
+    boolean hit;
+  }
+
+  /** Flight recorder event committed for each acquired file lock. */
+  @Name("bach.Lock")
+  @Label("Lock")
+  @Category("Bach")
+  static class LockEvent extends Event {
+    @Label("Path")
+    String path;
+
+    @Label("Contended")
+    @Description("Lock was held by another thread or process when it was requested")
+    boolean contended;
+  }
+
+  /** Flight recorder event committed for each walked root directory. */
+  @Name("bach.Find")
+  @Label("File Walk")
+  @Category("Bach")
+  static class FindEvent extends Event {
+    @Label("Root")
+    String root;
+
+    @Label("Entries Visited")
+    long visited;
+  }
+
+  /**
+   * Records the build while it runs.
+   *
+   * <p>System property {@code bach.jfr=<file>} records a flight recording into that file, {@code
+   * bach.trace=<file>} writes a {@link Trace} timeline into that file.
+   */
+  static class Recorder {
+
+    /** Start recording as requested by system properties. */
+    static Recorder start() {
+      var jfr = System.getProperty("bach.jfr", "");
+      var trace = System.getProperty("bach.trace", "");
+      Recording recording = null;
+      if (!jfr.isBlank()) {
+        try {
+          recording = new Recording(jdk.jfr.Configuration.getConfiguration("default"));
+          recording.setName("Bach " + VERSION);
+          recording.setDestination(Path.of(jfr));
+          recording.start();
+        } catch (Exception e) {
+          throw new Error("Starting flight recording failed: " + e, e);
+        }
+      }
+      return new Recorder(recording, trace.isBlank() ? null : Path.of(trace));
+    }
+
+    private final Recording recording;
+    private final Path traceFile;
+    private final Trace trace;
+
+    private Recorder(Recording recording, Path traceFile) {
+      this.recording = recording;
+      this.traceFile = traceFile;
+      this.trace = traceFile == null ? null : Trace.start();
+    }
+
+    /** Stop recording and write all recorded data into the destination files. */
+    void stop() {
+      if (trace != null) {
+        trace.stop(traceFile);
+      }
+      if (recording != null) {
+        recording.stop();
+        recording.close();
+      }
+    }
+  }
+
+  /**
+   * Timeline of spans written in Chrome's trace-event format.
+   *
+   * <p>Open the written file in {@code chrome://tracing} or <a
+   * href="https://ui.perfetto.dev">Perfetto</a>. Spans run in this JVM are placed in lanes per
+   * thread, forked processes get lanes of their own.
+   */
+  static class Trace {
+
+    /** Currently active trace, {@code null} if tracing is disabled. */
+    private static volatile Trace active;
+
+    /** Identifier of this JVM's process. */
+    private static final long PID = ProcessHandle.current().pid();
+
+    /** Start a new trace, making it the active one. */
+    static Trace start() {
+      var trace = new Trace();
+      active = trace;
+      return trace;
+    }
+
+    /** Begin a new span on the current thread. */
+    static Span begin(String category, String name) {
+      var trace = active;
+      if (trace == null) {
+        return Span.NONE;
+      }
+      var thread = Thread.currentThread();
+      trace.names.putIfAbsent(PID + "/" + thread.getId(), thread.getName());
+      return new Span(trace, category, name, PID, thread.getId());
+    }
+
+    /** Begin a new span in the lane of the given forked process. */
+    static Span begin(Process process, List<String> command) {
+      var trace = active;
+      if (trace == null) {
+        return Span.NONE;
+      }
+      var pid = process.pid();
+      trace.names.putIfAbsent(String.valueOf(pid), String.join(" ", command));
+      var name = Path.of(command.get(0)).getFileName().toString();
+      return new Span(trace, "process", name, pid, pid).put("command", String.join(" ", command));
+    }
+
+    private final long origin = System.nanoTime();
+    private final Map<String, String> names = new ConcurrentHashMap<>();
+    private final Collection<String> events = new ConcurrentLinkedQueue<>();
+
+    /** Deactivate this trace and write all completed spans into the given file. */
+    void stop(Path file) {
+      if (active == this) {
+        active = null;
+      }
+      var lines = new ArrayList<String>();
+      names.forEach(
+          (key, name) -> {
+            var ids = key.split("/");
+            var kind = ids.length == 1 ? "process_name" : "thread_name";
+            var tid = ids.length == 1 ? ids[0] : ids[1];
+            var format =
+                "{\"ph\":\"M\",\"name\":\"%s\",\"pid\":%s,\"tid\":%s,\"args\":{\"name\":%s}}";
+            lines.add(String.format(format, kind, ids[0], tid, json(name)));
+          });
+      lines.addAll(events);
+      try {
+        var parent = file.toAbsolutePath().getParent();
+        if (parent != null) {
+          Files.createDirectories(parent);
+        }
+        var head = "{\"displayTimeUnit\":\"ms\",\"traceEvents\":[\n";
+        Files.writeString(file, head + String.join(",\n", lines) + "\n]}\n");
+      } catch (IOException e) {
+        throw new UncheckedIOException("Writing trace failed: " + file, e);
+      }
+    }
+
+    /** Quote and escape the given value as a JSON string. */
+    static String json(Object value) {
+      var string = String.valueOf(value);
+      var builder = new StringBuilder(string.length() + 2).append('"');
+      for (var c : string.toCharArray()) {
+        if (c == '"' || c == '\\') {
+          builder.append('\\').append(c);
+        } else if (c < ' ') {
+          builder.append(String.format("\\u%04x", (int) c));
+        } else {
+          builder.append(c);
+        }
+      }
+      return builder.append('"').toString();
+    }
+
+    /** Time span recorded as a complete event when ended. */
+    static class Span {
+
+      /** Span ignoring all calls, used when tracing is disabled. */
+      static final Span NONE = new Span(null, "", "", 0, 0);
+
+      private final Trace trace;
+      private final String category, name;
+      private final long pid, tid, begin;
+      private final Map<String, Object> arguments = new LinkedHashMap<>();
+
+      private Span(Trace trace, String category, String name, long pid, long tid) {
+        this.trace = trace;
+        this.category = category;
+        this.name = name;
+        this.pid = pid;
+        this.tid = tid;
+        this.begin = System.nanoTime();
+      }
+
+      /** Attach an argument shown in the details of this span. */
+      Span put(String key, Object value) {
+        if (trace != null) {
+          arguments.put(key, value);
+        }
+        return this;
+      }
+
+      /** End this span and add it to its trace. */
+      void end() {
+        if (trace == null) {
+          return;
+        }
+        var micros = (System.nanoTime() - begin) / 1000;
+        var args = new StringJoiner(",", "{", "}");
+        arguments.forEach((key, value) -> args.add(json(key) + ':' + json(value)));
+        var format =
+            "{\"ph\":\"X\",\"cat\":%s,\"name\":%s,\"pid\":%d,\"tid\":%d,"
+                + "\"ts\":%d,\"dur\":%d,\"args\":%s}";
+        var timestamp = (begin - trace.origin) / 1000;
+        trace.events.add(
+            String.format(format, json(category), json(name), pid, tid, timestamp, micros, args));
+      }
+    }
+  }
+
+  /** Custom tool interface. */
+  @FunctionalInterface
+  public interface Tool {
+
+    /** Default tools. */
+    Map<String, Tool> API =
+        Map.of(
+            "compile",
+            Bach::compile,
+            "daemon",
+            Bach::daemon,
+            "format",
+            Bach::format,
+            "gc",
+            Bach::gc,
+            "help",
+            Bach::help,
+            "version",
+            Bach::version);
+
+    default String name() {
+      return getClass().getName();
+    }
+
+    int run(Bach bach);
+  }
+
+  /** Static helper. */
+  static class Util {
+
+    Util() {
+      throw new Error();
+    }
+
+    /** Assigned returns P if P is non-nil and throws an exception if P is nil. */
+    static <T> T assigned(T object, String name) {
+      return Objects.requireNonNull(object, name + " must not be null");
+    }
+    /** List all paths matching the given filter starting at given root paths. */
+    static List<Path> find(Iterable<Path> roots, Predicate<Path> filter) {
+      var files = new ArrayList<Path>();
+      find(roots, filter, files::add);
+      return files;
+    }
+
+    /** Pass all paths matching the given filter starting at given root paths to the consumer. */
+    static void find(Iterable<Path> roots, Predicate<Path> filter, Consumer<Path> consumer) {
+      for (var root : roots) {
+        var event = new FindEvent();
+        event.begin();
+        try (var stream = Files.walk(root)) {
+          stream.peek(path -> event.visited++).filter(filter).forEach(consumer);
+        } catch (Exception e) {
+          throw new Error("Scanning directory '" + root + "' failed: " + e, e);
+        } finally {
+          event.end();
+          if (event.shouldCommit()) {
+            event.root = root.toString();
+            event.commit();
+          }
+        }
+      }
+    }
+
+    /**
+     * Create a temporary argument file and write all arguments produced by the given producer.
+     *
+     * <p>Each argument is written on its own line, enclosed in double quotes and with backslashes
+     * and quotes escaped, as expected by {@code @file} arguments of {@code javac} and {@code java}.
+     *
+     * @param producer receives a consumer accepting arguments to write
+     * @return path to the argument file, to be deleted on exit unless deleted earlier
+     */
+    static Path createArgumentFile(Consumer<Consumer<Object>> producer) {
+      try {
+        var file = Files.createTempFile("bach-", ".args");
+        file.toFile().deleteOnExit();
+        try (var writer = Files.newBufferedWriter(file)) {
+          producer.accept(
+              argument -> {
+                var string = Objects.toString(argument);
+                var escaped = string.replace("\\", "\\\\").replace("\"", "\\\"");
+                try {
+                  writer.write('"' + escaped + '"');
+                  writer.newLine();
+                } catch (IOException e) {
+                  throw new UncheckedIOException("Writing argument file failed: " + file, e);
+                }
+              });
+        }
+        return file;
+      } catch (IOException e) {
+        throw new UncheckedIOException("Creating argument file failed", e);
+      }
+    }
+
+    /** Return the cause of a completion exception, or the given throwable itself. */
+    static Throwable unwrap(Throwable throwable) {
+      var cause = throwable.getCause();
+      return throwable instanceof CompletionException && cause != null ? cause : throwable;
+    }
+
+    /** Delete the given file, if it is not {@code null} and exists. */
+    static void delete(Path file) {
+      if (file == null) {
+        return;
+      }
+      try {
+        Files.deleteIfExists(file);
+      } catch (IOException e) {
+        throw new UncheckedIOException("Deleting file failed: " + file, e);
+      }
+    }
+
+    /** Delete the given directory tree, if it exists. */
+    static void treeDelete(Path root) {
+      if (!Files.exists(root)) {
+        return;
+      }
+      try (var stream = Files.walk(root)) {
+        for (var path : stream.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+          Files.deleteIfExists(path);
+        }
+      } catch (IOException e) {
+        throw new UncheckedIOException("Deleting tree failed: " + root, e);
+      }
+    }
+
+    /** Test supplied path for pointing to a Java source compilation unit. */
+    static boolean isJavaFile(Path path) {
+      if (Files.isRegularFile(path)) {
+        var name = path.getFileName().toString();
+        if (name.endsWith(".java")) {
+          return name.indexOf('.') == name.length() - 5; // single dot in filename
+        }
+      }
+      return false;
+    }
+
+    /** Test supplied path for pointing to a Java source compilation unit. */
+    static boolean isJarFile(Path path) {
+      return Files.isRegularFile(path) && path.getFileName().toString().endsWith(".jar");
+    }
+
+    /** Test supplied path for pointing to an executable program. */
+    static boolean isExecutableFile(Path path) {
+      return Files.isRegularFile(path) && Files.isExecutable(path);
+    }
+
+    /** Test supplied path for pointing to a Java module declaration source compilation unit. */
+    static boolean isModuleInfo(Path path) {
+      return Files.isRegularFile(path) && path.getFileName().toString().equals("module-info.java");
+    }
+
+    /** List names of all directories found in given directory. */
+    static List<String> findDirectoryNames(Path directory) {
+      return findDirectoryEntries(directory, Files::isDirectory);
+    }
+
+    /** List paths of all entries found in given directory after applying the filter. */
+    static List<String> findDirectoryEntries(Path directory, DirectoryStream.Filter<Path> filter) {
+      var names = new ArrayList<String>();
+      try (var stream = Files.newDirectoryStream(directory, filter)) {
+        stream.forEach(entry -> names.add(entry.getFileName().toString()));
+      } catch (IOException e) {
+        throw new UncheckedIOException("Scanning directory entries failed: " + directory, e);
+      }
+      Collections.sort(names);
+      return names;
+    }
+
+    /** Find native foundation tool, an executable program in given paths. */
+    static Optional<Path> findExecutable(Iterable<Path> paths, String name) {
+      try {
+        for (var path : paths) {
+          for (var suffix : List.of("", ".exe")) {
+            var program = path.resolve(name + suffix);
+            if (isExecutableFile(program)) {
+              return Optional.of(program);
+            }
+          }
+        }
+      } catch (InvalidPathException e) {
+        // fall-through
+      }
+      return Optional.empty();
+    }
+
+    /** Gets a property value indicated by the specified {@code key}. */
+    static String get(String key, Properties properties, Supplier<Object> defaultValueSupplier) {
+      return Optional.ofNullable(System.getProperty(assigned(key, "key")))
+          .or(() -> Optional.ofNullable(assigned(properties, "properties").getProperty(key)))
+          .or(() -> Optional.ofNullable(System.getenv("BACH_" + key.toUpperCase())))
+          .orElse(Objects.toString(assigned(defaultValueSupplier, "defaultValueSupplier").get()));
     }
 
     /** Join an array of objects into a human-readable string. */
@@ -658,6 +5771,79 @@ public class Bach {
       return properties;
     }
 
+    /** Transfer all characters read from the stream to the writer on the {@link #ASYNC} pool. */
+    static CompletableFuture<Void> pump(InputStream stream, PrintWriter writer) {
+      return CompletableFuture.runAsync(
+          () -> {
+            try (var reader = new InputStreamReader(stream)) {
+              reader.transferTo(writer);
+            } catch (IOException e) {
+              writer.println("Pumping process output failed: " + e);
+            }
+            writer.flush();
+          },
+          ASYNC);
+    }
+
+    /** Store properties to the specified file by atomically replacing it. */
+    static void storeProperties(Path path, Properties properties, String comments) {
+      try {
+        var parent = Files.createDirectories(path.toAbsolutePath().getParent());
+        var temporary = Files.createTempFile(parent, path.getFileName().toString(), ".tmp");
+        try (var writer = Files.newBufferedWriter(temporary)) {
+          properties.store(writer, comments);
+        }
+        Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING);
+      } catch (IOException e) {
+        throw new UncheckedIOException("Storing properties failed: " + path, e);
+      }
+    }
+
+    /** Parse a number of bytes, optionally suffixed by 'K', 'M' or 'G' for binary multiples. */
+    static long bytes(String size) {
+      var text = size.strip().toUpperCase();
+      var shift = "KMG".indexOf(text.charAt(text.length() - 1)) + 1;
+      var digits = shift == 0 ? text : text.substring(0, text.length() - 1).strip();
+      return Long.parseLong(digits) << (10 * shift);
+    }
+
+    /** Compute the SHA-256 message digest of the given bytes, as a lower-case hex string. */
+    static String sha256(byte[] bytes) {
+      return hex(digest("SHA-256").digest(bytes));
+    }
+
+    /** Create a message digest for the given algorithm, which every platform must support. */
+    static MessageDigest digest(String algorithm) {
+      try {
+        return MessageDigest.getInstance(algorithm);
+      } catch (NoSuchAlgorithmException e) {
+        throw new Error(algorithm + " is not supported?!", e);
+      }
+    }
+
+    /** Copy the source file to the target file using {@link FileChannel#transferTo}. */
+    static void copy(Path source, Path target) throws IOException {
+      try (var in = FileChannel.open(source);
+          var out =
+              FileChannel.open(target, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+        var size = in.size();
+        for (long position = 0; position < size; ) {
+          position += in.transferTo(position, size - position, out);
+        }
+      }
+      Files.setLastModifiedTime(target, Files.getLastModifiedTime(source));
+    }
+
+    /** Convert the given bytes to a lower-case hex string. */
+    static String hex(byte[] bytes) {
+      var builder = new StringBuilder(bytes.length * 2);
+      for (var b : bytes) {
+        builder.append(Character.forDigit((b >> 4) & 0xF, 16));
+        builder.append(Character.forDigit(b & 0xF, 16));
+      }
+      return builder.toString();
+    }
+
     /** Convert given array of objects to an array of strings. */
     static String[] strings(Object... objects) {
       var list = new ArrayList<String>();
@@ -16,10 +16,12 @@
  */
 
 import java.io.File;
+import java.io.PrintWriter;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.util.function.Predicate;
 
 /** OS-agnostic build program. */
@@ -29,26 +31,31 @@ class Build {
   public static void main(String... args) throws Exception {
     System.out.println("\nBuilding Bach.java " + Bach.VERSION + "...");
     var build = new Build();
-    // build.clean();
-    build.format();
-    build.compile();
-    build.test();
-    build.document();
-    build.jar();
-    build.validate();
+    var recorder = Bach.Recorder.start(); // -Dbach.jfr=<file> and -Dbach.trace=<file>
+    try {
+      build.bach.prefetch().start(); // downloads all artifacts in the background
+      // build.clean();
+      build.format();
+      var document = build.document(); // overlaps compile and test
+      build.compile();
+      build.test();
+      build.jar(document);
+      build.validate();
+    } finally {
+      recorder.stop();
+    }
   }
 
   private final Bach bach = Bach.of();
   private final Path target = Path.of("target", "build");
-  private final Path targetBinMain = target.resolve("bin/main");
   private final Path targetBinTest = target.resolve("bin/test");
   private final Path targetJavadoc = target.resolve("javadoc");
   private final Path targetJars = target.resolve("jars");
+  private final Path targetMainJar = targetJars.resolve("bach-" + Bach.VERSION + ".jar");
 
   //  private void clean() throws Exception {
   //    System.out.println("\n[clean]");
   //
-  //    Bach.Util.treeDelete(targetBinMain);
   //    Bach.Util.treeDelete(targetBinTest);
   //    Bach.Util.treeDelete(targetJavadoc);
   //    Bach.Util.treeDelete(targetJars);
@@ -56,122 +63,150 @@ class Build {
 
   private void format() {
     System.out.println("\n[format]");
-
-    var roots =
-        List.of(
-            Path.of("demo"),
-            Path.of("src", "bach"),
-            Path.of("src", "build"),
-            Path.of("src", "test"));
-    bach.new Formatter().format(roots, Boolean.getBoolean("bach.format.replace"));
+    var span = Bach.Trace.begin("build", "format");
+    try {
+      var roots =
+          List.of(
+              Path.of("demo"),
+              Path.of("src", "bach"),
+              Path.of("src", "build"),
+              Path.of("src", "test"));
+      bach.new Formatter().format(roots, Boolean.getBoolean("bach.format.replace"));
+    } finally {
+      span.end();
+    }
   }
 
   private void compile() {
     System.out.println("\n[compile]");
-    bach.run(0, "javac", "-d", targetBinMain, "src/bach/Bach.java");
-    treeWalk(targetBinMain);
+    var span = Bach.Trace.begin("build", "compile");
+    try {
+      var err = new PrintWriter(System.err, true);
+      var sources = List.of(Path.of("src", "bach", "Bach.java"));
+      var code = Bach.Javac.SHARED.jar(err, targetMainJar, "Bach", null, List.of(), sources);
+      if (code != 0) {
+        throw new Error("Compiling into " + targetMainJar + " failed: " + code);
+      }
+      System.out.println(targetMainJar);
+    } finally {
+      span.end();
+    }
   }
 
   private void test() {
-    System.out.println("\n[test // download]");
-    var junit =
-        bach.new Downloader(Bach.USER_HOME.resolve(".bach/tool/junit"))
-            .download("org.junit.platform", "junit-platform-console-standalone", "1.5.0");
-
-    System.out.println("\n[test // compile]");
-    var javac = new ArrayList<>();
-    javac.add("-d");
-    javac.add(targetBinTest);
-    javac.add("--class-path");
-    javac.add(String.join(File.pathSeparator, targetBinMain.toString(), junit.toString()));
-    javac.addAll(Bach.Util.find(List.of(Path.of("src", "test")), Bach.Util::isJavaFile));
-    bach.run(0, "javac", javac.toArray(Object[]::new));
-    // Bach.Util.treeCopy(Path.of("src/test-resources"), targetBinTest);
-    treeWalk(targetBinTest);
-
-    System.out.println("\n[test // run]");
-    var launcher = new ArrayList<>();
-    launcher.add("-ea");
-    launcher.add("-Djunit.jupiter.execution.parallel.enabled=true");
-    launcher.add("-Djunit.jupiter.execution.parallel.mode.default=concurrent");
-    launcher.add("--class-path");
-    launcher.add(
-        String.join(
-            File.pathSeparator,
-            targetBinTest.toString(),
-            targetBinMain.toString(),
-            junit.toString()));
-    launcher.add("org.junit.platform.console.ConsoleLauncher");
-    launcher.add("--scan-class-path");
-    launcher.add("--fail-if-no-tests");
-    bach.run(0, "java", launcher.toArray(Object[]::new));
+    var span = Bach.Trace.begin("build", "test");
+    try {
+      var uri = bach.configuration.uris.toolJUnit.toString();
+      var junit = bach.prefetch().await(uri, bach.configuration.paths.user.resolve("tool/junit"));
+      System.out.println("\n[test // compile]");
+      var javac = new ArrayList<>();
+      javac.add("-d");
+      javac.add(targetBinTest);
+      javac.add("--class-path");
+      javac.add(String.join(File.pathSeparator, targetMainJar.toString(), junit.toString()));
+      var sources = List.of(Path.of("src", "test"));
+      javac.add(
+          "@"
+              + Bach.Util.createArgumentFile(
+                  arguments -> Bach.Util.find(sources, Bach.Util::isJavaFile, arguments::accept)));
+      bach.run(0, "javac", javac.toArray(Object[]::new));
+      // Bach.Util.treeCopy(Path.of("src/test-resources"), targetBinTest);
+      treeWalk(targetBinTest);
+
+      System.out.println("\n[test // run]");
+      var launcher = new ArrayList<>();
+      launcher.add("-ea");
+      launcher.add("-Djunit.jupiter.execution.parallel.enabled=true");
+      launcher.add("-Djunit.jupiter.execution.parallel.mode.default=concurrent");
+      launcher.add("--class-path");
+      launcher.add(
+          String.join(
+              File.pathSeparator,
+              targetBinTest.toString(),
+              targetMainJar.toString(),
+              junit.toString()));
+      launcher.add("org.junit.platform.console.ConsoleLauncher");
+      launcher.add("--scan-class-path");
+      launcher.add("--fail-if-no-tests");
+      bach.run(0, "java", launcher.toArray(Object[]::new));
+    } finally {
+      span.end();
+    }
   }
 
-  private void document() throws Exception {
+  private CompletableFuture<Void> document() throws Exception {
     System.out.println("\n[document]");
-    Files.createDirectories(targetJavadoc);
-    bach.run(
-        0,
-        "javadoc",
-        "-d",
-        targetJavadoc,
-        "-package",
-        // "-quiet",
-        "-keywords",
-        "-html5",
-        "-linksource",
-        "-Xdoclint:all,-missing",
-        "-link",
-        "https://docs.oracle.com/en/java/javase/11/docs/api/",
-        "src/bach/Bach.java");
+    var span = Bach.Trace.begin("build", "document");
+    try {
+      Files.createDirectories(targetJavadoc);
+      var future =
+          bach.runAsync(
+              0,
+              "javadoc",
+              "-d",
+              targetJavadoc,
+              "-package",
+              // "-quiet",
+              "-keywords",
+              "-html5",
+              "-linksource",
+              "-Xdoclint:all,-missing",
+              "-link",
+              "https://docs.oracle.com/en/java/javase/11/docs/api/",
+              "src/bach/Bach.java");
+      return future.whenComplete((result, throwable) -> span.end());
+    } catch (Exception | Error e) {
+      span.end();
+      throw e;
+    }
   }
 
-  private void jar() throws Exception {
+  private void jar(CompletableFuture<Void> document) throws Exception {
     System.out.println("\n[jar]");
-    Files.createDirectories(targetJars);
-    bach.run(
-        0,
-        "jar",
-        "--create",
-        "--file",
-        targetJars.resolve("bach-" + Bach.VERSION + ".jar"),
-        "--main-class",
-        "Bach",
-        "-C",
-        targetBinMain,
-        ".");
-    bach.run(
-        0,
-        "jar",
-        "--create",
-        "--file",
-        targetJars.resolve("bach-" + Bach.VERSION + "-sources.jar"),
-        "-C",
-        "src/bach",
-        ".");
-    bach.run(
-        0,
-        "jar",
-        "--create",
-        "--file",
-        targetJars.resolve("bach-" + Bach.VERSION + "-javadoc.jar"),
-        "-C",
-        targetJavadoc,
-        ".");
-
-    System.out.println("\nArtifacts in " + targetJars.toUri());
-    treeWalk(targetJars);
+    var span = Bach.Trace.begin("build", "jar");
+    try {
+      Files.createDirectories(targetJars);
+      var sources =
+          bach.runAsync(
+              0,
+              "jar",
+              "--create",
+              "--file",
+              targetJars.resolve("bach-" + Bach.VERSION + "-sources.jar"),
+              "-C",
+              "src/bach",
+              ".");
+      document.join();
+      bach.run(
+          0,
+          "jar",
+          "--create",
+          "--file",
+          targetJars.resolve("bach-" + Bach.VERSION + "-javadoc.jar"),
+          "-C",
+          targetJavadoc,
+          ".");
+      sources.join();
+
+      System.out.println("\nArtifacts in " + targetJars.toUri());
+      treeWalk(targetJars);
+    } finally {
+      span.end();
+    }
   }
 
   private void validate() {
-    var jar = targetJars.resolve("bach-" + Bach.VERSION + ".jar");
-
-    System.out.println("\n[validate // jdeps]");
-    bach.run(0, "jdeps", "-summary", "-recursive", jar);
-
-    System.out.println("\n[validate // java -jar bach.jar ...]");
-    bach.run(0, "java", "-jar", jar, "version");
-    bach.run(0, "java", "-jar", jar, "tool", "javac", "--version");
+    var span = Bach.Trace.begin("build", "validate");
+    try {
+      System.out.println("\n[validate // jdeps]");
+      bach.run(0, "jdeps", "-summary", "-recursive", targetMainJar);
+
+      System.out.println("\n[validate // java -jar bach.jar ...]");
+      bach.run(0, "java", "-jar", targetMainJar, "version");
+      bach.run(0, "java", "-jar", targetMainJar, "tool", "javac", "--version");
+    } finally {
+      span.end();
+    }
   }
 
   /** Walk directory tree structure. */
@@ -0,0 +1,350 @@
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertLinesMatch;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.lang.module.ModuleFinder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.regex.Pattern;
+import java.util.spi.ToolProvider;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class CompilerTests {
+
+  @Test
+  void moduleGraphSortsModulesIntoWaves() {
+    var graph =
+        new Bach.ModuleGraph(
+            List.of(
+                Bach.ModuleInfo.parse("module c { requires b; requires java.sql; }"),
+                Bach.ModuleInfo.parse("module b { requires transitive a; }"),
+                Bach.ModuleInfo.parse("module a { requires x; }"),
+                Bach.ModuleInfo.parse("module d {}")));
+    assertEquals(List.of(List.of("a", "d"), List.of("b"), List.of("c")), graph.waves());
+    assertEquals(Set.of("b"), graph.requires("c"));
+    assertEquals(Set.of("a", "b"), graph.upstream("c"));
+    assertEquals(Set.of(), graph.upstream("a"));
+
+    var cycle =
+        new Bach.ModuleGraph(
+            List.of(
+                Bach.ModuleInfo.parse("module a { requires b; }"),
+                Bach.ModuleInfo.parse("module b { requires a; }")));
+    assertThrows(IllegalStateException.class, cycle::waves);
+    var twice = List.of(Bach.ModuleInfo.parse("module a {}"), Bach.ModuleInfo.parse("module a {}"));
+    assertThrows(IllegalArgumentException.class, () -> new Bach.ModuleGraph(twice));
+  }
+
+  @Test
+  void modulesAreCompiledInTopologicalOrder(@TempDir Path temp) throws Exception {
+    declare(
+        temp, "a/main/java", "module a { exports a; }", "a/A.java", "package a; public class A {}");
+    declare(
+        temp,
+        "b/main/java",
+        "module b { requires transitive a; exports b; }",
+        "b/B.java",
+        "package b; public class B { public a.A a() { return null; } }");
+    declare(temp, "c", "module c { requires b; }", "c/C.java", "package c; class C { a.A a; }");
+    Files.createDirectories(temp.resolve("src/none"));
+    var probe = new Probe(temp, temp);
+    var compiler = probe.bach.new Compiler();
+
+    assertEquals(0, compiler.compile(probe.bach.configuration.options.modules), probe.toString());
+    for (var module : List.of("a", "b", "c")) {
+      var classes = compiler.classes.resolve(module);
+      assertTrue(Files.isRegularFile(classes.resolve("module-info.class")), module);
+      var name = module + "/" + module.toUpperCase() + ".class";
+      assertTrue(Files.isRegularFile(classes.resolve(name)), name);
+    }
+    var modules =
+        probe.lines().stream()
+            .filter(line -> line.startsWith(">> javac("))
+            .map(line -> line.substring(line.indexOf("classes") + 8).substring(0, 1))
+            .collect(Collectors.toList());
+    assertEquals(List.of("a", "b", "c"), modules);
+  }
+
+  @Test
+  void dependentModulesAreSkippedAfterFailure(@TempDir Path temp) throws Exception {
+    declare(temp, "a", "module a { exports a; }", "a/A.java", "package a; public class A {");
+    declare(temp, "b", "module b { requires a; }", "b/B.java", "package b; class B {}");
+    var probe = new Probe(temp, temp);
+    var compiler = probe.bach.new Compiler();
+
+    assertEquals(1, compiler.compile(List.of("a", "b")));
+    assertFalse(Files.exists(compiler.classes.resolve("b")));
+  }
+
+  @Test
+  void outputOfAllModulesOfAWaveIsEmittedWhenOneThrows(@TempDir Path temp) throws Exception {
+    declare(temp, "a", "module a {}", "a/A.java", "package a; class A {}");
+    declare(temp, "b", "module b {}", "b/B.java", "package b; class B {}");
+    Files.writeString(temp.resolve("bach.properties"), "options.parallelism=2");
+    assertEquals(0, new Probe(temp, temp).bach.new Compiler().compile(List.of("a", "b")));
+
+    Files.writeString(temp.resolve("src/a/a/A.java"), "package a; class A { int i; }");
+    var database = temp.resolve(".bach/compile/a.properties");
+    Files.delete(database);
+    Files.createDirectories(database.resolve("blocked")); // storing the database fails
+    var probe = new Probe(temp, temp);
+    var compiler = probe.bach.new Compiler();
+
+    assertThrows(RuntimeException.class, () -> compiler.compile(List.of("a", "b")));
+    assertTrue(probe.lines().contains("Module b is up to date"), probe.toString());
+    var state = Bach.Util.loadProperties(temp.resolve(".bach/compile.properties"));
+    assertTrue(state.containsKey("b.abi"), state.toString());
+    assertFalse(state.containsKey("a.abi"), state.toString());
+  }
+
+  @Test
+  void requiredLibrariesAreAwaitedBeforeCompiling(@TempDir Path temp) throws Exception {
+    declare(temp, "a", "module a { requires x; }", "a/A.java", "package a; class A {}");
+    Files.writeString(temp.resolve("bach.properties"), "module.x=x");
+    var probe = new Probe(temp, temp);
+    var compiler = probe.bach.new Compiler();
+
+    assertEquals(1, compiler.compile(List.of("a")));
+    var expected = "Downloading required modules failed: java.lang.IllegalArgumentException: .+";
+    assertLinesMatch(List.of(expected), probe.errors());
+    assertTrue(probe.lines().stream().noneMatch(line -> line.startsWith(">> javac(")));
+  }
+
+  @Test
+  void modulesAreOnlyRecompiledIfTheirSourcesOrRequiredAbisChange(@TempDir Path temp)
+      throws Exception {
+    var a = "package a; public class A { public int m() { return 1; } }";
+    declare(temp, "a", "module a { exports a; }", "a/A.java", a);
+    declare(temp, "b", "module b { requires a; }", "b/B.java", "package b; class B { a.A a; }");
+    Files.createDirectories(temp.resolve("src/a/a/internal"));
+    Files.writeString(temp.resolve("src/a/a/internal/I.java"), "package a.internal; class I {}");
+
+    assertEquals(List.of("a", "b"), compile(temp));
+    assertEquals(List.of(), compile(temp));
+    var fingerprint = Bach.ClassFile.fingerprint(temp.resolve("target/bach/classes/a"));
+
+    a = "package a; public class A { private int i; public int m() { return i + 2; } }";
+    Files.writeString(temp.resolve("src/a/a/A.java"), a);
+    Files.writeString(temp.resolve("src/a/a/internal/I.java"), "package a.internal; class J {}");
+    assertEquals(List.of("a"), compile(temp));
+    assertEquals(fingerprint, Bach.ClassFile.fingerprint(temp.resolve("target/bach/classes/a")));
+
+    a = "package a; public class A { public static final int X = 1; }";
+    Files.writeString(temp.resolve("src/a/a/A.java"), a);
+    assertEquals(List.of("a", "b"), compile(temp));
+    a = a.replace('1', '2');
+    Files.writeString(temp.resolve("src/a/a/A.java"), a);
+    assertEquals(List.of("a", "b"), compile(temp));
+    a = a.replace("public class", "@Deprecated public class");
+    Files.writeString(temp.resolve("src/a/a/A.java"), a);
+    assertEquals(List.of("a", "b"), compile(temp));
+  }
+
+  @Test
+  void abiCoversPermittedSubclassesRecordComponentsAndTypeAnnotations(@TempDir Path temp)
+      throws Exception {
+    var x =
+        String.join(
+            "\n",
+            "import java.lang.annotation.*;",
+            "public class X {",
+            "  @Target(ElementType.TYPE_USE) @interface T {}",
+            "  @Target(ElementType.RECORD_COMPONENT) @interface C {}",
+            "  public sealed interface S permits A, B {}",
+            "  public static final class A implements S {}",
+            "  public static final class B implements S {}",
+            "  public record R(int x) {}",
+            "  public static class F { public java.util.List<String> list; }",
+            "}");
+    var permits = x.replace("A, B", "A").replace("B implements S", "B");
+    assertFalse(abi(temp, x, "X$S").equals(abi(temp, permits, "X$S")), "permitted subclasses");
+    var record = x.replace("(int x)", "(@C int x)");
+    assertFalse(abi(temp, x, "X$R").equals(abi(temp, record, "X$R")), "record component");
+    var type = x.replace("<String>", "<@T String>");
+    assertFalse(abi(temp, x, "X$F").equals(abi(temp, type, "X$F")), "type annotation");
+  }
+
+  private static List<String> abi(Path temp, String source, String name) throws Exception {
+    var directory = Files.createTempDirectory(temp, "abi");
+    var file = Files.writeString(directory.resolve("X.java"), source);
+    var javac = ToolProvider.findFirst("javac").orElseThrow();
+    assertEquals(0, javac.run(System.out, System.err, "-d", directory.toString(), file.toString()));
+    return Bach.ClassFile.read(directory.resolve(name + ".class")).abi;
+  }
+
+  @Test
+  void onlyChangedSourcesAndTheirDependentsAreRecompiled(@TempDir Path temp) throws Exception {
+    var a = "package p; public class A { public int x() { return 1; } }";
+    declare(temp, "m", "module m {}", "p/A.java", a);
+    Files.writeString(
+        temp.resolve("src/m/p/B.java"), "package p; class B { Object y = new A().x(); }");
+    Files.writeString(temp.resolve("src/m/p/C.java"), "package p; class C {}");
+    Files.writeString(temp.resolve("src/m/p/D.java"), "package p; class D { B b; }");
+    var classes = temp.resolve("target/bach/classes/m/p");
+
+    assertEquals(Set.of("module-info", "A", "B", "C", "D"), recompile(temp));
+    assertEquals(Set.of(), recompile(temp));
+
+    Files.writeString(temp.resolve("src/m/p/A.java"), a.replace('1', '2'));
+    assertEquals(Set.of("module-info", "A"), recompile(temp));
+
+    Files.writeString(temp.resolve("src/m/p/A.java"), a.replace("int", "long"));
+    assertEquals(Set.of("module-info", "A", "B"), recompile(temp));
+
+    Files.delete(temp.resolve("src/m/p/C.java"));
+    assertEquals(Set.of(), recompile(temp));
+    assertFalse(Files.exists(classes.resolve("C.class")));
+    assertTrue(Files.exists(classes.resolve("D.class")));
+
+    a = "package p; public class A { public static final int X = 1; }";
+    Files.writeString(temp.resolve("src/m/p/A.java"), a);
+    Files.writeString(temp.resolve("src/m/p/B.java"), "package p; class B { int y = A.X; }");
+    assertEquals(Set.of("module-info", "A", "B", "D"), recompile(temp));
+    Files.writeString(temp.resolve("src/m/p/A.java"), a.replace('1', '2'));
+    assertEquals(Set.of("module-info", "A", "B", "D"), recompile(temp), "constant inlined in B");
+  }
+
+  @Test
+  void javacReusesFileManagersUntilPathsChange(@TempDir Path temp) throws Exception {
+    declare(temp, "a", "module a { exports a; }", "a/A.java", "package a; public class A {}");
+    declare(temp, "b", "module b { requires a; }", "b/B.java", "package b; class B { a.A a; }");
+    var javac = new Bach.Javac();
+    var src = temp.resolve("src");
+    var classes = temp.resolve("classes");
+    var err = new StringWriter();
+    var writer = new PrintWriter(err);
+
+    var a = List.of("-d", classes.resolve("a").toString(), src.resolve("a/module-info.java") + "");
+    assertEquals(0, javac.run(writer, writer, append(a, src.resolve("a/a/A.java"))), err + "");
+    var b = List.of("--module-path", classes.toString(), "-d", classes.resolve("b").toString());
+    var sources = append(b, src.resolve("b/module-info.java"), src.resolve("b/b/B.java"));
+    assertEquals(0, javac.run(writer, writer, sources), err + "");
+    assertEquals(0, javac.run(writer, writer, sources), err + "");
+    assertEquals(2, javac.managers.get(), "one for each set of locations");
+
+    var file = Bach.Util.createArgumentFile(List.of("-d", classes.resolve("a") + "")::forEach);
+    Files.writeString(classes.resolve("a/x.jar"), "x");
+    assertEquals(
+        0, javac.run(writer, writer, append(List.of("@" + file), src.resolve("a/a/A.java"))));
+    assertEquals(3, javac.managers.get(), "directory a was seen without JAR file x");
+    assertEquals(0, javac.run(writer, writer, "--version"), err + "");
+    assertEquals(3, javac.managers.get(), "delegated to the system's javac");
+  }
+
+  @Test
+  void javacCompilesStraightIntoModularJar(@TempDir Path temp) throws Exception {
+    declare(temp, "m", "module m { exports p; }", "p/Main.java", "package p; class Main {}");
+    var q = Files.createDirectories(temp.resolve("src/m/p/q")).resolve("Q.java");
+    Files.writeString(q, "package p.q; class Q { class R {} }");
+    var sources = new ArrayList<Path>();
+    for (var name : List.of("p/q/Q.java", "module-info.java", "p/Main.java")) {
+      sources.add(temp.resolve("src/m").resolve(name));
+    }
+    var jar = temp.resolve("jars/m.jar");
+    var err = new StringWriter();
+    var javac = new Bach.Javac();
+
+    var options = List.of("-encoding", "UTF-8");
+    assertEquals(
+        0, javac.jar(new PrintWriter(err), jar, "p.Main", "1.2", options, sources), err + "");
+    assertFalse(Files.exists(temp.resolve("src/m/p/Main.class")));
+    try (var file = new JarFile(jar.toFile())) {
+      var names = file.stream().map(JarEntry::getName).collect(Collectors.toList());
+      var expected =
+          List.of(
+              "META-INF/",
+              "META-INF/MANIFEST.MF",
+              "module-info.class",
+              "p/",
+              "p/Main.class",
+              "p/q/",
+              "p/q/Q$R.class",
+              "p/q/Q.class");
+      assertEquals(expected, names);
+      assertEquals("p.Main", file.getManifest().getMainAttributes().getValue("Main-Class"));
+    }
+    var descriptor = ModuleFinder.of(jar).find("m").orElseThrow().descriptor();
+    assertEquals("p.Main", descriptor.mainClass().orElseThrow());
+    assertEquals("1.2", descriptor.rawVersion().orElseThrow());
+    assertEquals(Set.of("p", "p.q"), descriptor.packages());
+    var bytes = Files.readAllBytes(jar);
+    assertEquals(0, javac.jar(new PrintWriter(err), jar, "p.Main", "1.2", options, sources));
+    assertArrayEquals(bytes, Files.readAllBytes(jar), "reproducible");
+
+    options = List.of("-d", temp.toString());
+    assertEquals(2, javac.jar(new PrintWriter(err), jar, null, null, options, sources));
+  }
+
+  private static String[] append(List<String> options, Path... sources) {
+    var arguments = new ArrayList<>(options);
+    for (var source : sources) {
+      arguments.add(source.toString());
+    }
+    return arguments.toArray(String[]::new);
+  }
+
+  @Test
+  void subtypesOfChangedClassesAreRecompiled(@TempDir Path temp) throws Exception {
+    var b = "package p; public class B { public int x() { return 1; } }";
+    declare(temp, "m", "module m {}", "p/B.java", b);
+    Files.writeString(temp.resolve("src/m/p/D.java"), "package p; public class D extends B {}");
+    Files.writeString(temp.resolve("src/m/p/C.java"), "package p; public class C extends D {}");
+    Files.writeString(
+        temp.resolve("src/m/p/E.java"), "package p; class E { long y = new C().x(); }");
+    Files.writeString(temp.resolve("src/m/p/F.java"), "package p; class F {}");
+
+    assertEquals(Set.of("module-info", "B", "C", "D", "E", "F"), recompile(temp));
+    Files.writeString(temp.resolve("src/m/p/B.java"), b.replace("int", "long"));
+    assertEquals(Set.of("module-info", "B", "C", "D", "E"), recompile(temp));
+  }
+
+  /** Compile module m and return the names of all source files passed to javac. */
+  private static Set<String> recompile(Path temp) {
+    var probe = new Probe(temp, temp);
+    var compiler = probe.bach.new Compiler();
+    assertEquals(0, compiler.compile(List.of("m")), probe.toString());
+    var names = new TreeSet<String>();
+    for (var line : probe.lines()) {
+      if (line.startsWith(">> javac(")) {
+        var matcher = Pattern.compile("([\\w-]+)\\.java\"").matcher(line);
+        while (matcher.find()) {
+          names.add(matcher.group(1));
+        }
+      }
+    }
+    return names;
+  }
+
+  /** Compile all modules and return the names of those passed to javac. */
+  private static List<String> compile(Path temp) {
+    var probe = new Probe(temp, temp);
+    var compiler = probe.bach.new Compiler();
+    assertEquals(0, compiler.compile(List.of("a", "b")), probe.toString());
+    return probe.lines().stream()
+        .filter(line -> line.startsWith(">> javac("))
+        .map(line -> line.substring(line.indexOf("classes") + 8).substring(0, 1))
+        .distinct()
+        .collect(Collectors.toList());
+  }
+
+  private static void declare(Path temp, String source, String info, String file, String code)
+      throws Exception {
+    var directory = Files.createDirectories(temp.resolve("src").resolve(source));
+    Files.writeString(directory.resolve("module-info.java"), info);
+    Files.createDirectories(directory.resolve(file).getParent());
+    Files.writeString(directory.resolve(file), code);
+  }
+}
@@ -0,0 +1,114 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.OptionalInt;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class DaemonTests {
+
+  @Test
+  void idleDaemonShutsDown(@TempDir Path work) {
+    var daemon = new Probe(Path.of(""), work).bach.new Daemon(Duration.ofMillis(100));
+    assertEquals(0, daemon.serve());
+    assertFalse(Files.exists(daemon.file));
+  }
+
+  @Test
+  void clientWithoutDaemonIsNotServed(@TempDir Path work) {
+    var file = work.resolve("daemon.properties");
+    var out = new ByteArrayOutputStream();
+    var code = Bach.Client.connect(file, Bach.VERSION, List.of("version"), out, out);
+    assertEquals(OptionalInt.empty(), code);
+  }
+
+  @Test
+  void strayConnectionsDoNotStopDaemon(@TempDir Path work) throws Exception {
+    var daemon = new Probe(Path.of(""), work).bach.new Daemon(Duration.ofSeconds(9));
+    var server = CompletableFuture.supplyAsync(daemon::serve);
+    while (!Files.exists(daemon.file)) {
+      Thread.sleep(10);
+    }
+    var port = Integer.parseInt(Bach.Util.loadProperties(daemon.file).getProperty("port"));
+    new Socket(InetAddress.getLoopbackAddress(), port).close();
+
+    var out = new ByteArrayOutputStream();
+    var code = Bach.Client.connect(daemon.file, Bach.VERSION, List.of("version"), out, out);
+    assertEquals(OptionalInt.of(0), code, out.toString());
+    code = Bach.Client.connect(daemon.file, "0-old", List.of("version"), out, out);
+    assertEquals(OptionalInt.empty(), code);
+    assertEquals(0, server.get(9, TimeUnit.SECONDS));
+  }
+
+  @Test
+  void daemonIsEvictedWhenModulesChange(@TempDir Path temp) throws Exception {
+    Files.createDirectories(temp.resolve("src/a"));
+    var daemon = new Probe(temp, temp).bach.new Daemon(Duration.ofSeconds(9));
+    var server = CompletableFuture.supplyAsync(daemon::serve);
+    while (!Files.exists(daemon.file)) {
+      Thread.sleep(10);
+    }
+
+    var out = new ByteArrayOutputStream();
+    var code = Bach.Client.connect(daemon.file, Bach.VERSION, List.of("version"), out, out);
+    assertEquals(OptionalInt.of(0), code, out.toString());
+    Files.createDirectories(temp.resolve("src/b"));
+    code = Bach.Client.connect(daemon.file, Bach.VERSION, List.of("version"), out, out);
+    assertEquals(OptionalInt.empty(), code);
+    assertEquals(0, server.get(9, TimeUnit.SECONDS));
+  }
+
+  @Test
+  void daemonIsEvictedWhenLibrariesChange(@TempDir Path temp) throws Exception {
+    Files.createDirectories(temp.resolve("src"));
+    var lib = Files.createDirectories(temp.resolve("lib"));
+    var daemon = new Probe(temp, temp).bach.new Daemon(Duration.ofSeconds(9));
+    var server = CompletableFuture.supplyAsync(daemon::serve);
+    while (!Files.exists(daemon.file)) {
+      Thread.sleep(10);
+    }
+
+    var out = new ByteArrayOutputStream();
+    var code = Bach.Client.connect(daemon.file, Bach.VERSION, List.of("version"), out, out);
+    assertEquals(OptionalInt.of(0), code, out.toString());
+    code = Bach.Client.connect(daemon.file, Bach.VERSION, List.of("version"), out, out);
+    assertEquals(OptionalInt.of(0), code, out.toString());
+    Files.writeString(lib.resolve("a.jar"), "a");
+    code = Bach.Client.connect(daemon.file, Bach.VERSION, List.of("version"), out, out);
+    assertEquals(OptionalInt.empty(), code);
+    assertEquals(0, server.get(9, TimeUnit.SECONDS));
+  }
+
+  @Test
+  void clientRunsTasksInDaemonUntilVersionChanges(@TempDir Path work) throws Exception {
+    var daemon = new Probe(Path.of(""), work).bach.new Daemon(Duration.ofSeconds(9));
+    var server = CompletableFuture.supplyAsync(daemon::serve);
+    while (!Files.exists(daemon.file)) {
+      Thread.sleep(10);
+    }
+
+    var out = new ByteArrayOutputStream();
+    var err = new ByteArrayOutputStream();
+    var code = Bach.Client.connect(daemon.file, Bach.VERSION, List.of("version"), out, err);
+    assertEquals(OptionalInt.of(0), code);
+    assertTrue(out.toString().lines().anyMatch(Bach.VERSION::equals), out.toString());
+
+    code = Bach.Client.connect(daemon.file, Bach.VERSION, List.of("fail"), out, err);
+    assertEquals(OptionalInt.of(1), code);
+
+    code = Bach.Client.connect(daemon.file, "0-old", List.of("version"), out, err);
+    assertEquals(OptionalInt.empty(), code);
+    assertEquals(0, server.get(9, TimeUnit.SECONDS));
+    assertFalse(Files.exists(daemon.file));
+  }
+}
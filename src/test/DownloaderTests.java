@@ -0,0 +1,517 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.FileNotFoundException;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class DownloaderTests {
+
+  private final AtomicInteger requests = new AtomicInteger();
+  private final AtomicInteger inFlight = new AtomicInteger();
+  private final AtomicInteger maxInFlight = new AtomicInteger();
+  private final AtomicInteger bodies = new AtomicInteger();
+  private final AtomicInteger drops = new AtomicInteger();
+  private final List<String> ranges = new CopyOnWriteArrayList<>();
+  private final List<String> probes = new CopyOnWriteArrayList<>();
+  private HttpServer server;
+
+  @BeforeEach
+  void startServer() throws Exception {
+    server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+    server.createContext(
+        "/",
+        exchange -> {
+          try {
+            handle(exchange);
+          } catch (Exception e) {
+            throw new java.io.IOException(e);
+          }
+        });
+    server.setExecutor(Executors.newCachedThreadPool());
+    server.start();
+  }
+
+  @AfterEach
+  void stopServer() {
+    server.stop(0);
+  }
+
+  private void handle(HttpExchange exchange) throws Exception {
+    var path = exchange.getRequestURI().getPath().substring(1);
+    if (path.endsWith(".sha1")) {
+      var name = path.substring(0, path.length() - 5);
+      var checksum = name.startsWith("corrupt") ? "0".repeat(40) : sha1(content(name));
+      var bytes = (checksum + "  " + name + "\n").getBytes(StandardCharsets.UTF_8);
+      exchange.sendResponseHeaders(200, bytes.length);
+      try (var body = exchange.getResponseBody()) {
+        body.write(bytes);
+      }
+      return;
+    }
+    if (path.endsWith(".sha256")) {
+      exchange.sendResponseHeaders(404, -1);
+      exchange.close();
+      return;
+    }
+    if (exchange.getRequestMethod().equals("HEAD")) {
+      probes.add(path);
+      if (path.startsWith("slow")) {
+        Thread.sleep(1000);
+      }
+      exchange.sendResponseHeaders(path.startsWith("missing") ? 404 : 200, -1);
+      exchange.close();
+      return;
+    }
+    requests.incrementAndGet();
+    var current = inFlight.incrementAndGet();
+    maxInFlight.accumulateAndGet(current, Math::max);
+    try {
+      Thread.sleep(20);
+      var name = exchange.getRequestURI().getPath().substring(1);
+      if (name.startsWith("missing")) {
+        exchange.sendResponseHeaders(404, -1);
+        return;
+      }
+      if (name.startsWith("broken")) {
+        exchange.sendResponseHeaders(500, -1);
+        return;
+      }
+      var etag = '"' + name + '"';
+      exchange.getResponseHeaders().add("ETag", etag);
+      exchange.getResponseHeaders().add("Last-Modified", "Tue, 15 Oct 2019 12:00:00 GMT");
+      var headers = exchange.getRequestHeaders();
+      if (etag.equals(headers.getFirst("If-None-Match"))) {
+        exchange.sendResponseHeaders(304, -1);
+        return;
+      }
+      var bytes = content(name);
+      var offset = 0;
+      var range = headers.getFirst("Range");
+      if (range != null && etag.equals(headers.getFirst("If-Range"))) {
+        ranges.add(range);
+        offset = Integer.parseInt(range.substring(6, range.length() - 1));
+        var contentRange = "bytes " + offset + "-" + (bytes.length - 1) + "/" + bytes.length;
+        exchange.getResponseHeaders().add("Content-Range", contentRange);
+        exchange.sendResponseHeaders(206, bytes.length - offset);
+      } else {
+        exchange.sendResponseHeaders(200, bytes.length);
+      }
+      var body = exchange.getResponseBody();
+      if (name.startsWith("flaky") && drops.getAndIncrement() < 2) {
+        var half = (bytes.length - offset) / 2;
+        body.write(bytes, offset, half);
+        body.flush();
+        throw new IllegalStateException("Dropping connection after " + half + " bytes");
+      }
+      body.write(bytes, offset, bytes.length - offset);
+      body.close();
+      bodies.incrementAndGet();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } finally {
+      inFlight.decrementAndGet();
+    }
+    exchange.close();
+  }
+
+  private static byte[] content(String name) {
+    if (name.startsWith("flaky")) {
+      return (name + "\n").repeat(10_000).getBytes(StandardCharsets.UTF_8);
+    }
+    return name.getBytes(StandardCharsets.UTF_8);
+  }
+
+  private static Probe probe(Path temp, String properties) throws Exception {
+    Files.createDirectories(temp.resolve("src"));
+    Files.writeString(temp.resolve("bach.properties"), properties);
+    return new Probe(temp, temp);
+  }
+
+  private URI uri(String name) {
+    return URI.create("http://127.0.0.1:" + server.getAddress().getPort() + "/" + name);
+  }
+
+  @Test
+  void downloadersShareTheConcurrencyLimit(@TempDir Path temp) throws Exception {
+    var bach = probe(temp, "download.concurrency=1\n").bach;
+    var store = bach.new Store(temp.resolve("store"));
+    var futures = new ArrayList<CompletableFuture<Path>>();
+    for (int i = 0; i < 4; i++) {
+      var downloader = bach.new Downloader(temp.resolve("lib" + i), store);
+      futures.add(downloader.downloadAsync(uri("shared" + i + ".txt"), false));
+    }
+    CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).join();
+
+    assertEquals(4, requests.get());
+    assertEquals(1, maxInFlight.get(), "max in flight");
+  }
+
+  @Test
+  void downloadBatchConcurrentlyWithinLimit(@TempDir Path temp) throws Exception {
+    var bach = probe(temp, "download.concurrency=2\n").bach;
+    var downloader =
+        bach.new Downloader(temp.resolve("lib"), bach.new Store(temp.resolve("store")));
+    var uris = new ArrayList<URI>();
+    for (int i = 0; i < 6; i++) {
+      uris.add(uri("file" + i + ".txt"));
+    }
+    var futures = downloader.downloadAll(uris, false);
+    CompletableFuture.allOf(futures.values().toArray(CompletableFuture[]::new)).join();
+
+    assertEquals(6, futures.size());
+    for (var uri : uris) {
+      var file = futures.get(uri).join();
+      assertEquals(file.getFileName().toString(), Files.readString(file));
+    }
+    assertTrue(maxInFlight.get() <= 2, "max in flight: " + maxInFlight.get());
+    assertEquals(6, bodies.get());
+  }
+
+  @Test
+  void conditionalRequestSkipsUnmodifiedFileAndMissingFileFails(@TempDir Path temp)
+      throws Exception {
+    var probe = probe(temp, "download.ttl=PT0S\n");
+    var store = probe.bach.new Store(temp.resolve("store"));
+    var downloader = probe.bach.new Downloader(temp.resolve("lib"), store);
+    var file = downloader.download(uri("a.txt"), false);
+    assertEquals("a.txt", Files.readString(file));
+    var validators = downloader.new Validators(uri("a.txt"));
+    assertEquals(Optional.of("\"a.txt\""), validators.etag());
+    assertEquals(file, validators.target());
+
+    assertEquals(file, downloader.download(uri("a.txt"), false));
+    assertTrue(probe.lines().contains("Not modified: a.txt, 5 bytes."), probe.toString());
+    assertEquals(2, requests.get());
+    assertEquals(1, bodies.get());
+    assertEquals(file, downloader.download(uri("a.txt"), true));
+
+    var e =
+        assertThrows(UncheckedIOException.class, () -> downloader.download(uri("missing"), false));
+    assertTrue(e.getMessage().contains("status code 404"), e.getMessage());
+    assertThrows(IllegalStateException.class, () -> downloader.download(uri("b.txt"), true));
+    var files = new TreeSet<>(List.of(temp.resolve("lib").toFile().list()));
+    assertEquals(Set.of(".a.txt.properties", "a.txt"), files);
+  }
+
+  @Test
+  void freshFileIsNotRevalidated(@TempDir Path temp) {
+    var bach = new Probe(Path.of(""), temp).bach;
+    var downloader =
+        bach.new Downloader(temp.resolve("lib"), bach.new Store(temp.resolve("store")));
+    var file = downloader.download(uri("a.txt"), false);
+    assertEquals(file, downloader.download(uri("a.txt"), false));
+    assertEquals(1, requests.get());
+  }
+
+  @Test
+  void fileWithoutValidatorsIsUsedOnlyOffline(@TempDir Path temp) throws Exception {
+    var bach = new Probe(Path.of(""), temp).bach;
+    var lib = Files.createDirectories(temp.resolve("lib"));
+    var downloader = bach.new Downloader(lib, bach.new Store(temp.resolve("store")));
+    var file = Files.writeString(lib.resolve("a.txt"), "placed by hand");
+    assertEquals(file, downloader.download(uri("a.txt"), true));
+    assertEquals("placed by hand", Files.readString(file));
+    assertEquals(0, requests.get());
+
+    assertEquals(file, downloader.download(uri("a.txt"), false));
+    assertEquals("a.txt", Files.readString(file));
+    assertEquals(1, requests.get());
+    assertEquals(file, downloader.new Validators(uri("a.txt")).target());
+  }
+
+  @Test
+  void unsupportedUriSchemeFailsTheFuture(@TempDir Path temp) {
+    var bach = new Probe(Path.of(""), temp).bach;
+    var downloader = bach.new Downloader(temp.resolve("lib"), bach.new Store(temp));
+    var future = downloader.downloadAsync(URI.create("ftp://example.com/a.txt"), false);
+    var e = assertThrows(CompletionException.class, future::join);
+    assertTrue(e.getCause() instanceof IllegalArgumentException, e.toString());
+  }
+
+  @Test
+  void storedArtifactIsLinkedWithoutNetwork(@TempDir Path temp) throws Exception {
+    var bach = new Probe(Path.of(""), temp).bach;
+    var store = bach.new Store(temp.resolve("store"));
+    var file = bach.new Downloader(temp.resolve("one"), store).download(uri("a.txt"), false);
+    var blob = store.find(uri("a.txt")).orElseThrow();
+    assertEquals(
+        Bach.Util.sha256("a.txt".getBytes(StandardCharsets.UTF_8)), blob.toFile().getName());
+
+    var other = bach.new Downloader(temp.resolve("two"), store).download(uri("a.txt"), true);
+    assertEquals(temp.resolve("two/a.txt"), other);
+    assertTrue(Files.isSameFile(blob, other), "hard link expected");
+    assertTrue(Files.isSameFile(file, other), "hard link expected");
+    assertEquals(1, requests.get());
+
+    var copy = temp.resolve("copy.txt");
+    Bach.Util.copy(blob, copy);
+    assertEquals("a.txt", Files.readString(copy));
+    assertEquals(Files.getLastModifiedTime(blob), Files.getLastModifiedTime(copy));
+  }
+
+  @Test
+  void checksumMismatchFailsAndLeavesNoFileBehind(@TempDir Path temp) {
+    var probe = new Probe(Path.of(""), temp);
+    var store = probe.bach.new Store(temp.resolve("store"));
+    var downloader = probe.bach.new Downloader(temp.resolve("lib"), store);
+    downloader.download(uri("good.txt"), false);
+    assertTrue(probe.lines().contains("Verified SHA-1 checksum " + sha1(content("good.txt"))));
+
+    var e =
+        assertThrows(
+            UncheckedIOException.class, () -> downloader.download(uri("corrupt.txt"), false));
+    assertTrue(e.getMessage().contains("SHA-1 checksum mismatch"), e.getMessage());
+    assertEquals(
+        Set.of(".good.txt.properties", "good.txt"), Set.of(temp.resolve("lib").toFile().list()));
+    assertTrue(store.find(uri("corrupt.txt")).isEmpty());
+  }
+
+  @Test
+  void downloadsFromSameHostAreCapped(@TempDir Path temp) throws Exception {
+    var bach = probe(temp, "download.concurrency=8\ndownload.host.concurrency=1\n").bach;
+    var downloader =
+        bach.new Downloader(temp.resolve("lib"), bach.new Store(temp.resolve("store")));
+    var futures = downloader.downloadAll(List.of(uri("x.txt"), uri("y.txt"), uri("z.txt")), false);
+    CompletableFuture.allOf(futures.values().toArray(CompletableFuture[]::new)).join();
+    assertEquals(1, maxInFlight.get());
+  }
+
+  @Test
+  void droppedConnectionsAreResumedWithRangeRequests(@TempDir Path temp) throws Exception {
+    var probe = probe(temp, "download.backoff=PT0.01S\n");
+    var bach = probe.bach;
+    var downloader =
+        bach.new Downloader(temp.resolve("lib"), bach.new Store(temp.resolve("store")));
+    var file = downloader.download(uri("flaky.bin"), false);
+
+    assertEquals(new String(content("flaky.bin"), StandardCharsets.UTF_8), Files.readString(file));
+    assertEquals(3, requests.get());
+    assertEquals(2, ranges.size(), ranges.toString());
+    assertTrue(ranges.stream().noneMatch("bytes=0-"::equals), ranges.toString());
+    assertTrue(probe.lines().contains("Verified SHA-1 checksum " + sha1(content("flaky.bin"))));
+    assertEquals(
+        Set.of(".flaky.bin.properties", "flaky.bin"), Set.of(file.getParent().toFile().list()));
+  }
+
+  @Test
+  void serverErrorsAreRetriedUntilAttemptsAreExhausted(@TempDir Path temp) throws Exception {
+    var bach = probe(temp, "download.retries=2\ndownload.backoff=PT0.01S\n").bach;
+    var downloader =
+        bach.new Downloader(temp.resolve("lib"), bach.new Store(temp.resolve("store")));
+    var e =
+        assertThrows(UncheckedIOException.class, () -> downloader.download(uri("broken"), false));
+    assertTrue(e.getMessage().contains("status code 500"), e.getMessage());
+    assertEquals(3, requests.get());
+  }
+
+  private static String sha1(byte[] bytes) {
+    try {
+      return Bach.Util.hex(MessageDigest.getInstance("SHA-1").digest(bytes));
+    } catch (Exception e) {
+      throw new AssertionError(e);
+    }
+  }
+
+  @Test
+  void repositoriesAreAskedInOrderAndMissesAreRemembered(@TempDir Path temp) throws Exception {
+    var local = Files.createDirectories(temp.resolve("local/org/example/b/1"));
+    Files.writeString(local.resolve("b-1.jar"), "local b");
+    var repositories = List.of(temp.resolve("local").toUri(), uri("missing"), uri("remote"));
+    var probe = probe(temp, "maven.repositories=" + join(repositories) + "\n");
+    var store = probe.bach.new Store(temp.resolve("store"));
+
+    var a = download(probe.bach, probe.bach.new Downloader(temp.resolve("lib"), store), "a");
+    assertEquals("remote/org/example/a/1/a-1.jar", Files.readString(a));
+    assertEquals(2, requests.get());
+    assertTrue(store.isMissing(URI.create(uri("missing") + "/org/example/a/1/a-1.jar")));
+
+    var downloader = probe.bach.new Downloader(temp.resolve("lib"), store);
+    assertEquals(a, download(probe.bach, downloader, "a"));
+    assertEquals("local b", Files.readString(download(probe.bach, downloader, "b")));
+    assertEquals(2, requests.get(), "neither the missing nor a present artifact is requested");
+
+    var missing = List.of(uri("missing").toString());
+    var other = probe.bach.new Downloader(temp.resolve("other"), store);
+    var future = other.downloadAsync(missing, "org.example", "a", "1", "jar", false);
+    var e = assertThrows(CompletionException.class, future::join);
+    assertTrue(e.getCause().getCause() instanceof FileNotFoundException, e.toString());
+    assertEquals(2, requests.get(), "known to be missing");
+  }
+
+  @Test
+  void racingRepositoriesDownloadsFromFastestOne(@TempDir Path temp) throws Exception {
+    var repositories = List.of(uri("slow"), uri("missing"), uri("fast"));
+    var properties = "maven.race=true\nmaven.repositories=" + join(repositories) + "\n";
+    var bach = probe(temp, properties).bach;
+    var downloader =
+        bach.new Downloader(temp.resolve("lib"), bach.new Store(temp.resolve("store")));
+
+    var file = download(bach, downloader, "a");
+    assertEquals("fast/org/example/a/1/a-1.jar", Files.readString(file));
+    assertEquals(1, requests.get());
+    assertEquals(3, probes.size(), probes.toString());
+  }
+
+  private static Path download(Bach bach, Bach.Downloader downloader, String artifact) {
+    var repositories = bach.configuration.options.repositories;
+    var future = downloader.downloadAsync(repositories, "org.example", artifact, "1", "jar", false);
+    try {
+      return future.join();
+    } catch (CompletionException e) {
+      throw (RuntimeException) e.getCause();
+    }
+  }
+
+  private static String join(List<?> repositories) {
+    return repositories.stream().map(Object::toString).collect(Collectors.joining(","));
+  }
+
+  @Test
+  void concurrentDownloadersTransferFileOnce(@TempDir Path temp) {
+    var bach = new Probe(Path.of(""), temp).bach;
+    var store = bach.new Store(temp.resolve("store"));
+    var contentions = Bach.Lock.CONTENTIONS.get();
+    var futures = new ArrayList<CompletableFuture<Path>>();
+    for (int i = 0; i < 4; i++) {
+      var downloader = bach.new Downloader(temp.resolve("lib"), store);
+      futures.add(downloader.downloadAsync(uri("a.txt"), false));
+    }
+    for (var future : futures) {
+      assertEquals(temp.resolve("lib/a.txt"), future.join());
+    }
+    assertEquals(1, requests.get());
+    assertTrue(Bach.Lock.CONTENTIONS.get() > contentions, "lock contention is counted");
+  }
+
+  @Test
+  void lockIsExclusive(@TempDir Path temp) throws Exception {
+    var file = temp.resolve(".lock");
+    var lock = Bach.Lock.acquire(file);
+    assertFalse(lock.contended);
+    var other = CompletableFuture.supplyAsync(() -> Bach.Lock.acquire(file));
+    Thread.sleep(100);
+    assertFalse(other.isDone());
+    lock.release();
+    var next = other.get(9, TimeUnit.SECONDS);
+    assertTrue(next.contended);
+    assertTrue(next.waited.toMillis() > 0, next.waited.toString());
+    next.release();
+  }
+
+  @Test
+  void leastRecentlyUsedFilesAreEvictedUnlessPinnedOrLocked(@TempDir Path temp) throws Exception {
+    var cache = temp.resolve("cache");
+    var bach = new Probe(Path.of(""), temp).bach;
+    var store = bach.new Store(cache.resolve("store"));
+    var downloader = bach.new Downloader(cache.resolve("tool"), store);
+    var a = downloader.download(uri("a.txt"), false);
+    var b = downloader.download(uri("b.txt"), false);
+    var c = downloader.download(uri("c.txt"), false);
+    var now = System.currentTimeMillis();
+    var access = new Properties();
+    access.setProperty(a.toAbsolutePath().toString(), Long.toString(now - 3_000_000));
+    access.setProperty(b.toAbsolutePath().toString(), Long.toString(now - 1_000_000));
+    access.setProperty(c.toAbsolutePath().toString(), Long.toString(now - 2_000_000));
+    Bach.Util.storeProperties(store.access, access, "");
+    store.pin(c);
+    var dead = store.root.resolve("pins/999999999.properties");
+    Bach.Util.storeProperties(dead, new Properties(), "");
+
+    var lock = Bach.Lock.acquire(store.lock(b));
+    assertEquals(5, store.gc(cache, 5));
+    lock.release();
+    assertFalse(Files.exists(a));
+    assertFalse(Files.exists(a.resolveSibling(".a.txt.properties")));
+    assertTrue(store.find(uri("a.txt")).isEmpty());
+    assertTrue(Files.exists(b), "locked");
+    assertTrue(Files.exists(c), "pinned");
+    assertFalse(Files.exists(dead));
+
+    assertEquals(5, store.gc(cache, 5));
+    assertFalse(Files.exists(b));
+    assertTrue(store.find(uri("b.txt")).isEmpty());
+    assertTrue(Files.exists(c));
+    var keys = Bach.Util.loadProperties(store.access).stringPropertyNames();
+    assertEquals(Set.of(c.toAbsolutePath().toString()), keys, "evicted files are forgotten");
+    assertEquals(0, store.gc(cache, 5));
+  }
+
+  @Test
+  void storeInstancesDoNotLosePinsOfEachOther(@TempDir Path temp) throws Exception {
+    var bach = new Probe(Path.of(""), temp).bach;
+    var executor = Executors.newFixedThreadPool(8);
+    var futures = new ArrayList<CompletableFuture<Void>>();
+    for (int i = 0; i < 40; i++) {
+      var store = bach.new Store(temp.resolve("store"));
+      var file = temp.resolve("file" + i);
+      futures.add(CompletableFuture.runAsync(() -> store.pin(file), executor));
+    }
+    CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).join();
+    executor.shutdown();
+
+    var pins = temp.resolve("store/pins/" + ProcessHandle.current().pid() + ".properties");
+    assertEquals(40, Bach.Util.loadProperties(pins).size());
+  }
+
+  @Test
+  void collectionOnlyEvictsFromTheStore(@TempDir Path temp) throws Exception {
+    var bach = probe(temp, "path.user=user\ncache.size=0\n").bach;
+    var store = bach.new Store();
+    bach.new Downloader(temp.resolve("lib"), store).download(uri("s.txt"), false);
+    var tool = Files.createDirectories(temp.resolve("user/tool/t")).resolve("t.jar");
+    Files.writeString(tool, "t");
+
+    assertEquals(0, bach.gc());
+    assertTrue(store.find(uri("s.txt")).isEmpty());
+    assertTrue(Files.exists(tool), "files outside the store are kept");
+  }
+
+  @Test
+  void artifactsInMavenLockFileAreNotEvicted(@TempDir Path temp) throws Exception {
+    var cache = temp.resolve("cache");
+    var bach = new Probe(Path.of(""), temp).bach;
+    var store = bach.new Store(cache.resolve("store"));
+    var downloader = bach.new Downloader(cache.resolve("lib"), store);
+    var locked = downloader.download(uri("org/example/a/1/a-1.jar"), false);
+    var other = downloader.download(uri("b-1.jar"), false);
+    var same = bach.new Downloader(cache.resolve("other"), store);
+    var sameName = same.download(uri("org/other/a/1/a-1.jar"), false);
+    var lock = new Properties();
+    lock.setProperty("org.example:app:1", "org.example:app:1,org.example:a:1");
+    Bach.Util.storeProperties(temp.resolve(".bach/maven.lock"), lock, "");
+
+    assertEquals(7 + 21, store.gc(cache, 0));
+    assertTrue(Files.exists(locked), "locked");
+    assertTrue(store.find(uri("org/example/a/1/a-1.jar")).isPresent(), "locked blob");
+    assertFalse(Files.exists(other));
+    assertFalse(Files.exists(sameName), "same file name, other coordinates");
+  }
+}
@@ -0,0 +1,86 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertLinesMatch;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class FormatterTests {
+
+  private final Path jar =
+      Bach.USER_HOME.resolve(".bach/tool/format/google-java-format-1.7-all-deps.jar");
+
+  @BeforeEach
+  void assumeFormatterJarIsPresent() {
+    assumeTrue(Files.isRegularFile(jar), "Formatter JAR not found: " + jar);
+  }
+
+  @Test
+  void formatterIsLoadedOnce() {
+    var format = Bach.GoogleJavaFormat.of(jar);
+    assertSame(format, Bach.GoogleJavaFormat.of(jar));
+    assertEquals("1.7", format.version);
+    assertEquals("class A {}\n", format.format("class   A{}"));
+    assertThrows(IllegalArgumentException.class, () -> format.format("class {"));
+  }
+
+  @Test
+  void checkAndReplace(@TempDir Path temp) throws Exception {
+    var files = Files.createDirectories(temp.resolve("files"));
+    var clean = Files.writeString(files.resolve("Clean.java"), "class Clean {}\n");
+    var dirty = Files.writeString(files.resolve("Dirty.java"), "class   Dirty{}");
+    var home = Files.createDirectories(temp.resolve("home"));
+    Files.createDirectories(home.resolve("src"));
+    Files.writeString(home.resolve("bach.properties"), "path.user=user");
+    var tool = Files.createDirectories(home.resolve("user/tool/format"));
+    Files.copy(jar, tool.resolve(jar.getFileName()));
+    var probe = new Probe(home, temp.resolve("work"));
+    var formatter = probe.bach.new Formatter();
+
+    assertEquals(1, formatter.format(List.of(files), false));
+    assertEquals("class   Dirty{}", Files.readString(dirty));
+    assertLinesMatch(
+        List.of(">> DOWNLOAD >>", "\\Q>> format(--dry-run\\E.+", dirty.toString()), probe.lines());
+
+    assertEquals(0, formatter.format(List.of(files), true));
+    assertEquals("class Dirty {}\n", Files.readString(dirty));
+    assertEquals("class Clean {}\n", Files.readString(clean));
+    assertEquals(0, formatter.format(List.of(files), false));
+    assertEquals(
+        "All files are known to be formatted", probe.lines().get(probe.lines().size() - 1));
+  }
+
+  @Test
+  void cacheSkipsFilesKnownToBeFormatted(@TempDir Path temp) throws Exception {
+    var file = Files.writeString(temp.resolve("A.java"), "class A {}\n");
+    var copy = Files.writeString(temp.resolve("B.java"), "class A {}\n");
+    var formatter = new Probe(Path.of(""), temp).bach.new Formatter();
+
+    var cache = formatter.new Cache("1");
+    assertFalse(cache.isFormatted(file));
+    cache.put(file, Files.readString(file));
+    assertTrue(cache.isFormatted(file));
+    assertTrue(cache.isFormatted(copy), "same content hash");
+    cache.store();
+
+    assertTrue(formatter.new Cache("1").isFormatted(file));
+    assertFalse(formatter.new Cache("2").isFormatted(file), "formatter version changed");
+    Files.writeString(file, "class A { }\n");
+    assertFalse(formatter.new Cache("1").isFormatted(file), "content changed");
+
+    var pruned = formatter.new Cache("1");
+    assertTrue(pruned.isFormatted(copy));
+    assertTrue(pruned.retain(List.of(copy)), "entry of A.java dropped");
+    assertFalse(pruned.retain(List.of(copy)));
+    pruned.store();
+    assertEquals(1, formatter.new Cache("1").entries.size());
+  }
+}
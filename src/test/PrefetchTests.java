@@ -0,0 +1,61 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class PrefetchTests {
+
+  @Test
+  void parseModuleDeclaration() {
+    var info =
+        Bach.ModuleInfo.parse(
+            String.join(
+                "\n",
+                "/** Module {@code a}. */",
+                "@Deprecated",
+                "open module a.b {",
+                "  requires b;",
+                "  requires static c; // requires d;",
+                "  requires transitive static e.f;",
+                "  /* requires g; */",
+                "  exports a.b;",
+                "}"));
+    assertEquals("a.b", info.name);
+    assertEquals(Set.of("b", "c", "e.f"), info.requires);
+    assertThrows(IllegalArgumentException.class, () -> Bach.ModuleInfo.parse("class A {}"));
+  }
+
+  @Test
+  void requiredModulesAreDownloadedIntoLibraries(@TempDir Path temp) throws Exception {
+    var a = Files.createDirectories(temp.resolve("src/a/main/java"));
+    Files.writeString(
+        a.resolve("module-info.java"),
+        "module a { requires b; requires java.sql; requires static c; requires x; }");
+    var b = Files.createDirectories(temp.resolve("src/b/main/java"));
+    Files.writeString(b.resolve("module-info.java"), "module b {}");
+    var c = Files.writeString(temp.resolve("c.jar"), "c");
+    var x = Files.createDirectories(temp.resolve("repository/org/example/x/1"));
+    Files.writeString(x.resolve("x-1.jar"), "x");
+    var properties =
+        String.join(
+            "\n",
+            "module.c=" + c.toUri(),
+            "module.x=org.example:x:1",
+            "maven.repositories=" + temp.resolve("repository").toUri());
+    Files.writeString(temp.resolve("bach.properties"), properties);
+    var bach = new Probe(temp, temp).bach;
+
+    var prefetch = bach.prefetch();
+    assertSame(prefetch, bach.prefetch());
+    assertEquals(Set.of("c", "x"), prefetch.requires());
+    var lib = temp.resolve("lib");
+    assertEquals(lib.resolve("c.jar"), prefetch.await(c.toUri().toString(), lib));
+    assertEquals("x", Files.readString(prefetch.await("org.example:x:1", lib)));
+    assertSame(prefetch.get("org.example:x:1", lib), prefetch.get("org.example:x:1", lib));
+  }
+}
@@ -30,7 +30,7 @@ class Probe {
     var basic =
         new Bach.Configuration.Basic(
             System.Logger.Level.ALL,
-            Map.of("noop", new NoopTool(), "fail", __ -> 1),
+            Map.of("noop", new NoopTool(), "fail", __ -> 1, "throw", new ThrowTool()),
             it -> it.redirectOutput(redirected.toFile()).redirectErrorStream(true));
     var configuration = Bach.Configuration.of(basic, home, work);
     this.bach = new Bach(new PrintWriter(out), new PrintWriter(err), configuration);
@@ -56,4 +56,18 @@ class Probe {
       return 0;
     }
   }
+
+  /** Tool throwing an exception after a moment, letting concurrent tasks start before. */
+  static class ThrowTool implements Bach.Tool {
+
+    @Override
+    public int run(Bach __) {
+      try {
+        Thread.sleep(100);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      throw new IllegalStateException("thrown");
+    }
+  }
 }
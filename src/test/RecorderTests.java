@@ -0,0 +1,81 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class RecorderTests {
+
+  @Test
+  void toolRunsAndFileWalksAreRecorded(@TempDir Path temp) throws Exception {
+    Files.createFile(temp.resolve("A.java"));
+    var file = temp.resolve("bach.jfr");
+    var probe = new Probe();
+    try (var recording = new Recording()) {
+      recording.enable("bach.Tool");
+      recording.enable("bach.Find");
+      recording.start();
+      assertEquals(0, probe.bach.runner.run("noop"));
+      assertEquals(42, probe.bach.runner.run("unknown", "1", "2"));
+      assertEquals(0, probe.bach.runner.runAsync("java", "--version").join());
+      assertEquals(
+          List.of(temp.resolve("A.java")), Bach.Util.find(List.of(temp), Bach.Util::isJavaFile));
+      recording.stop();
+      recording.dump(file);
+    }
+    var events = RecordingFile.readAllEvents(file);
+    var tools =
+        events.stream()
+            .filter(event -> event.getEventType().getName().equals("bach.Tool"))
+            .map(
+                event ->
+                    event.getString("name")
+                        + ' '
+                        + event.getString("kind")
+                        + ' '
+                        + event.getInt("arguments")
+                        + ' '
+                        + event.getInt("code"))
+            .collect(Collectors.toSet());
+    assertTrue(
+        tools.containsAll(
+            Set.of("noop CONFIGURED 0 0", "unknown UNKNOWN 2 42", "java EXECUTABLE 1 0")),
+        tools.toString());
+    var walk =
+        events.stream()
+            .filter(event -> event.getEventType().getName().equals("bach.Find"))
+            .filter(event -> event.getString("root").equals(temp.toString()))
+            .findFirst()
+            .orElseThrow();
+    assertEquals(2, walk.getLong("visited"));
+  }
+
+  @Test
+  void traceContainsSpansOfToolRuns(@TempDir Path temp) throws Exception {
+    var file = temp.resolve("trace.json");
+    var trace = Bach.Trace.start();
+    var probe = new Probe();
+    assertEquals(0, probe.bach.runner.run("noop"));
+    assertEquals(0, probe.bach.runner.runAsync("java", "--version").join());
+    Bach.Trace.begin("test", "quote \" and \\ and \n").put("key", 1).end();
+    trace.stop(file);
+    Bach.Trace.begin("test", "not traced").end();
+
+    var json = Files.readString(file);
+    assertTrue(json.startsWith("{\"displayTimeUnit\":\"ms\",\"traceEvents\":["), json);
+    assertTrue(json.contains("\"cat\":\"tool\",\"name\":\"noop\""), json);
+    assertTrue(json.contains("\"cat\":\"tool\",\"name\":\"java\""), json);
+    assertTrue(json.contains("\"name\":\"quote \\\" and \\\\ and \\u000a\""), json);
+    assertTrue(json.contains("\"args\":{\"key\":\"1\"}"), json);
+    assertTrue(json.contains("\"name\":\"thread_name\""), json);
+    assertFalse(json.contains("not traced"), json);
+  }
+}
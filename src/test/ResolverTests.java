@@ -0,0 +1,181 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ResolverTests {
+
+  private static void pom(Path repository, String coordinates, String body) throws Exception {
+    var gav = coordinates.split(":");
+    var directory = repository.resolve(String.join("/", gav[0].replace('.', '/'), gav[1], gav[2]));
+    var pom =
+        String.join(
+            "\n",
+            "<?xml version=\"1.0\" encoding=\"UTF-8\"?>",
+            "<project xmlns=\"http://maven.apache.org/POM/4.0.0\">",
+            "  <modelVersion>4.0.0</modelVersion>",
+            "  <groupId>" + gav[0] + "</groupId>",
+            "  <artifactId>" + gav[1] + "</artifactId>",
+            "  <version>" + gav[2] + "</version>",
+            body,
+            "</project>");
+    Files.createDirectories(directory);
+    Files.writeString(directory.resolve(gav[1] + '-' + gav[2] + ".pom"), pom);
+  }
+
+  private static String dependency(String group, String artifact, String version, String extra) {
+    return String.join(
+        "",
+        "<dependency><groupId>" + group + "</groupId>",
+        "<artifactId>" + artifact + "</artifactId>",
+        version == null ? "" : "<version>" + version + "</version>",
+        extra,
+        "</dependency>");
+  }
+
+  private static Bach.Resolver resolver(Path temp) {
+    var bach = new Probe(Path.of(""), temp).bach;
+    var downloader = bach.new Downloader(temp.resolve("poms"), bach.new Store(temp.resolve("s")));
+    var repository = temp.resolve("repository").toUri().toString();
+    return bach.new Resolver(List.of(repository), downloader, temp.resolve("maven.lock"));
+  }
+
+  @Test
+  void resolveTransitiveDependencies(@TempDir Path temp) throws Exception {
+    var repository = temp.resolve("repository");
+    pom(
+        repository,
+        "org.example:parent:1",
+        String.join(
+            "\n",
+            "<packaging>pom</packaging>",
+            "<properties><lib.version>2</lib.version></properties>",
+            "<dependencyManagement><dependencies>",
+            dependency("org.example", "lib", "${lib.version}", ""),
+            dependency("org.example", "bom", "1", "<type>pom</type><scope>import</scope>"),
+            "</dependencies></dependencyManagement>"));
+    pom(
+        repository,
+        "org.example:bom:1",
+        String.join(
+            "\n",
+            "<packaging>pom</packaging>",
+            "<dependencyManagement><dependencies>",
+            dependency("org.example", "util", "3", ""),
+            "</dependencies></dependencyManagement>"));
+    pom(
+        repository,
+        "org.example:app:1",
+        String.join(
+            "\n",
+            "<parent><groupId>org.example</groupId><artifactId>parent</artifactId>",
+            "<version>1</version></parent>",
+            "<dependencies>",
+            dependency("org.example", "lib", null, ""),
+            dependency(
+                "org.example",
+                "tool",
+                "${project.version}",
+                "<exclusions><exclusion><groupId>org.example</groupId>"
+                    + "<artifactId>util</artifactId></exclusion></exclusions>"),
+            dependency("org.example", "test", "1", "<scope>test</scope>"),
+            dependency("org.example", "extra", "1", "<optional>true</optional>"),
+            "</dependencies>"));
+    pom(
+        repository,
+        "org.example:lib:2",
+        "<dependencies>" + dependency("org.example", "util", "1", "") + "</dependencies>");
+    pom(
+        repository,
+        "org.example:tool:1",
+        "<dependencies>" + dependency("org.example", "other", "[1,2)", "") + "</dependencies>");
+    pom(repository, "org.example:other:1", "");
+    pom(repository, "org.example:util:3", "");
+
+    var expected =
+        List.of(
+            "org.example:app:1",
+            "org.example:lib:2",
+            "org.example:tool:1",
+            "org.example:util:3",
+            "org.example:other:1");
+    var coordinates = List.of("org.example:app:1");
+    assertEquals(expected, resolver(temp).resolve(coordinates));
+
+    Files.move(repository, temp.resolve("moved"));
+    var resolver = resolver(temp);
+    assertEquals(expected, resolver.resolve(coordinates), "read from lock file");
+    assertTrue(resolver.poms.isEmpty(), "no POM loaded");
+    assertThrows(RuntimeException.class, () -> resolver.resolve(List.of("org.example:util:9")));
+  }
+
+  @Test
+  void projectPropertiesInCoordinatesAreInterpolated(@TempDir Path temp) throws Exception {
+    var repository = temp.resolve("repository");
+    pom(
+        repository,
+        "org.example:app:1",
+        String.join(
+            "\n",
+            "<dependencyManagement><dependencies>",
+            dependency("${project.groupId}", "lib", "2", ""),
+            "</dependencies></dependencyManagement>",
+            "<dependencies>",
+            dependency(
+                "org.example",
+                "lib",
+                null,
+                "<exclusions><exclusion><groupId>${project.groupId}</groupId>"
+                    + "<artifactId>util</artifactId></exclusion></exclusions>"),
+            "</dependencies>"));
+    pom(
+        repository,
+        "org.example:lib:2",
+        "<dependencies>" + dependency("org.example", "util", "1", "") + "</dependencies>");
+
+    var expected = List.of("org.example:app:1", "org.example:lib:2");
+    assertEquals(expected, resolver(temp).resolve(List.of("org.example:app:1")));
+  }
+
+  @Test
+  void cyclesOfParentPomsFail(@TempDir Path temp) throws Exception {
+    var repository = temp.resolve("repository");
+    var parent =
+        "<parent><groupId>org.example</groupId><artifactId>%s</artifactId>"
+            + "<version>1</version></parent>";
+    pom(repository, "org.example:app:1", String.format(parent, "base"));
+    pom(repository, "org.example:base:1", String.format(parent, "app"));
+
+    var resolver = resolver(temp);
+    var coordinates = List.of("org.example:app:1");
+    var e =
+        assertTimeoutPreemptively(
+            Duration.ofSeconds(9),
+            () -> assertThrows(IllegalStateException.class, () -> resolver.resolve(coordinates)));
+    assertTrue(e.getMessage().endsWith("app:1 -> org.example:base:1 -> org.example:app:1"));
+  }
+
+  @Test
+  @SwallowSystem
+  void documentTypeDeclarationsAreRejected(@TempDir Path temp, SwallowSystem.Streams streams)
+      throws Exception {
+    var file = temp.resolve("entity.pom");
+    Files.writeString(
+        file,
+        String.join(
+            "\n",
+            "<?xml version=\"1.0\" encoding=\"UTF-8\"?>",
+            "<!DOCTYPE project [<!ENTITY secret SYSTEM \"" + file.toUri() + "\">]>",
+            "<project><groupId>&secret;</groupId><artifactId>a</artifactId>",
+            "<version>1</version></project>"));
+    assertThrows(IllegalArgumentException.class, () -> Bach.Pom.parse(file));
+    assertEquals(List.of(), streams.errLines(), "parser errors are not printed");
+  }
+}
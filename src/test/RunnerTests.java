@@ -1,12 +1,21 @@
 import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertLinesMatch;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
 class RunnerTests {
   @Test
@@ -48,4 +57,89 @@ class RunnerTests {
         List.of(">> javac(\"--version\")", "Running provided tool.+", "javac .+"), probe.lines());
     assertLinesMatch(List.of(), probe.errors());
   }
+
+  @Test
+  void registryIndexesAllKindsOfTools() {
+    var registry = new Probe().bach.configuration.registry;
+    assertEquals(Bach.ToolRegistry.Kind.CONFIGURED, registry.get("noop").kind);
+    assertEquals(Bach.ToolRegistry.Kind.PROVIDED, registry.get("javac").kind);
+    assertEquals(Bach.ToolRegistry.Kind.API, registry.get("version").kind);
+    assertEquals(Bach.ToolRegistry.Kind.EXECUTABLE, registry.get("java").kind);
+    assertNull(registry.get("*?!"));
+    assertFalse(registry.index(), "index must be built only once");
+    assertTrue(registry.toString().matches("\\d+ tools indexed in \\d+ ms"), registry.toString());
+  }
+
+  @Test
+  void longArgumentListsAreSpilledIntoArgumentFiles() throws Exception {
+    var runner = new Probe().bach.runner;
+    assertNull(runner.spill("javac", new String[] {"--version"}));
+    var many = new String[2000];
+    Arrays.fill(many, "a \"quoted\" \\path");
+    assertNull(runner.spill("noop", many));
+    var file = runner.spill("javac", many);
+    try {
+      var lines = Files.readAllLines(file);
+      assertEquals(many.length, lines.size());
+      assertEquals("\"a \\\"quoted\\\" \\\\path\"", lines.get(0));
+    } finally {
+      Files.delete(file);
+    }
+  }
+
+  @Test
+  void runJavacWithSpilledArguments() {
+    var probe = new Probe();
+    var options = new ArrayList<Object>();
+    for (int i = 0; i < 1000; i++) {
+      options.add("-implicit:none");
+    }
+    options.add("--version");
+    assertEquals(0, probe.bach.runner.run("javac", options.toArray()));
+    assertTrue(probe.lines().stream().anyMatch(line -> line.startsWith("Spilled 1001 arguments")));
+    assertTrue(probe.lines().stream().anyMatch(line -> line.startsWith("javac ")));
+  }
+
+  @Test
+  void runAsync() {
+    var probe = new Probe();
+    assertEquals(0, probe.bach.runner.runAsync("noop").join());
+    assertEquals(1, probe.bach.runner.runAsync("fail").join());
+    assertEquals(0, probe.bach.runner.runAsync("javac", "--version").join());
+    assertEquals(0, probe.bach.runner.runAsync("java", "--version").join());
+    assertDoesNotThrow(() -> probe.bach.runAsync(0, "java", "--version").join());
+    var e = assertThrows(CompletionException.class, () -> probe.bach.runAsync(0, "fail").join());
+    assertEquals("Tool fail(<empty>) returned 1, but expected 0", e.getCause().getMessage());
+  }
+
+  @Test
+  void cancellingAsyncProcessDestroysIt(@TempDir Path temp) throws Exception {
+    var program = temp.resolve("Sleep.java");
+    Files.writeString(
+        program,
+        "class Sleep {\n"
+            + "  public static void main(String... args) throws Exception {\n"
+            + "    Thread.sleep(99_000);\n"
+            + "  }\n"
+            + "}\n");
+    var future = new Probe().bach.runner.runAsync("java", program);
+    var process = sleeper(program).orElseThrow();
+    assertTrue(future.cancel(true));
+    assertFalse(process.onExit().get(9, TimeUnit.SECONDS).isAlive());
+  }
+
+  private static Optional<ProcessHandle> sleeper(Path program) throws Exception {
+    for (int i = 0; i < 100; i++) {
+      var sleeper =
+          ProcessHandle.current()
+              .descendants()
+              .filter(h -> h.info().commandLine().orElse("").contains(program.toString()))
+              .findFirst();
+      if (sleeper.isPresent()) {
+        return sleeper;
+      }
+      Thread.sleep(50);
+    }
+    return Optional.empty();
+  }
 }
@@ -0,0 +1,130 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertLinesMatch;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class SchedulerTests {
+
+  @Test
+  void parseTasksRunningInDeclarationOrder() {
+    var tasks = Bach.Task.parse(List.of("a", "b", "c"));
+    assertEquals(3, tasks.size());
+    assertEquals(List.of(), tasks.get(0).dependencies);
+    assertEquals(List.of(tasks.get(0)), tasks.get(1).dependencies);
+    assertEquals(List.of(tasks.get(1)), tasks.get(2).dependencies);
+  }
+
+  @Test
+  void parseIndependentTasks() {
+    var tasks = Bach.Task.parse(List.of("a:", "b:", "c"));
+    assertEquals(3, tasks.size());
+    assertTrue(tasks.stream().allMatch(task -> task.dependencies.isEmpty()));
+  }
+
+  @Test
+  void parseTasksWithDependencies() {
+    var tasks = Bach.Task.parse(List.of("a", "b", "c:a,b", "tool", "d", "1", "2"));
+    assertEquals(4, tasks.size());
+    var c = tasks.get(2);
+    assertEquals("c", c.name);
+    assertSame(tasks.get(0), c.dependencies.get(0));
+    assertSame(tasks.get(1), c.dependencies.get(1));
+    var d = tasks.get(3);
+    assertEquals("d(\"1\", \"2\")", d.toString());
+    assertEquals(tasks.subList(0, 3), d.dependencies);
+  }
+
+  @Test
+  void parseTaskWithUnknownDependencyFails() {
+    var e = assertThrows(IllegalArgumentException.class, () -> Bach.Task.parse(List.of("a:b")));
+    assertEquals("Task 'a' depends on 'b', which is not declared before it", e.getMessage());
+  }
+
+  @Test
+  void outputIsPrintedInDeclarationOrder() {
+    var probe = new Probe();
+    var tasks = Bach.Task.parse(List.of("noop", "version", "noop", "version:noop"));
+    assertEquals(0, probe.bach.new Scheduler().run(tasks));
+    assertLinesMatch(
+        List.of(
+            "Running 4 tasks with a parallelism of \\d+",
+            ">> noop(<empty>)",
+            "Running configured tool named 'Probe$NoopTool'...",
+            ">> version(<empty>)",
+            ">> 2 >>",
+            ">> noop(<empty>)",
+            "Running configured tool named 'Probe$NoopTool'...",
+            ">> version(<empty>)",
+            ">> 2 >>"),
+        probe.lines());
+  }
+
+  @Test
+  void dependentTaskIsSkippedAfterFailure() {
+    var probe = new Probe();
+    var tasks = Bach.Task.parse(List.of("fail", "version:fail"));
+    assertEquals(1, probe.bach.new Scheduler().run(tasks));
+    assertLinesMatch(
+        List.of("Running 2 tasks.+", ">> fail(<empty>)", "Running configured tool.+"),
+        probe.lines());
+  }
+
+  @Test
+  void outputOfAllTasksIsEmittedWhenOneThrows(@TempDir Path temp) throws Exception {
+    Files.createDirectories(temp.resolve("src"));
+    Files.writeString(temp.resolve("bach.properties"), "options.parallelism=2");
+    var probe = new Probe(temp, temp);
+    var tasks = Bach.Task.parse(List.of("throw:", "version:"));
+    var scheduler = probe.bach.new Scheduler();
+    var e = assertThrows(IllegalStateException.class, () -> scheduler.run(tasks));
+    assertEquals("thrown", e.getMessage());
+    assertTrue(probe.lines().contains(Bach.VERSION), probe.toString());
+  }
+
+  @Test
+  void prefixedOutputLines() {
+    var probe = new Probe();
+    var tasks = Bach.Task.parse(List.of("version", "noop"));
+    assertEquals(0, probe.bach.new Scheduler(true).run(tasks));
+    var lines = probe.lines();
+    assertTrue(lines.contains("[version] " + Bach.VERSION), lines.toString());
+    assertTrue(lines.contains("[noop] >> noop(<empty>)"), lines.toString());
+  }
+
+  @Test
+  void captureSpillsToDiskWhenLimitIsExceeded() throws Exception {
+    var capture = new Bach.Capture(10);
+    capture.write("123456789\n");
+    assertFalse(capture.isSpilled());
+    capture.write("abc\n");
+    assertTrue(capture.isSpilled());
+    var writer = new StringWriter();
+    capture.transferTo(writer);
+    assertEquals("123456789\nabc\n", writer.toString());
+    capture.close();
+  }
+
+  @Test
+  void prefixedLinesAreEmittedComplete() throws Exception {
+    var target = new StringWriter();
+    var lines = new Bach.PrefixedLines(new PrintWriter(target), "[x] ");
+    lines.write("a\r\nb");
+    assertEquals("[x] a" + System.lineSeparator(), target.toString());
+    lines.write("c\n");
+    lines.write("d");
+    lines.close();
+    var expected = List.of("[x] a", "[x] bc", "[x] d");
+    assertEquals(expected, target.toString().lines().collect(Collectors.toList()));
+  }
+}
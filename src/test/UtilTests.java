@@ -36,4 +36,11 @@ class UtilTests {
     assertFalse(Bach.Util.isJarFile(Path.of("")));
     assertFalse(Bach.Util.isModuleInfo(Path.of("")));
   }
+
+  @Test
+  void bytes() {
+    assertEquals(123, Bach.Util.bytes("123"));
+    assertEquals(2048, Bach.Util.bytes("2k"));
+    assertEquals(5L << 30, Bach.Util.bytes("5 G"));
+  }
 }
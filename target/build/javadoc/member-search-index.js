@@ -0,0 +1 @@
+memberSearchIndex = [{"p":"<Unnamed>","c":"Bach.ClassFile","l":"abi"},{"p":"<Unnamed>","c":"Bach.Compiler.Unit","l":"abi"},{"p":"<Unnamed>","c":"Bach.Store","l":"access"},{"p":"<Unnamed>","c":"Bach.Store","l":"ACCESS_RESOLUTION_MILLIS"},{"p":"<Unnamed>","c":"Bach.Lock","l":"acquire(Path)","u":"acquire(java.nio.file.Path)"},{"p":"<Unnamed>","c":"Bach.Configuration","l":"actual(Bach.Property)"},{"p":"<Unnamed>","c":"Bach.Configuration","l":"actualUnrolled(Bach.Property)"},{"p":"<Unnamed>","c":"Bach.Javac","l":"addModuleMainClass(byte[], String)","u":"addModuleMainClass(byte[],java.lang.String)"},{"p":"<Unnamed>","c":"Bach.ToolRegistry.Kind","l":"API"},{"p":"<Unnamed>","c":"Bach.Tool","l":"API"},{"p":"<Unnamed>","c":"Bach.Runner","l":"ARGUMENT_FILE_THRESHOLD"},{"p":"<Unnamed>","c":"Bach.Runner","l":"argumentFileTools"},{"p":"<Unnamed>","c":"Bach.Task","l":"arguments"},{"p":"<Unnamed>","c":"Bach.ToolEvent","l":"arguments"},{"p":"<Unnamed>","c":"Bach.Compiler.Unit","l":"arguments(List<Path>)","u":"arguments(java.util.List)"},{"p":"<Unnamed>","c":"Bach.Pom","l":"artifact"},{"p":"<Unnamed>","c":"Bach.Pom.Dependency","l":"artifact"},{"p":"<Unnamed>","c":"Bach.Prefetch","l":"artifact(String)","u":"artifact(java.lang.String)"},{"p":"<Unnamed>","c":"Bach.Util","l":"assigned(T, String)","u":"assigned(T,java.lang.String)"},{"p":"<Unnamed>","c":"Bach","l":"ASYNC"},{"p":"<Unnamed>","c":"Bach.Prefetch","l":"await(String, Path)","u":"await(java.lang.String,java.nio.file.Path)"},{"p":"<Unnamed>","c":"Bach.Prefetch","l":"awaitModules(Collection<String>)","u":"awaitModules(java.util.Collection)"},{"p":"<Unnamed>","c":"Bach","l":"Bach(PrintWriter, PrintWriter, Bach.Configuration)","u":"%3Cinit%3E(java.io.PrintWriter,java.io.PrintWriter,Bach.Configuration)"},{"p":"<Unnamed>","c":"Bach.Downloader","l":"backoff(int)"},{"p":"<Unnamed>","c":"Bach.Configuration","l":"basic"},{"p":"<Unnamed>","c":"Bach.Configuration.Basic","l":"Basic(System.Logger.Level, Map<String, Bach.Tool>, UnaryOperator<ProcessBuilder>)","u":"%3Cinit%3E(java.lang.System.Logger.Level,java.util.Map,java.util.function.UnaryOperator)"},{"p":"<Unnamed>","c":"Bach.Trace","l":"begin(Process, List<String>)","u":"begin(java.lang.Process,java.util.List)"},{"p":"<Unnamed>","c":"Bach.Trace","l":"begin(String, String)","u":"begin(java.lang.String,java.lang.String)"},{"p":"<Unnamed>","c":"Bach.Store","l":"blob(String)","u":"blob(java.lang.String)"},{"p":"<Unnamed>","c":"Bach.DownloadEvent","l":"bytes"},{"p":"<Unnamed>","c":"Bach.Util","l":"bytes(String)","u":"bytes(java.lang.String)"},{"p":"<Unnamed>","c":"Bach.Configuration.Paths","l":"cache"},{"p":"<Unnamed>","c":"Bach.Property","l":"CACHE_COLLECT"},{"p":"<Unnamed>","c":"Bach.Property","l":"CACHE_SIZE"},{"p":"<Unnamed>","c":"Bach.Formatter.Cache","l":"Cache(String)","u":"%3Cinit%3E(java.lang.String)"},{"p":"<Unnamed>","c":"Bach.Configuration.Options","l":"cacheCollect"},{"p":"<Unnamed>","c":"Bach.Configuration.Options","l":"cacheSize"},{"p":"<Unnamed>","c":"Bach.Capture","l":"Capture(int)","u":"%3Cinit%3E(int)"},{"p":"<Unnamed>","c":"Bach.Client.Channel","l":"Channel(DataOutputStream, int)","u":"%3Cinit%3E(java.io.DataOutputStream,int)"},{"p":"<Unnamed>","c":"Bach.Downloader.Validators","l":"checked()"},{"p":"<Unnamed>","c":"Bach.Downloader","l":"checksums(URI)","u":"checksums(java.net.URI)"},{"p":"<Unnamed>","c":"Bach.Compiler","l":"classes"},{"p":"<Unnamed>","c":"Bach.Dependencies","l":"classes"},{"p":"<Unnamed>","c":"Bach.Dependencies","l":"classes(Set<String>)","u":"classes(java.util.Set)"},{"p":"<Unnamed>","c":"Bach.Http","l":"CLIENT"},{"p":"<Unnamed>","c":"Bach.Client","l":"Client()","u":"%3Cinit%3E()"},{"p":"<Unnamed>","c":"Bach.Capture","l":"close()"},{"p":"<Unnamed>","c":"Bach.Client.Channel","l":"close()"},{"p":"<Unnamed>","c":"Bach.PrefixedLines","l":"close()"},{"p":"<Unnamed>","c":"Bach.ToolEvent","l":"code"},{"p":"<Unnamed>","c":"Bach.Store","l":"COLLECTION_INTERVAL_MILLIS"},{"p":"<Unnamed>","c":"Bach","l":"compile()"},{"p":"<Unnamed>","c":"Bach.Compiler","l":"compile(List<String>)","u":"compile(java.util.List)"},{"p":"<Unnamed>","c":"Bach.Compiler","l":"Compiler()","u":"%3Cinit%3E()"},{"p":"<Unnamed>","c":"Bach.Compiler.Unit","l":"complete()"},{"p":"<Unnamed>","c":"Bach.Scheduler.Execution","l":"complete()"},{"p":"<Unnamed>","c":"Bach","l":"configuration"},{"p":"<Unnamed>","c":"Bach.Daemon","l":"configuration"},{"p":"<Unnamed>","c":"Bach.ToolRegistry.Kind","l":"CONFIGURED"},{"p":"<Unnamed>","c":"Bach.Client","l":"connect(Path, String, List<String>, OutputStream, OutputStream)","u":"connect(java.nio.file.Path,java.lang.String,java.util.List,java.io.OutputStream,java.io.OutputStream)"},{"p":"<Unnamed>","c":"Bach.ClassFile","l":"constants"},{"p":"<Unnamed>","c":"Bach.Dependencies.Entry","l":"constants"},{"p":"<Unnamed>","c":"Bach.Lock","l":"contended"},{"p":"<Unnamed>","c":"Bach.LockEvent","l":"contended"},{"p":"<Unnamed>","c":"Bach.Lock","l":"CONTENTIONS"},{"p":"<Unnamed>","c":"Bach.Util","l":"copy(Path, Path)","u":"copy(java.nio.file.Path,java.nio.file.Path)"},{"p":"<Unnamed>","c":"Bach.Util","l":"createArgumentFile(Consumer<Consumer<Object>>)","u":"createArgumentFile(java.util.function.Consumer)"},{"p":"<Unnamed>","c":"Bach.Property","l":"DAEMON_TIMEOUT"},{"p":"<Unnamed>","c":"Bach","l":"daemon()"},{"p":"<Unnamed>","c":"Bach.Daemon","l":"Daemon(Duration)","u":"%3Cinit%3E(java.time.Duration)"},{"p":"<Unnamed>","c":"Bach.ClassFile","l":"declarations"},{"p":"<Unnamed>","c":"Bach.Dependencies.Entry","l":"declarations"},{"p":"<Unnamed>","c":"Bach.Property","l":"defaultValue"},{"p":"<Unnamed>","c":"Bach.Util","l":"delete(Path)","u":"delete(java.nio.file.Path)"},{"p":"<Unnamed>","c":"Bach.Pom","l":"dependencies"},{"p":"<Unnamed>","c":"Bach.Task","l":"dependencies"},{"p":"<Unnamed>","c":"Bach.Dependencies","l":"Dependencies(String)","u":"%3Cinit%3E(java.lang.String)"},{"p":"<Unnamed>","c":"Bach.Pom.Dependency","l":"Dependency(Element)","u":"%3Cinit%3E(org.w3c.dom.Element)"},{"p":"<Unnamed>","c":"Bach.Dependencies","l":"dependents(Set<String>)","u":"dependents(java.util.Set)"},{"p":"<Unnamed>","c":"Bach.Property","l":"description"},{"p":"<Unnamed>","c":"Bach.Downloader","l":"destination"},{"p":"<Unnamed>","c":"Bach.Util","l":"digest(String)","u":"digest(java.lang.String)"},{"p":"<Unnamed>","c":"Bach.DigestingSubscriber","l":"DigestingSubscriber(HttpResponse.BodySubscriber<Path>, Collection<MessageDigest>)","u":"%3Cinit%3E(java.net.http.HttpResponse.BodySubscriber,java.util.Collection)"},{"p":"<Unnamed>","c":"Bach.Downloader.Validators","l":"discard()"},{"p":"<Unnamed>","c":"Bach.Property","l":"DOWNLOAD_BACKOFF"},{"p":"<Unnamed>","c":"Bach.Property","l":"DOWNLOAD_CONCURRENCY"},{"p":"<Unnamed>","c":"Bach.Property","l":"DOWNLOAD_HOST_CONCURRENCY"},{"p":"<Unnamed>","c":"Bach.Property","l":"DOWNLOAD_RETRIES"},{"p":"<Unnamed>","c":"Bach.Property","l":"DOWNLOAD_TIMEOUT"},{"p":"<Unnamed>","c":"Bach.Property","l":"DOWNLOAD_TTL"},{"p":"<Unnamed>","c":"Bach.Downloader","l":"download(String, String, String)","u":"download(java.lang.String,java.lang.String,java.lang.String)"},{"p":"<Unnamed>","c":"Bach.Downloader","l":"download(URI, boolean)","u":"download(java.net.URI,boolean)"},{"p":"<Unnamed>","c":"Bach.Downloader","l":"downloadAll(Collection<URI>, boolean)","u":"downloadAll(java.util.Collection,boolean)"},{"p":"<Unnamed>","c":"Bach.Downloader","l":"downloadAsync(List<String>, String, String, String, String, boolean)","u":"downloadAsync(java.util.List,java.lang.String,java.lang.String,java.lang.String,java.lang.String,boolean)"},{"p":"<Unnamed>","c":"Bach.Downloader","l":"downloadAsync(URI, boolean)","u":"downloadAsync(java.net.URI,boolean)"},{"p":"<Unnamed>","c":"Bach.Configuration.Options","l":"downloadBackoff"},{"p":"<Unnamed>","c":"Bach.Configuration.Options","l":"downloadConcurrency"},{"p":"<Unnamed>","c":"Bach.Resolver","l":"downloader"},{"p":"<Unnamed>","c":"Bach.Downloader","l":"Downloader(Path)","u":"%3Cinit%3E(java.nio.file.Path)"},{"p":"<Unnamed>","c":"Bach.Downloader","l":"Downloader(Path, Bach.Store)","u":"%3Cinit%3E(java.nio.file.Path,Bach.Store)"},{"p":"<Unnamed>","c":"Bach.DownloadEvent","l":"DownloadEvent()","u":"%3Cinit%3E()"},{"p":"<Unnamed>","c":"Bach.Configuration.Options","l":"downloadHostConcurrency"},{"p":"<Unnamed>","c":"Bach.Configuration.Options","l":"downloadRetries"},{"p":"<Unnamed>","c":"Bach.Configuration.Options","l":"downloadTimeout"},{"p":"<Unnamed>","c":"Bach.Configuration.Options","l":"downloadTimeToLive"},{"p":"<Unnamed>","c":"Bach.Trace.Span","l":"end()"},{"p":"<Unnamed>","c":"Bach.Formatter.Cache","l":"entries"},{"p":"<Unnamed>","c":"Bach.ToolRegistry.Entry","l":"Entry(String, Bach.ToolRegistry.Kind, Object)","u":"%3Cinit%3E(java.lang.String,Bach.ToolRegistry.Kind,java.lang.Object)"},{"p":"<Unnamed>","c":"Bach.Javac.MemoryFileManager.Entry","l":"Entry(String, JavaFileObject.Kind)","u":"%3Cinit%3E(java.lang.String,javax.tools.JavaFileObject.Kind)"},{"p":"<Unnamed>","c":"Bach.Dependencies.Entry","l":"Entry(String, String, String, Set<String>, Set<String>)","u":"%3Cinit%3E(java.lang.String,java.lang.String,java.lang.String,java.util.Set,java.util.Set)"},{"p":"<Unnamed>","c":"Bach.Compiler.Unit","l":"err"},{"p":"<Unnamed>","c":"Bach","l":"err"},{"p":"<Unnamed>","c":"Bach.Scheduler.Execution","l":"err"},{"p":"<Unnamed>","c":"Bach.Client","l":"ERR"},{"p":"<Unnamed>","c":"Bach.Downloader.Validators","l":"etag()"},{"p":"<Unnamed>","c":"Bach.Pom.Dependency","l":"exclusions"},{"p":"<Unnamed>","c":"Bach.ToolRegistry.Kind","l":"EXECUTABLE"},{"p":"<Unnamed>","c":"Bach.Scheduler.Execution","l":"Execution(Bach.Task)","u":"%3Cinit%3E(Bach.Task)"},{"p":"<Unnamed>","c":"Bach.Client","l":"EXIT"},{"p":"<Unnamed>","c":"Bach.Javac","l":"expand(String...)","u":"expand(java.lang.String...)"},{"p":"<Unnamed>","c":"Bach.ClassFile","l":"exports"},{"p":"<Unnamed>","c":"Bach.Downloader","l":"extractFileName(URI)","u":"extractFileName(java.net.URI)"},{"p":"<Unnamed>","c":"Bach.Downloader","l":"extractFileName(URI, HttpHeaders)","u":"extractFileName(java.net.URI,java.net.http.HttpHeaders)"},{"p":"<Unnamed>","c":"Bach.Compiler","l":"file"},{"p":"<Unnamed>","c":"Bach.Daemon","l":"file"},{"p":"<Unnamed>","c":"Bach.Downloader.Validators","l":"file"},{"p":"<Unnamed>","c":"Bach.Formatter.Cache","l":"file"},{"p":"<Unnamed>","c":"Bach.Util","l":"find(Iterable<Path>, Predicate<Path>)","u":"find(java.lang.Iterable,java.util.function.Predicate)"},{"p":"<Unnamed>","c":"Bach.Util","l":"find(Iterable<Path>, Predicate<Path>, Consumer<Path>)","u":"find(java.lang.Iterable,java.util.function.Predicate,java.util.function.Consumer)"},{"p":"<Unnamed>","c":"Bach.Store","l":"find(URI)","u":"find(java.net.URI)"},{"p":"<Unnamed>","c":"Bach.Util","l":"findDirectoryEntries(Path, DirectoryStream.Filter<Path>)","u":"findDirectoryEntries(java.nio.file.Path,java.nio.file.DirectoryStream.Filter)"},{"p":"<Unnamed>","c":"Bach.Util","l":"findDirectoryNames(Path)","u":"findDirectoryNames(java.nio.file.Path)"},{"p":"<Unnamed>","c":"Bach.FindEvent","l":"FindEvent()","u":"%3Cinit%3E()"},{"p":"<Unnamed>","c":"Bach.Util","l":"findExecutable(Iterable<Path>, String)","u":"findExecutable(java.lang.Iterable,java.lang.String)"},{"p":"<Unnamed>","c":"Bach.Dependencies","l":"fingerprint"},{"p":"<Unnamed>","c":"Bach.ClassFile","l":"fingerprint(Collection<Bach.ClassFile>)","u":"fingerprint(java.util.Collection)"},{"p":"<Unnamed>","c":"Bach.ClassFile","l":"fingerprint(Path)","u":"fingerprint(java.nio.file.Path)"},{"p":"<Unnamed>","c":"Bach.Capture","l":"flush()"},{"p":"<Unnamed>","c":"Bach.Client.Channel","l":"flush()"},{"p":"<Unnamed>","c":"Bach.PrefixedLines","l":"flush()"},{"p":"<Unnamed>","c":"Bach","l":"fork(Writer, Writer)","u":"fork(java.io.Writer,java.io.Writer)"},{"p":"<Unnamed>","c":"Bach","l":"format()"},{"p":"<Unnamed>","c":"Bach.Formatter","l":"format(Iterable<Path>, boolean)","u":"format(java.lang.Iterable,boolean)"},{"p":"<Unnamed>","c":"Bach.Formatter","l":"format(Object...)","u":"format(java.lang.Object...)"},{"p":"<Unnamed>","c":"Bach.GoogleJavaFormat","l":"format(String)","u":"format(java.lang.String)"},{"p":"<Unnamed>","c":"Bach.Formatter","l":"Formatter()","u":"%3Cinit%3E()"},{"p":"<Unnamed>","c":"Bach.Compiler.Unit","l":"future"},{"p":"<Unnamed>","c":"Bach.Scheduler.Execution","l":"future"},{"p":"<Unnamed>","c":"Bach","l":"gc()"},{"p":"<Unnamed>","c":"Bach.Store","l":"gc(Path, long)","u":"gc(java.nio.file.Path,long)"},{"p":"<Unnamed>","c":"Bach","l":"gcAsync()"},{"p":"<Unnamed>","c":"Bach.Configuration","l":"get(Bach.Property)"},{"p":"<Unnamed>","c":"Bach.Configuration","l":"get(Bach.Property, Supplier<Object>)","u":"get(Bach.Property,java.util.function.Supplier)"},{"p":"<Unnamed>","c":"Bach.ToolRegistry","l":"get(String)","u":"get(java.lang.String)"},{"p":"<Unnamed>","c":"Bach.Prefetch","l":"get(String, Path)","u":"get(java.lang.String,java.nio.file.Path)"},{"p":"<Unnamed>","c":"Bach.Util","l":"get(String, Properties, Supplier<Object>)","u":"get(java.lang.String,java.util.Properties,java.util.function.Supplier)"},{"p":"<Unnamed>","c":"Bach.DigestingSubscriber","l":"getBody()"},{"p":"<Unnamed>","c":"Bach.Javac.MemoryFileManager","l":"getFileForOutput(JavaFileManager.Location, String, String, FileObject)","u":"getFileForOutput(javax.tools.JavaFileManager.Location,java.lang.String,java.lang.String,javax.tools.FileObject)"},{"p":"<Unnamed>","c":"Bach.Javac.MemoryFileManager","l":"getJavaFileForOutput(JavaFileManager.Location, String, JavaFileObject.Kind, FileObject)","u":"getJavaFileForOutput(javax.tools.JavaFileManager.Location,java.lang.String,javax.tools.JavaFileObject.Kind,javax.tools.FileObject)"},{"p":"<Unnamed>","c":"Bach.Pom.Dependency","l":"group"},{"p":"<Unnamed>","c":"Bach.Pom","l":"group"},{"p":"<Unnamed>","c":"Bach.Compiler.Unit","l":"hash(List<Path>)","u":"hash(java.util.List)"},{"p":"<Unnamed>","c":"Bach.Formatter.Cache","l":"hashes"},{"p":"<Unnamed>","c":"Bach","l":"help()"},{"p":"<Unnamed>","c":"Bach.Util","l":"hex(byte[])"},{"p":"<Unnamed>","c":"Bach.DownloadEvent","l":"hit"},{"p":"<Unnamed>","c":"Bach.Configuration.Paths","l":"home"},{"p":"<Unnamed>","c":"Bach.Http","l":"Http()","u":"%3Cinit%3E()"},{"p":"<Unnamed>","c":"Bach.Pom","l":"imports()"},{"p":"<Unnamed>","c":"Bach.Store","l":"index"},{"p":"<Unnamed>","c":"Bach.ToolRegistry","l":"index()"},{"p":"<Unnamed>","c":"Bach.Pom","l":"inherit(Bach.Pom)"},{"p":"<Unnamed>","c":"Bach.Pom","l":"interpolate(String)","u":"interpolate(java.lang.String)"},{"p":"<Unnamed>","c":"Bach.Pom","l":"interpolateCoordinates()"},{"p":"<Unnamed>","c":"Bach.ClassFile","l":"isClassFile(Path)","u":"isClassFile(java.nio.file.Path)"},{"p":"<Unnamed>","c":"Bach.Store","l":"isCollectionDue()"},{"p":"<Unnamed>","c":"Bach.Dependencies","l":"isComplete()"},{"p":"<Unnamed>","c":"Bach.Util","l":"isExecutableFile(Path)","u":"isExecutableFile(java.nio.file.Path)"},{"p":"<Unnamed>","c":"Bach.Formatter.Cache","l":"isFormatted(Path)","u":"isFormatted(java.nio.file.Path)"},{"p":"<Unnamed>","c":"Bach.Downloader.Validators","l":"isFresh()"},{"p":"<Unnamed>","c":"Bach.Util","l":"isJarFile(Path)","u":"isJarFile(java.nio.file.Path)"},{"p":"<Unnamed>","c":"Bach.Util","l":"isJavaFile(Path)","u":"isJavaFile(java.nio.file.Path)"},{"p":"<Unnamed>","c":"Bach.Store","l":"isMissing(URI)","u":"isMissing(java.net.URI)"},{"p":"<Unnamed>","c":"Bach.ClassFile","l":"isModuleInfo()"},{"p":"<Unnamed>","c":"Bach.Util","l":"isModuleInfo(Path)","u":"isModuleInfo(java.nio.file.Path)"},{"p":"<Unnamed>","c":"Bach.Capture","l":"isSpilled()"},{"p":"<Unnamed>","c":"Bach.Formatter","l":"jar()"},{"p":"<Unnamed>","c":"Bach.Javac","l":"jar(PrintWriter, Path, String, String, List<String>, List<Path>)","u":"jar(java.io.PrintWriter,java.nio.file.Path,java.lang.String,java.lang.String,java.util.List,java.util.List)"},{"p":"<Unnamed>","c":"Bach.Configuration.Options","l":"javac"},{"p":"<Unnamed>","c":"Bach.Javac","l":"Javac()","u":"%3Cinit%3E()"},{"p":"<Unnamed>","c":"Bach.Util","l":"join(T...)"},{"p":"<Unnamed>","c":"Bach.Trace","l":"json(Object)","u":"json(java.lang.Object)"},{"p":"<Unnamed>","c":"Bach.Property","l":"key"},{"p":"<Unnamed>","c":"Bach.Pom.Dependency","l":"key()"},{"p":"<Unnamed>","c":"Bach.Client.Channel","l":"kind"},{"p":"<Unnamed>","c":"Bach.ToolEvent","l":"kind"},{"p":"<Unnamed>","c":"Bach.ToolRegistry.Entry","l":"kind"},{"p":"<Unnamed>","c":"Bach.Downloader.Validators","l":"lastModified()"},{"p":"<Unnamed>","c":"Bach.Downloader","l":"lastModified(HttpHeaders)","u":"lastModified(java.net.http.HttpHeaders)"},{"p":"<Unnamed>","c":"Bach.Configuration.Paths","l":"libraries"},{"p":"<Unnamed>","c":"Bach.Capture","l":"LIMIT"},{"p":"<Unnamed>","c":"Bach.Configuration","l":"lines(Bach.Property)"},{"p":"<Unnamed>","c":"Bach.Store","l":"link(Path, Path)","u":"link(java.nio.file.Path,java.nio.file.Path)"},{"p":"<Unnamed>","c":"Bach.Dependencies","l":"load(Path)","u":"load(java.nio.file.Path)"},{"p":"<Unnamed>","c":"Bach.Util","l":"loadProperties(Path)","u":"loadProperties(java.nio.file.Path)"},{"p":"<Unnamed>","c":"Bach.Resolver","l":"lock"},{"p":"<Unnamed>","c":"Bach.Store","l":"lock(Path)","u":"lock(java.nio.file.Path)"},{"p":"<Unnamed>","c":"Bach.LockEvent","l":"LockEvent()","u":"%3Cinit%3E()"},{"p":"<Unnamed>","c":"Bach","l":"main(List<String>)","u":"main(java.util.List)"},{"p":"<Unnamed>","c":"Bach.Client","l":"main(String...)","u":"main(java.lang.String...)"},{"p":"<Unnamed>","c":"Bach","l":"main(String...)","u":"main(java.lang.String...)"},{"p":"<Unnamed>","c":"Bach.Pom","l":"manage(List<Bach.Pom>)","u":"manage(java.util.List)"},{"p":"<Unnamed>","c":"Bach.Pom","l":"managed"},{"p":"<Unnamed>","c":"Bach.Javac","l":"managers"},{"p":"<Unnamed>","c":"Bach.Configuration","l":"map"},{"p":"<Unnamed>","c":"Bach.Downloader","l":"MAVEN_CENTRAL"},{"p":"<Unnamed>","c":"Bach.Property","l":"MAVEN_RACE"},{"p":"<Unnamed>","c":"Bach.Property","l":"MAVEN_REPOSITORIES"},{"p":"<Unnamed>","c":"Bach.Downloader","l":"MAXIMUM_BACKOFF_MILLIS"},{"p":"<Unnamed>","c":"Bach.Javac.MemoryFileManager","l":"MemoryFileManager(StandardJavaFileManager, Map<String, ByteArrayOutputStream>)","u":"%3Cinit%3E(javax.tools.StandardJavaFileManager,java.util.Map)"},{"p":"<Unnamed>","c":"Bach.Store","l":"missing"},{"p":"<Unnamed>","c":"Bach.Store","l":"missing(URI)","u":"missing(java.net.URI)"},{"p":"<Unnamed>","c":"Bach.Compiler.Unit","l":"module"},{"p":"<Unnamed>","c":"Bach.ModuleGraph","l":"ModuleGraph(Collection<Bach.ModuleInfo>)","u":"%3Cinit%3E(java.util.Collection)"},{"p":"<Unnamed>","c":"Bach.ModuleInfo","l":"ModuleInfo(String, Set<String>)","u":"%3Cinit%3E(java.lang.String,java.util.Set)"},{"p":"<Unnamed>","c":"Bach.Configuration.Options","l":"modules"},{"p":"<Unnamed>","c":"Bach.ModuleGraph","l":"modules"},{"p":"<Unnamed>","c":"Bach.ClassFile","l":"name"},{"p":"<Unnamed>","c":"Bach.Javac.MemoryFileManager.Entry","l":"name"},{"p":"<Unnamed>","c":"Bach.ModuleInfo","l":"name"},{"p":"<Unnamed>","c":"Bach.Project","l":"name"},{"p":"<Unnamed>","c":"Bach.Task","l":"name"},{"p":"<Unnamed>","c":"Bach.ToolEvent","l":"name"},{"p":"<Unnamed>","c":"Bach.ToolRegistry.Entry","l":"name"},{"p":"<Unnamed>","c":"Bach.Property","l":"NAME"},{"p":"<Unnamed>","c":"Bach.Javac","l":"name()"},{"p":"<Unnamed>","c":"Bach.Tool","l":"name()"},{"p":"<Unnamed>","c":"Bach.Trace.Span","l":"NONE"},{"p":"<Unnamed>","c":"Bach","l":"of()"},{"p":"<Unnamed>","c":"Bach.Configuration","l":"of(Bach.Configuration.Basic, Path, Path)","u":"of(Bach.Configuration.Basic,java.nio.file.Path,java.nio.file.Path)"},{"p":"<Unnamed>","c":"Bach.Configuration","l":"of(Path)","u":"of(java.nio.file.Path)"},{"p":"<Unnamed>","c":"Bach.GoogleJavaFormat","l":"of(Path)","u":"of(java.nio.file.Path)"},{"p":"<Unnamed>","c":"Bach.DigestingSubscriber","l":"onComplete()"},{"p":"<Unnamed>","c":"Bach.DigestingSubscriber","l":"onError(Throwable)","u":"onError(java.lang.Throwable)"},{"p":"<Unnamed>","c":"Bach.DigestingSubscriber","l":"onNext(List<ByteBuffer>)","u":"onNext(java.util.List)"},{"p":"<Unnamed>","c":"Bach.DigestingSubscriber","l":"onSubscribe(Flow.Subscription)","u":"onSubscribe(java.util.concurrent.Flow.Subscription)"},{"p":"<Unnamed>","c":"Bach.Javac.MemoryFileManager.Entry","l":"openOutputStream()"},{"p":"<Unnamed>","c":"Bach.Pom.Dependency","l":"optional"},{"p":"<Unnamed>","c":"Bach.Configuration","l":"options"},{"p":"<Unnamed>","c":"Bach.Property","l":"OPTIONS_JAVAC"},{"p":"<Unnamed>","c":"Bach.Property","l":"OPTIONS_MODULES"},{"p":"<Unnamed>","c":"Bach.Property","l":"OPTIONS_OUTPUT"},{"p":"<Unnamed>","c":"Bach.Property","l":"OPTIONS_PARALLELISM"},{"p":"<Unnamed>","c":"Bach.Compiler.Unit","l":"options()"},{"p":"<Unnamed>","c":"Bach.Configuration.Options","l":"Options()","u":"%3Cinit%3E()"},{"p":"<Unnamed>","c":"Bach.Compiler.Unit","l":"out"},{"p":"<Unnamed>","c":"Bach","l":"out"},{"p":"<Unnamed>","c":"Bach.Scheduler.Execution","l":"out"},{"p":"<Unnamed>","c":"Bach.Client","l":"OUT"},{"p":"<Unnamed>","c":"Bach.Client.Channel","l":"output"},{"p":"<Unnamed>","c":"Bach.Configuration.Options","l":"output"},{"p":"<Unnamed>","c":"Bach.ClassFile","l":"packageName()"},{"p":"<Unnamed>","c":"Bach.Configuration.Options","l":"parallelism"},{"p":"<Unnamed>","c":"Bach.Pom","l":"parent"},{"p":"<Unnamed>","c":"Bach.ModuleInfo","l":"parse(CharSequence)","u":"parse(java.lang.CharSequence)"},{"p":"<Unnamed>","c":"Bach.Task","l":"parse(List<String>)","u":"parse(java.util.List)"},{"p":"<Unnamed>","c":"Bach.ModuleInfo","l":"parse(Path)","u":"parse(java.nio.file.Path)"},{"p":"<Unnamed>","c":"Bach.Pom","l":"parse(Path)","u":"parse(java.nio.file.Path)"},{"p":"<Unnamed>","c":"Bach.Downloader.Validators","l":"partial()"},{"p":"<Unnamed>","c":"Bach.Downloader.Validators","l":"partial(HttpHeaders)","u":"partial(java.net.http.HttpHeaders)"},{"p":"<Unnamed>","c":"Bach.Lock","l":"path"},{"p":"<Unnamed>","c":"Bach.LockEvent","l":"path"},{"p":"<Unnamed>","c":"Bach.Property","l":"PATH_LIBRARIES"},{"p":"<Unnamed>","c":"Bach.Property","l":"PATH_SOURCES"},{"p":"<Unnamed>","c":"Bach.Property","l":"PATH_TARGET"},{"p":"<Unnamed>","c":"Bach.Property","l":"PATH_USER"},{"p":"<Unnamed>","c":"Bach.Configuration","l":"paths"},{"p":"<Unnamed>","c":"Bach.Configuration.Paths","l":"Paths(Path, Path)","u":"%3Cinit%3E(java.nio.file.Path,java.nio.file.Path)"},{"p":"<Unnamed>","c":"Bach.Store","l":"pin(Path)","u":"pin(java.nio.file.Path)"},{"p":"<Unnamed>","c":"Bach.Configuration.Basic","l":"pipeOutput(ProcessBuilder)","u":"pipeOutput(java.lang.ProcessBuilder)"},{"p":"<Unnamed>","c":"Bach.Resolver","l":"pom(String)","u":"pom(java.lang.String)"},{"p":"<Unnamed>","c":"Bach.Resolver","l":"poms"},{"p":"<Unnamed>","c":"Bach","l":"prefetch()"},{"p":"<Unnamed>","c":"Bach.Prefetch","l":"Prefetch()","u":"%3Cinit%3E()"},{"p":"<Unnamed>","c":"Bach.Scheduler","l":"prefix"},{"p":"<Unnamed>","c":"Bach.PrefixedLines","l":"PrefixedLines(PrintWriter, String)","u":"%3Cinit%3E(java.io.PrintWriter,java.lang.String)"},{"p":"<Unnamed>","c":"Bach.Configuration","l":"project"},{"p":"<Unnamed>","c":"Bach.Project","l":"Project(Bach.Configuration)","u":"%3Cinit%3E(Bach.Configuration)"},{"p":"<Unnamed>","c":"Bach.Configuration","l":"properties"},{"p":"<Unnamed>","c":"Bach.Downloader.Validators","l":"properties"},{"p":"<Unnamed>","c":"Bach.Pom","l":"properties"},{"p":"<Unnamed>","c":"Bach.ToolRegistry.Kind","l":"PROVIDED"},{"p":"<Unnamed>","c":"Bach.Util","l":"pump(InputStream, PrintWriter)","u":"pump(java.io.InputStream,java.io.PrintWriter)"},{"p":"<Unnamed>","c":"Bach.Formatter.Cache","l":"put(Path, String)","u":"put(java.nio.file.Path,java.lang.String)"},{"p":"<Unnamed>","c":"Bach.Trace.Span","l":"put(String, Object)","u":"put(java.lang.String,java.lang.Object)"},{"p":"<Unnamed>","c":"Bach.Store","l":"put(URI, Path, String)","u":"put(java.net.URI,java.nio.file.Path,java.lang.String)"},{"p":"<Unnamed>","c":"Bach.Configuration.Options","l":"race"},{"p":"<Unnamed>","c":"Bach.ClassFile","l":"read(Path)","u":"read(java.nio.file.Path)"},{"p":"<Unnamed>","c":"Bach.ClassFile","l":"readAll(Path)","u":"readAll(java.nio.file.Path)"},{"p":"<Unnamed>","c":"Bach.Compiler.Unit","l":"recompile(Bach, Bach.Dependencies, Map<String, String>)","u":"recompile(Bach,Bach.Dependencies,java.util.Map)"},{"p":"<Unnamed>","c":"Bach.Configuration.Basic","l":"redirectIO"},{"p":"<Unnamed>","c":"Bach.ClassFile","l":"references"},{"p":"<Unnamed>","c":"Bach.Dependencies.Entry","l":"references"},{"p":"<Unnamed>","c":"Bach.Configuration","l":"registry"},{"p":"<Unnamed>","c":"Bach.Client","l":"REJECTED"},{"p":"<Unnamed>","c":"Bach.Lock","l":"release()"},{"p":"<Unnamed>","c":"Bach.Configuration.Options","l":"repositories"},{"p":"<Unnamed>","c":"Bach.Resolver","l":"repositories"},{"p":"<Unnamed>","c":"Bach.ModuleInfo","l":"requires"},{"p":"<Unnamed>","c":"Bach.Prefetch","l":"requires()"},{"p":"<Unnamed>","c":"Bach.ModuleGraph","l":"requires(String)","u":"requires(java.lang.String)"},{"p":"<Unnamed>","c":"Bach.Resolver","l":"resolve(List<String>)","u":"resolve(java.util.List)"},{"p":"<Unnamed>","c":"Bach.Resolver","l":"Resolver()","u":"%3Cinit%3E()"},{"p":"<Unnamed>","c":"Bach.Resolver","l":"Resolver(List<String>, Bach.Downloader, Path)","u":"%3Cinit%3E(java.util.List,Bach.Downloader,java.nio.file.Path)"},{"p":"<Unnamed>","c":"Bach.Formatter.Cache","l":"retain(Collection<Path>)","u":"retain(java.util.Collection)"},{"p":"<Unnamed>","c":"Bach.FindEvent","l":"root"},{"p":"<Unnamed>","c":"Bach.Store","l":"root"},{"p":"<Unnamed>","c":"Bach.Compiler.Unit","l":"run(AtomicBoolean)","u":"run(java.util.concurrent.atomic.AtomicBoolean)"},{"p":"<Unnamed>","c":"Bach.Scheduler.Execution","l":"run(AtomicBoolean)","u":"run(java.util.concurrent.atomic.AtomicBoolean)"},{"p":"<Unnamed>","c":"Bach.Tool","l":"run(Bach)"},{"p":"<Unnamed>","c":"Bach","l":"run(int, String, Object...)","u":"run(int,java.lang.String,java.lang.Object...)"},{"p":"<Unnamed>","c":"Bach.Scheduler","l":"run(List<Bach.Task>)","u":"run(java.util.List)"},{"p":"<Unnamed>","c":"Bach.Javac","l":"run(PrintWriter, PrintWriter, String...)","u":"run(java.io.PrintWriter,java.io.PrintWriter,java.lang.String...)"},{"p":"<Unnamed>","c":"Bach.Runner","l":"run(ProcessBuilder)","u":"run(java.lang.ProcessBuilder)"},{"p":"<Unnamed>","c":"Bach.Runner","l":"run(String, Object...)","u":"run(java.lang.String,java.lang.Object...)"},{"p":"<Unnamed>","c":"Bach","l":"runAsync(int, String, Object...)","u":"runAsync(int,java.lang.String,java.lang.Object...)"},{"p":"<Unnamed>","c":"Bach.Runner","l":"runAsync(ProcessBuilder)","u":"runAsync(java.lang.ProcessBuilder)"},{"p":"<Unnamed>","c":"Bach.Runner","l":"runAsync(String, Object...)","u":"runAsync(java.lang.String,java.lang.Object...)"},{"p":"<Unnamed>","c":"Bach","l":"runner"},{"p":"<Unnamed>","c":"Bach.Runner","l":"Runner()","u":"%3Cinit%3E()"},{"p":"<Unnamed>","c":"Bach.Dependencies","l":"scan(Path, Map<String, String>)","u":"scan(java.nio.file.Path,java.util.Map)"},{"p":"<Unnamed>","c":"Bach.Http","l":"schedule(String, int, int, Supplier<CompletableFuture<Path>>)","u":"schedule(java.lang.String,int,int,java.util.function.Supplier)"},{"p":"<Unnamed>","c":"Bach.Scheduler","l":"Scheduler()","u":"%3Cinit%3E()"},{"p":"<Unnamed>","c":"Bach.Scheduler","l":"Scheduler(boolean)","u":"%3Cinit%3E(boolean)"},{"p":"<Unnamed>","c":"Bach.Pom.Dependency","l":"scope"},{"p":"<Unnamed>","c":"Bach.Daemon","l":"serve()"},{"p":"<Unnamed>","c":"Bach.Util","l":"sha256(byte[])"},{"p":"<Unnamed>","c":"Bach.Javac","l":"SHARED"},{"p":"<Unnamed>","c":"Bach.ClassFile","l":"source"},{"p":"<Unnamed>","c":"Bach.Compiler.Unit","l":"source"},{"p":"<Unnamed>","c":"Bach.Dependencies.Entry","l":"source"},{"p":"<Unnamed>","c":"Bach.Compiler","l":"source(String)","u":"source(java.lang.String)"},{"p":"<Unnamed>","c":"Bach.Configuration.Paths","l":"sources"},{"p":"<Unnamed>","c":"Bach.Dependencies","l":"sources"},{"p":"<Unnamed>","c":"Bach.Runner","l":"spill(String, String[])","u":"spill(java.lang.String,java.lang.String[])"},{"p":"<Unnamed>","c":"Bach.Javac","l":"stamp(Path)","u":"stamp(java.nio.file.Path)"},{"p":"<Unnamed>","c":"Bach.Javac","l":"stamps(List<String>)","u":"stamps(java.util.List)"},{"p":"<Unnamed>","c":"Bach.Prefetch","l":"start()"},{"p":"<Unnamed>","c":"Bach.Recorder","l":"start()"},{"p":"<Unnamed>","c":"Bach.Trace","l":"start()"},{"p":"<Unnamed>","c":"Bach.Recorder","l":"stop()"},{"p":"<Unnamed>","c":"Bach.Trace","l":"stop(Path)","u":"stop(java.nio.file.Path)"},{"p":"<Unnamed>","c":"Bach.Downloader","l":"store"},{"p":"<Unnamed>","c":"Bach.Formatter.Cache","l":"store()"},{"p":"<Unnamed>","c":"Bach.Store","l":"Store()","u":"%3Cinit%3E()"},{"p":"<Unnamed>","c":"Bach.Dependencies","l":"store(Path)","u":"store(java.nio.file.Path)"},{"p":"<Unnamed>","c":"Bach.Store","l":"Store(Path)","u":"%3Cinit%3E(java.nio.file.Path)"},{"p":"<Unnamed>","c":"Bach.Downloader.Validators","l":"store(Path, HttpHeaders)","u":"store(java.nio.file.Path,java.net.http.HttpHeaders)"},{"p":"<Unnamed>","c":"Bach.Util","l":"storeProperties(Path, Properties, String)","u":"storeProperties(java.nio.file.Path,java.util.Properties,java.lang.String)"},{"p":"<Unnamed>","c":"Bach.Util","l":"strings(Object...)","u":"strings(java.lang.Object...)"},{"p":"<Unnamed>","c":"Bach.Dependencies","l":"subtypes(Set<String>)","u":"subtypes(java.util.Set)"},{"p":"<Unnamed>","c":"Bach.ClassFile","l":"supertypes"},{"p":"<Unnamed>","c":"Bach.Dependencies.Entry","l":"supertypes"},{"p":"<Unnamed>","c":"Bach.Configuration.Paths","l":"target"},{"p":"<Unnamed>","c":"Bach.Downloader.Validators","l":"target()"},{"p":"<Unnamed>","c":"Bach.Scheduler.Execution","l":"task"},{"p":"<Unnamed>","c":"Bach.Task","l":"Task(String, List<String>, List<Bach.Task>)","u":"%3Cinit%3E(java.lang.String,java.util.List,java.util.List)"},{"p":"<Unnamed>","c":"Bach.Configuration.Basic","l":"threshold"},{"p":"<Unnamed>","c":"Bach.Daemon","l":"timeout"},{"p":"<Unnamed>","c":"Bach.ToolRegistry.Entry","l":"tool"},{"p":"<Unnamed>","c":"Bach.ToolEvent","l":"ToolEvent()","u":"%3Cinit%3E()"},{"p":"<Unnamed>","c":"Bach.Configuration.Uris","l":"toolFormat"},{"p":"<Unnamed>","c":"Bach.Configuration.Uris","l":"toolJUnit"},{"p":"<Unnamed>","c":"Bach.ToolRegistry","l":"ToolRegistry(Map<String, Bach.Tool>)","u":"%3Cinit%3E(java.util.Map)"},{"p":"<Unnamed>","c":"Bach.Configuration.Basic","l":"tools"},{"p":"<Unnamed>","c":"Bach.GoogleJavaFormat","l":"toString()"},{"p":"<Unnamed>","c":"Bach.ModuleInfo","l":"toString()"},{"p":"<Unnamed>","c":"Bach.Pom.Dependency","l":"toString()"},{"p":"<Unnamed>","c":"Bach.Project","l":"toString()"},{"p":"<Unnamed>","c":"Bach.Task","l":"toString()"},{"p":"<Unnamed>","c":"Bach.ToolRegistry.Entry","l":"toString()"},{"p":"<Unnamed>","c":"Bach.ToolRegistry","l":"toString()"},{"p":"<Unnamed>","c":"Bach.Store","l":"touch(Path)","u":"touch(java.nio.file.Path)"},{"p":"<Unnamed>","c":"Bach.Trace","l":"Trace()","u":"%3Cinit%3E()"},{"p":"<Unnamed>","c":"Bach.Capture","l":"transferTo(Writer)","u":"transferTo(java.io.Writer)"},{"p":"<Unnamed>","c":"Bach.Util","l":"treeDelete(Path)","u":"treeDelete(java.nio.file.Path)"},{"p":"<Unnamed>","c":"Bach.Lock","l":"tryAcquire(Path)","u":"tryAcquire(java.nio.file.Path)"},{"p":"<Unnamed>","c":"Bach.Pom.Dependency","l":"type"},{"p":"<Unnamed>","c":"Bach.Compiler.Unit","l":"Unit(String, Path, List<Bach.Compiler.Unit>)","u":"%3Cinit%3E(java.lang.String,java.nio.file.Path,java.util.List)"},{"p":"<Unnamed>","c":"Bach.Http","l":"UNREACHABLE"},{"p":"<Unnamed>","c":"Bach.Util","l":"unwrap(Throwable)","u":"unwrap(java.lang.Throwable)"},{"p":"<Unnamed>","c":"Bach.Compiler.Unit","l":"upstream"},{"p":"<Unnamed>","c":"Bach.ModuleGraph","l":"upstream(String)","u":"upstream(java.lang.String)"},{"p":"<Unnamed>","c":"Bach.DownloadEvent","l":"uri"},{"p":"<Unnamed>","c":"Bach.Property","l":"URI_TOOL_FORMAT"},{"p":"<Unnamed>","c":"Bach.Property","l":"URI_TOOL_JUNIT"},{"p":"<Unnamed>","c":"Bach.Configuration","l":"uri(Bach.Property)"},{"p":"<Unnamed>","c":"Bach.Downloader","l":"uri(String, String, String)","u":"uri(java.lang.String,java.lang.String,java.lang.String)"},{"p":"<Unnamed>","c":"Bach.Downloader","l":"uri(String, String, String, String, String)","u":"uri(java.lang.String,java.lang.String,java.lang.String,java.lang.String,java.lang.String)"},{"p":"<Unnamed>","c":"Bach.Configuration","l":"uris"},{"p":"<Unnamed>","c":"Bach.Configuration.Uris","l":"Uris()","u":"%3Cinit%3E()"},{"p":"<Unnamed>","c":"Bach.Configuration.Paths","l":"user"},{"p":"<Unnamed>","c":"Bach","l":"USER_HOME"},{"p":"<Unnamed>","c":"Bach.Util","l":"Util()","u":"%3Cinit%3E()"},{"p":"<Unnamed>","c":"Bach.Downloader.Validators","l":"Validators(URI)","u":"%3Cinit%3E(java.net.URI)"},{"p":"<Unnamed>","c":"Bach.Property","l":"valueOf(String)","u":"valueOf(java.lang.String)"},{"p":"<Unnamed>","c":"Bach.ToolRegistry.Kind","l":"valueOf(String)","u":"valueOf(java.lang.String)"},{"p":"<Unnamed>","c":"Bach.Property","l":"values()"},{"p":"<Unnamed>","c":"Bach.ToolRegistry.Kind","l":"values()"},{"p":"<Unnamed>","c":"Bach.Formatter.Cache","l":"version"},{"p":"<Unnamed>","c":"Bach.GoogleJavaFormat","l":"version"},{"p":"<Unnamed>","c":"Bach.Pom.Dependency","l":"version"},{"p":"<Unnamed>","c":"Bach.Pom","l":"version"},{"p":"<Unnamed>","c":"Bach.Project","l":"version"},{"p":"<Unnamed>","c":"Bach.Property","l":"VERSION"},{"p":"<Unnamed>","c":"Bach","l":"VERSION"},{"p":"<Unnamed>","c":"Bach","l":"version()"},{"p":"<Unnamed>","c":"Bach.Pom","l":"version(Bach.Pom.Dependency)"},{"p":"<Unnamed>","c":"Bach.FindEvent","l":"visited"},{"p":"<Unnamed>","c":"Bach.Lock","l":"waited"},{"p":"<Unnamed>","c":"Bach.ModuleGraph","l":"waves()"},{"p":"<Unnamed>","c":"Bach.Pom.Dependency","l":"withVersion(String)","u":"withVersion(java.lang.String)"},{"p":"<Unnamed>","c":"Bach.Configuration.Paths","l":"work"},{"p":"<Unnamed>","c":"Bach.Capture","l":"write(char[], int, int)","u":"write(char[],int,int)"},{"p":"<Unnamed>","c":"Bach.Client.Channel","l":"write(char[], int, int)","u":"write(char[],int,int)"},{"p":"<Unnamed>","c":"Bach.PrefixedLines","l":"write(char[], int, int)","u":"write(char[],int,int)"}];updateSearchResults();
\ No newline at end of file
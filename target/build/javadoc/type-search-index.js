@@ -0,0 +1 @@
+typeSearchIndex = [{"l":"All Classes and Interfaces","u":"allclasses-index.html"},{"p":"<Unnamed>","l":"Bach"},{"p":"<Unnamed>","l":"Bach.Configuration.Basic"},{"p":"<Unnamed>","l":"Bach.Formatter.Cache"},{"p":"<Unnamed>","l":"Bach.Capture"},{"p":"<Unnamed>","l":"Bach.Client.Channel"},{"p":"<Unnamed>","l":"Bach.ClassFile"},{"p":"<Unnamed>","l":"Bach.Client"},{"p":"<Unnamed>","l":"Bach.Compiler"},{"p":"<Unnamed>","l":"Bach.Configuration"},{"p":"<Unnamed>","l":"Bach.Daemon"},{"p":"<Unnamed>","l":"Bach.Dependencies"},{"p":"<Unnamed>","l":"Bach.Pom.Dependency"},{"p":"<Unnamed>","l":"Bach.DigestingSubscriber"},{"p":"<Unnamed>","l":"Bach.Downloader"},{"p":"<Unnamed>","l":"Bach.DownloadEvent"},{"p":"<Unnamed>","l":"Bach.Dependencies.Entry"},{"p":"<Unnamed>","l":"Bach.Javac.MemoryFileManager.Entry"},{"p":"<Unnamed>","l":"Bach.ToolRegistry.Entry"},{"p":"<Unnamed>","l":"Bach.Scheduler.Execution"},{"p":"<Unnamed>","l":"Bach.FindEvent"},{"p":"<Unnamed>","l":"Bach.Formatter"},{"p":"<Unnamed>","l":"Bach.GoogleJavaFormat"},{"p":"<Unnamed>","l":"Bach.Http"},{"p":"<Unnamed>","l":"Bach.Javac"},{"p":"<Unnamed>","l":"Bach.ToolRegistry.Kind"},{"p":"<Unnamed>","l":"Bach.Lock"},{"p":"<Unnamed>","l":"Bach.LockEvent"},{"p":"<Unnamed>","l":"Bach.Javac.MemoryFileManager"},{"p":"<Unnamed>","l":"Bach.ModuleGraph"},{"p":"<Unnamed>","l":"Bach.ModuleInfo"},{"p":"<Unnamed>","l":"Bach.Configuration.Options"},{"p":"<Unnamed>","l":"Bach.Configuration.Paths"},{"p":"<Unnamed>","l":"Bach.Pom"},{"p":"<Unnamed>","l":"Bach.Prefetch"},{"p":"<Unnamed>","l":"Bach.PrefixedLines"},{"p":"<Unnamed>","l":"Bach.Project"},{"p":"<Unnamed>","l":"Bach.Property"},{"p":"<Unnamed>","l":"Bach.Recorder"},{"p":"<Unnamed>","l":"Bach.Resolver"},{"p":"<Unnamed>","l":"Bach.Runner"},{"p":"<Unnamed>","l":"Bach.Scheduler"},{"p":"<Unnamed>","l":"Bach.Trace.Span"},{"p":"<Unnamed>","l":"Bach.Store"},{"p":"<Unnamed>","l":"Bach.Task"},{"p":"<Unnamed>","l":"Bach.Tool"},{"p":"<Unnamed>","l":"Bach.ToolEvent"},{"p":"<Unnamed>","l":"Bach.ToolRegistry"},{"p":"<Unnamed>","l":"Bach.Trace"},{"p":"<Unnamed>","l":"Bach.Compiler.Unit"},{"p":"<Unnamed>","l":"Bach.Configuration.Uris"},{"p":"<Unnamed>","l":"Bach.Util"},{"p":"<Unnamed>","l":"Bach.Downloader.Validators"}];updateSearchResults();
\ No newline at end of file